@@ -30,12 +30,21 @@ public class Config extends YamlConfig<Config.Root> {
         public IOTA iota;
         public ValidationParams validationParams;
         public UserVerification userVerification;
+        public Cache cache;
+        public BlockStore blockStore;
+        public PubSub pubSub;
+        public LocalChanges localChanges;
 
     }
 
     static class IPFS {
 
         public Node node;
+        public Integer saveThreads;
+        public Integer prefetchThreads;
+        public Integer loadThreads;
+        public Integer inboxCapacity;
+        public String encoding;
 
     }
 
@@ -73,6 +82,8 @@ public class Config extends YamlConfig<Config.Root> {
     static class ValidationParams {
 
         public Long timestampTolerance;
+        public Integer verificationThreads;
+        public Integer maxSettlementSnapshots;
 
     }
 
@@ -82,10 +93,65 @@ public class Config extends YamlConfig<Config.Root> {
 
     }
 
+    static class Cache {
+
+        public Integer maxEntries;
+        public Integer maxVerifiedSignatures;
+
+    }
+
+    static class PubSub {
+
+        public Integer seenMaxEntries;
+        public Long validatedTTL;
+        public Long rejectedTTL;
+        public Integer peerBurst;
+        public Double peerRate;
+
+    }
+
+    static class LocalChanges {
+
+        public Long commitWindow;
+        public Integer commitMaxChanges;
+
+    }
+
+    static class BlockStore {
+
+        public String directory;
+        public Long maxSize;
+
+    }
+
     // if changed in a running system, all affected model meta versions must be changed as well and validation must be
     // adjusted
     public static final long DEFAULT_TIMESTAMP_TOLERANCE = 1000L * 60 * 2;
 
+    public static final int DEFAULT_MAX_SETTLEMENT_SNAPSHOTS = 16;
+
+    public static final int DEFAULT_LOAD_THREADS = 8;
+
+    public static final int DEFAULT_INBOX_CAPACITY = 256;
+
+    public static final int DEFAULT_CACHE_MAX_ENTRIES = 10000;
+
+    public static final int DEFAULT_CACHE_MAX_VERIFIED_SIGNATURES = 100000;
+
+    public static final long DEFAULT_BLOCK_STORE_MAX_SIZE = 1024L * 1024 * 256;
+
+    public static final int DEFAULT_PUBSUB_SEEN_MAX_ENTRIES = 10000;
+
+    public static final long DEFAULT_PUBSUB_VALIDATED_TTL = 1000L * 60 * 10;
+
+    public static final long DEFAULT_PUBSUB_REJECTED_TTL = 1000L * 60 * 2;
+
+    public static final int DEFAULT_PUBSUB_PEER_BURST = 20;
+
+    public static final double DEFAULT_PUBSUB_PEER_RATE = 1;
+
+    public static final int DEFAULT_COMMIT_MAX_CHANGES = 64;
+
     private static Config sharedInstance;
 
     /**
@@ -171,6 +237,47 @@ public class Config extends YamlConfig<Config.Root> {
         return root.ipfs.node.secure;
     }
 
+    /**
+     * @return the number of threads for saving independent objects concurrently (1 or less for sequential saves)
+     */
+    public int getIPFSSaveThreads() {
+        Integer res = root.ipfs.saveThreads;
+        return res == null ? 1 : res;
+    }
+
+    /**
+     * @return the number of threads for prefetching the blocks of incoming model states concurrently (1 or less for
+     *         no prefetching)
+     */
+    public int getIPFSPrefetchThreads() {
+        Integer res = root.ipfs.prefetchThreads;
+        return res == null ? 1 : res;
+    }
+
+    /**
+     * @return the number of threads for asynchronous loads (shared by all controllers)
+     */
+    public int getIPFSLoadThreads() {
+        Integer res = root.ipfs.loadThreads;
+        return res == null || res < 1 ? DEFAULT_LOAD_THREADS : res;
+    }
+
+    /**
+     * @return the maximum number of received pubsub messages, that wait for being processed (newer model states from
+     *         the same peer replace waiting ones)
+     */
+    public int getIPFSInboxCapacity() {
+        Integer res = root.ipfs.inboxCapacity;
+        return res == null ? DEFAULT_INBOX_CAPACITY : res;
+    }
+
+    /**
+     * @return the configured encoding for saving objects in IPFS ("dag-cbor" or null for the default encoding)
+     */
+    public String getIPFSEncoding() {
+        return root.ipfs.encoding;
+    }
+
     /**
      * @return the main IOTA address (defines a subnet)
      */
@@ -200,6 +307,25 @@ public class Config extends YamlConfig<Config.Root> {
         return timestampTolerance;
     }
 
+    /**
+     * @return the number of threads for verifying the signatures of an incoming model state concurrently (1 or less for
+     *         sequential verification)
+     */
+    public int getVerificationThreads() {
+        ValidationParams params = root.validationParams;
+        Integer res = params == null ? null : params.verificationThreads;
+        return res == null ? 1 : res;
+    }
+
+    /**
+     * @return the maximum number of settlement snapshots retained for recent local model states
+     */
+    public int getMaxSettlementSnapshots() {
+        ValidationParams params = root.validationParams;
+        Integer res = params == null ? null : params.maxSettlementSnapshots;
+        return res == null ? DEFAULT_MAX_SETTLEMENT_SNAPSHOTS : res;
+    }
+
     public boolean isUserVerificationRequired() {
         if (userVerificationNotRequired == null) {
             userVerificationNotRequired = new TreeSet<>();
@@ -213,6 +339,106 @@ public class Config extends YamlConfig<Config.Root> {
         return !userVerificationNotRequired.contains(getIOTAAddress());
     }
 
+    /**
+     * @return the maximum number of unpinned objects in the IPLD object cache (0 or negative for an unbounded cache)
+     */
+    public int getCacheMaxEntries() {
+        Cache cache = root.cache;
+        Integer res = cache == null ? null : cache.maxEntries;
+        return res == null ? DEFAULT_CACHE_MAX_ENTRIES : res;
+    }
+
+    /**
+     * @return the maximum number of cached verified signatures (0 or negative for an unbounded cache)
+     */
+    public int getCacheMaxVerifiedSignatures() {
+        Cache cache = root.cache;
+        Integer res = cache == null ? null : cache.maxVerifiedSignatures;
+        return res == null ? DEFAULT_CACHE_MAX_VERIFIED_SIGNATURES : res;
+    }
+
+    /**
+     * @return the directory of the local block store (null if there is no local block store)
+     */
+    public String getBlockStoreDirectory() {
+        BlockStore blockStore = root.blockStore;
+        return blockStore == null ? null : blockStore.directory;
+    }
+
+    /**
+     * @return the maximum total size of the blocks in the local block store in bytes
+     */
+    public long getBlockStoreMaxSize() {
+        BlockStore blockStore = root.blockStore;
+        Long res = blockStore == null ? null : blockStore.maxSize;
+        return res == null ? DEFAULT_BLOCK_STORE_MAX_SIZE : res;
+    }
+
+    /**
+     * @return the maximum number of recently validated or rejected model state hashes, that are remembered for ignoring
+     *         repeated announcements
+     */
+    public int getPubSubSeenMaxEntries() {
+        PubSub pubSub = root.pubSub;
+        Integer res = pubSub == null ? null : pubSub.seenMaxEntries;
+        return res == null ? DEFAULT_PUBSUB_SEEN_MAX_ENTRIES : res;
+    }
+
+    /**
+     * @return the time in milliseconds, a validated model state hash is remembered
+     */
+    public long getPubSubValidatedTTL() {
+        PubSub pubSub = root.pubSub;
+        Long res = pubSub == null ? null : pubSub.validatedTTL;
+        return res == null ? DEFAULT_PUBSUB_VALIDATED_TTL : res;
+    }
+
+    /**
+     * @return the time in milliseconds, a rejected model state hash is remembered
+     */
+    public long getPubSubRejectedTTL() {
+        PubSub pubSub = root.pubSub;
+        Long res = pubSub == null ? null : pubSub.rejectedTTL;
+        return res == null ? DEFAULT_PUBSUB_REJECTED_TTL : res;
+    }
+
+    /**
+     * @return the maximum number of model state announcements, a single peer can send in a burst
+     */
+    public int getPubSubPeerBurst() {
+        PubSub pubSub = root.pubSub;
+        Integer res = pubSub == null ? null : pubSub.peerBurst;
+        return res == null ? DEFAULT_PUBSUB_PEER_BURST : res;
+    }
+
+    /**
+     * @return the sustained number of model state announcements per second, a single peer can send
+     */
+    public double getPubSubPeerRate() {
+        PubSub pubSub = root.pubSub;
+        Double res = pubSub == null ? null : pubSub.peerRate;
+        return res == null ? DEFAULT_PUBSUB_PEER_RATE : res;
+    }
+
+    /**
+     * @return the time in milliseconds, local changes are collected before they are committed in a single model state
+     *         (0 or negative for committing each change immediately)
+     */
+    public long getCommitWindow() {
+        LocalChanges localChanges = root.localChanges;
+        Long res = localChanges == null ? null : localChanges.commitWindow;
+        return res == null ? 0 : res;
+    }
+
+    /**
+     * @return the number of collected local changes, that triggers a commit before the commit window has elapsed
+     */
+    public int getCommitMaxChanges() {
+        LocalChanges localChanges = root.localChanges;
+        Integer res = localChanges == null ? null : localChanges.commitMaxChanges;
+        return res == null ? DEFAULT_COMMIT_MAX_CHANGES : res;
+    }
+
     public Config subConfig(String iotaAddress, long timestampTolerance) {
         Config res = new Config(root);
         res.iotaAddress = iotaAddress;
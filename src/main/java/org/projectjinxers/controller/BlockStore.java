@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Local, content-addressed store for IPLD blocks. Since blocks are immutable, a stored block never has to be
+ * invalidated. Each block is stored in its own file, named after its multihash, in a sub directory named after the
+ * last two characters of the multihash. Only raw blocks, that can be verified against their multihashes, are stored,
+ * and they are verified again when they are read. The index (multihash to size in least recently used order) is kept
+ * in memory and rebuilt from the modification times of the files on startup. If the total size exceeds the configured
+ * maximum, the least recently used blocks are deleted.
+ * 
+ * @author ProjectJinxers
+ */
+public class BlockStore {
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxSize;
+
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize;
+
+    /**
+     * Constructor. Creates the directory, if necessary, and builds the index from the existing files (least recently
+     * modified first).
+     * 
+     * @param directory the directory
+     * @param maxSize   the maximum total size of all stored blocks in bytes (0 or negative for no limit)
+     * @throws IOException if the directory can't be created
+     */
+    public BlockStore(File directory, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("failed to create block store directory " + directory);
+        }
+        List<File> files = new ArrayList<>();
+        File[] subDirectories = directory.listFiles(File::isDirectory);
+        if (subDirectories != null) {
+            for (File subDirectory : subDirectories) {
+                File[] blocks = subDirectory.listFiles(File::isFile);
+                if (blocks != null) {
+                    for (File block : blocks) {
+                        if (block.getName().endsWith(TEMP_FILE_SUFFIX)) {
+                            block.delete();
+                        }
+                        else {
+                            files.add(block);
+                        }
+                    }
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            long size = file.length();
+            index.put(file.getName(), size);
+            totalSize += size;
+        }
+        evict();
+    }
+
+    /**
+     * Reads the block with the given multihash. The block is verified against the multihash (see
+     * {@link CidCalculator#verify(String, byte[])}), corrupted or unreadable blocks are deleted. The modification time
+     * of the block's file is updated, so the order of use survives restarts.
+     * 
+     * @param multihash the multihash
+     * @return the stored bytes or null, if there is no valid block with the given multihash
+     */
+    public byte[] get(String multihash) {
+        synchronized (index) {
+            if (index.get(multihash) == null) {
+                return null;
+            }
+        }
+        File file = getFile(multihash);
+        byte[] res;
+        try {
+            res = Files.readAllBytes(file.toPath());
+        }
+        catch (IOException e) {
+            // evicted concurrently or unreadable, either way the block has to be loaded again
+            res = null;
+        }
+        if (res == null || !CidCalculator.verify(multihash, res)) {
+            remove(multihash);
+            file.delete();
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return res;
+    }
+
+    /**
+     * Stores the given block under the given multihash, if the block can be verified against the multihash. The bytes
+     * are written to a temporary file first, which is then moved, so readers never see partially written blocks.
+     * 
+     * @param multihash the multihash
+     * @param bytes     the block
+     * @return true iff the block is stored (after this call)
+     */
+    public boolean put(String multihash, byte[] bytes) {
+        synchronized (index) {
+            if (index.get(multihash) != null) {
+                return true;
+            }
+        }
+        if (!CidCalculator.verify(multihash, bytes)) {
+            return false;
+        }
+        File file = getFile(multihash);
+        Path temp = null;
+        try {
+            File parent = file.getParentFile();
+            if (!parent.isDirectory()) {
+                parent.mkdirs();
+            }
+            temp = Files.createTempFile(parent.toPath(), multihash, TEMP_FILE_SUFFIX);
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException e) {
+            // the store is just a cache, the block will be loaded from IPFS, when it is requested
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+            return false;
+        }
+        synchronized (index) {
+            if (index.put(multihash, (long) bytes.length) == null) {
+                totalSize += bytes.length;
+            }
+            evict();
+        }
+        return true;
+    }
+
+    /**
+     * @return the total size of all stored blocks in bytes
+     */
+    public long getTotalSize() {
+        synchronized (index) {
+            return totalSize;
+        }
+    }
+
+    private void remove(String multihash) {
+        synchronized (index) {
+            Long size = index.remove(multihash);
+            if (size != null) {
+                totalSize -= size;
+            }
+        }
+    }
+
+    private void evict() {
+        if (maxSize > 0) {
+            synchronized (index) {
+                Iterator<Entry<String, Long>> it = index.entrySet().iterator();
+                while (totalSize > maxSize && it.hasNext()) {
+                    Entry<String, Long> entry = it.next();
+                    getFile(entry.getKey()).delete();
+                    totalSize -= entry.getValue();
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private File getFile(String multihash) {
+        // the last characters are evenly distributed for all multibase encodings
+        String subDirectory = multihash.substring(Math.max(0, multihash.length() - 2));
+        return new File(new File(directory, subDirectory), multihash);
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import io.ipfs.multibase.Base58;
+
+/**
+ * Calculates CIDs (version 1, sha2-256) locally. The result is only correct, if the given bytes are exactly the bytes
+ * IPFS stores, i.e. if the bytes are submitted in the same encoding they are stored in.
+ * 
+ * @author ProjectJinxers
+ */
+public class CidCalculator {
+
+    private static final int CID_VERSION = 1;
+    private static final int MULTIHASH_SHA2_256 = 0x12;
+    private static final char MULTIBASE_BASE58_BTC = 'z';
+
+    /**
+     * Calculates the CID for the given bytes in the given encoding.
+     * 
+     * @param encoding the encoding (provides the multicodec)
+     * @param bytes    the encoded bytes
+     * @return the string form of the CID (base58btc, like the CIDs returned by IPFS)
+     */
+    public static String calculate(IPLDEncoding encoding, byte[] bytes) {
+        return calculate(encoding.getCodec(), bytes);
+    }
+
+    /**
+     * Checks if the given bytes are the block addressed by the given CID. Only CIDs in the form calculated here
+     * (version 1, base58btc, sha2-256) can be verified, all others are rejected.
+     * 
+     * @param cid   the string form of the CID
+     * @param bytes the block
+     * @return true iff the CID calculated for the given bytes equals the given CID
+     */
+    public static boolean verify(String cid, byte[] bytes) {
+        if (cid.isEmpty() || cid.charAt(0) != MULTIBASE_BASE58_BTC) {
+            return false;
+        }
+        byte[] decoded;
+        try {
+            decoded = Base58.decode(cid.substring(1));
+        }
+        catch (RuntimeException e) {
+            return false;
+        }
+        int[] position = new int[1];
+        if (readVarint(decoded, position) != CID_VERSION) {
+            return false;
+        }
+        int codec = readVarint(decoded, position);
+        return codec >= 0 && cid.equals(calculate(codec, bytes));
+    }
+
+    private static String calculate(int codec, byte[] bytes) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+        }
+        catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new RuntimeException(e);
+        }
+        ByteArrayOutputStream cid = new ByteArrayOutputStream(digest.length + 8);
+        writeVarint(cid, CID_VERSION);
+        writeVarint(cid, codec);
+        writeVarint(cid, MULTIHASH_SHA2_256);
+        writeVarint(cid, digest.length);
+        cid.writeBytes(digest);
+        return MULTIBASE_BASE58_BTC + Base58.encode(cid.toByteArray());
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    // returns -1 for truncated or too large values
+    private static int readVarint(byte[] bytes, int[] position) {
+        int res = 0;
+        for (int shift = 0; shift < 28; shift += 7) {
+            if (position[0] == bytes.length) {
+                return -1;
+            }
+            int b = bytes[position[0]++];
+            res |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return res;
+            }
+        }
+        return -1;
+    }
+
+}
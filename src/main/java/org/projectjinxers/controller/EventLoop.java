@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks one after the other on a single (daemon) thread, in the order they have been submitted. Tasks can be
+ * posted (asynchronously) or called (synchronously). Posted tasks can have a key. A task, that is posted with the same
+ * key as a task, that is still waiting, supersedes that task. The number of waiting posted tasks is bounded, additional
+ * ones are rejected. Called tasks are never rejected, since the callers wait anyway (unless the loop has been shut
+ * down).
+ * 
+ * @author ProjectJinxers
+ */
+class EventLoop {
+
+    private static class Task {
+
+        private final String key;
+        private final Callable<?> callable;
+        private final CompletableFuture<Object> result;
+        private boolean superseded;
+
+        Task(String key, Callable<?> callable, CompletableFuture<Object> result) {
+            this.key = key;
+            this.callable = callable;
+            this.result = result;
+        }
+
+    }
+
+    private final String name;
+    private final int capacity;
+
+    private final Queue<Task> inbox = new ArrayDeque<>();
+    private final Map<String, Task> waitingByKey = new HashMap<>();
+    private int waitingPosted;
+    private int depth;
+    private int maxDepth;
+    private long supersededCount;
+    private long rejectedCount;
+    private Thread thread;
+    private boolean shutdown;
+
+    /**
+     * Constructor. The thread is started on demand.
+     * 
+     * @param name     the name of the thread
+     * @param capacity the maximum number of waiting posted tasks
+     */
+    EventLoop(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Posts a task, that will be run asynchronously. Exceptions are printed.
+     * 
+     * @param key  the key (if not null, a waiting task with the same key is dropped)
+     * @param task the task
+     * @return false iff the task has been rejected, because the inbox is full or the loop has been shut down
+     */
+    synchronized boolean post(String key, Runnable task) {
+        if (shutdown) {
+            return false;
+        }
+        Task superseded = key == null ? null : waitingByKey.get(key);
+        if (superseded != null) {
+            superseded.superseded = true;
+            supersededCount++;
+            waitingPosted--;
+            depth--;
+        }
+        else if (waitingPosted >= capacity) {
+            rejectedCount++;
+            return false;
+        }
+        Task posted = new Task(key, () -> {
+            task.run();
+            return null;
+        }, null);
+        if (key != null) {
+            waitingByKey.put(key, posted);
+        }
+        waitingPosted++;
+        enqueue(posted);
+        return true;
+    }
+
+    /**
+     * Runs the given task on the loop thread and waits for it to finish. If this method is called on the loop thread,
+     * the task is run immediately.
+     * 
+     * @param task the task
+     * @return the result of the task
+     * @throws Exception if the task threw an exception (or a {@link RejectedExecutionException}, if the loop has been
+     *                   shut down)
+     */
+    <T> T call(Callable<T> task) throws Exception {
+        if (isLoopThread()) {
+            return task.call();
+        }
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("event loop has been shut down");
+            }
+            enqueue(new Task(null, task, result));
+        }
+        try {
+            @SuppressWarnings("unchecked")
+            T res = (T) result.get();
+            return res;
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (Exception) cause;
+        }
+    }
+
+    /**
+     * Shuts down this loop. The running task (if any) is finished, waiting posted tasks are dropped and waiting called
+     * tasks are canceled. The loop thread ends afterwards. Tasks submitted later are rejected.
+     */
+    synchronized void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        for (Task task : inbox) {
+            if (task.result != null) {
+                task.result.cancel(false);
+            }
+        }
+        inbox.clear();
+        waitingByKey.clear();
+        waitingPosted = 0;
+        depth = 0;
+        notify();
+    }
+
+    /**
+     * @return true iff the current thread is the loop thread
+     */
+    boolean isLoopThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * @return the number of waiting tasks (without the running one)
+     */
+    synchronized int getQueueDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the highest number of waiting tasks so far
+     */
+    synchronized int getMaxQueueDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return the number of posted tasks, that have been dropped, because they had been superseded by newer ones
+     */
+    synchronized long getSupersededCount() {
+        return supersededCount;
+    }
+
+    /**
+     * @return the number of posted tasks, that have been rejected, because the inbox was full
+     */
+    synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    private void enqueue(Task task) {
+        inbox.add(task);
+        depth++;
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        if (thread == null) {
+            thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        else {
+            notify();
+        }
+    }
+
+    // returns null, if the loop has been shut down
+    private synchronized Task take() throws InterruptedException {
+        Task res;
+        do {
+            while (inbox.isEmpty()) {
+                if (shutdown) {
+                    return null;
+                }
+                wait();
+            }
+            res = inbox.poll();
+        }
+        while (res.superseded);
+        depth--;
+        if (res.result == null) {
+            waitingPosted--;
+            if (res.key != null) {
+                waitingByKey.remove(res.key);
+            }
+        }
+        return res;
+    }
+
+    private void run() {
+        try {
+            Task task;
+            while ((task = take()) != null) {
+                try {
+                    Object res = task.callable.call();
+                    if (task.result != null) {
+                        task.result.complete(res);
+                    }
+                }
+                catch (Throwable e) {
+                    if (task.result == null) {
+                        e.printStackTrace();
+                    }
+                    else {
+                        task.result.completeExceptionally(e);
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -46,6 +46,11 @@ public class IPFSAccess {
 
     private String peerIDBase64;
 
+    /**
+     * The optional local store for blocks, that have been loaded from or saved in IPFS.
+     */
+    private BlockStore blockStore;
+
     /**
      * Constructor.
      */
@@ -75,6 +80,15 @@ public class IPFSAccess {
                 ipfs = new IPFS(config.getIPFSHost(), config.getIPFSPort(), version, config.isIPFSSecure());
             }
         }
+        String blockStoreDirectory = config.getBlockStoreDirectory();
+        if (blockStoreDirectory != null) {
+            try {
+                blockStore = new BlockStore(new File(blockStoreDirectory), config.getBlockStoreMaxSize());
+            }
+            catch (IOException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
         try {
             Map<?, ?> id = ipfs.id();
             String peerID = (String) id.get("ID");
@@ -91,7 +105,8 @@ public class IPFSAccess {
     }
 
     /**
-     * Loads the object with the given multihash from IPFS as a DAG.
+     * Loads the object with the given multihash from IPFS as a DAG. The result is rendered by IPFS, so it can't be
+     * verified against the multihash, which is why it is not added to the local block store.
      * 
      * @param multihash the multihash
      * @return the loaded bytes (currently UTF-8 encoded JSON-String)
@@ -102,7 +117,32 @@ public class IPFSAccess {
     }
 
     /**
-     * Saves the object (its serialized binary form) in IPFS as a DAG.
+     * Loads the raw block with the given multihash from the local block store or, if not present there, from IPFS.
+     * Blocks loaded from IPFS are added to the local block store. Blocks are verified against the multihash, before
+     * they are added to or returned from the local block store.
+     * 
+     * @param multihash the multihash
+     * @return the loaded bytes (exactly as they have been saved, e.g. DAG-CBOR)
+     * @throws IOException if loading the block fails
+     */
+    public byte[] loadBlock(String multihash) throws IOException {
+        if (blockStore != null) {
+            byte[] stored = blockStore.get(multihash);
+            if (stored != null) {
+                return stored;
+            }
+        }
+        byte[] res = ipfs.block.get(Cid.decode(multihash));
+        if (blockStore != null && res != null) {
+            blockStore.put(multihash, res);
+        }
+        return res;
+    }
+
+    /**
+     * Saves the object (its serialized binary form) in IPFS as a DAG. If the input format equals the output format, the
+     * bytes are the stored block, so they are also added to the local block store (if they can be verified against the
+     * returned multihash).
      * 
      * @param inputFormat  the input format (the format in which the bytes are transferred to IPFS)
      * @param bytes        the bytes
@@ -112,7 +152,11 @@ public class IPFSAccess {
      */
     public String saveObject(String inputFormat, byte[] bytes, String outputFormat) throws IOException {
         MerkleNode node = ipfs.dag.put(inputFormat, bytes, outputFormat);
-        return node.hash.toString();
+        String res = node.hash.toString();
+        if (blockStore != null && inputFormat.equals(outputFormat)) {
+            blockStore.put(res, bytes);
+        }
+        return res;
     }
 
     /**
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.util.Collection;
+
+/**
+ * Cache for successfully saved or loaded objects, used by {@link IPLDContext}. Implementations must be thread-safe.
+ * 
+ * @author ProjectJinxers
+ */
+public interface IPLDCache {
+
+    /**
+     * @param multihash the multihash
+     * @return the cached object with the given multihash or null, if there is no such object
+     */
+    IPLDObject<?> get(String multihash);
+
+    /**
+     * Adds the given object to the cache. Implementations may evict other (unpinned) objects.
+     * 
+     * @param multihash the multihash
+     * @param object    the object to cache
+     */
+    void put(String multihash, IPLDObject<?> object);
+
+    /**
+     * Replaces the set of pinned multihashes. Objects with a pinned multihash are never evicted. Previously pinned
+     * objects, that are not contained in the given collection, become evictable again.
+     * 
+     * @param multihashes the multihashes to pin (null or empty for releasing all pins)
+     */
+    void pin(Collection<String> multihashes);
+
+    /**
+     * Removes all objects (including the pinned ones) from the cache. The pins themselves are kept.
+     */
+    void clear();
+
+    /**
+     * @return the number of cached objects
+     */
+    int size();
+
+    /**
+     * @return the number of successful lookups
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of failed lookups
+     */
+    long getMissCount();
+
+    /**
+     * @return the number of evicted objects
+     */
+    long getEvictionCount();
+
+}
@@ -0,0 +1,483 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.ethereum.crypto.ECKey.ECDSASignature;
+import org.projectjinxers.model.IPLDSerializable;
+import org.projectjinxers.model.Loader;
+import org.projectjinxers.model.LoaderFactory;
+import org.projectjinxers.model.Metadata;
+
+import io.ipfs.cid.Cid;
+
+/**
+ * DAG-CBOR implementation of the interface for reading (deserializing) objects from IPFS. Counterpart of
+ * {@link IPLDCborWriter}. Links (tag 42) are converted to their string representation. Links, that have been written as
+ * text strings, are read like in the JSON implementation.
+ * 
+ * @author ProjectJinxers
+ */
+public class IPLDCborReader implements IPLDReader {
+
+    /**
+     * Wrapper for decoded links, so they can be told apart from text strings.
+     */
+    private static class Link {
+
+        private final String cid;
+
+        Link(String cid) {
+            this.cid = cid;
+        }
+
+    }
+
+    private static final Object NULL = new Object();
+
+    private Map<String, Object> primitives = new HashMap<>();
+    private Map<String, Object[]> primitiveArrays = new HashMap<>();
+    private Map<String, String> links = new HashMap<>();
+    private Map<String, String[]> linkArrays = new HashMap<>();
+    private Map<String, String[][]> linkArrayArrays = new HashMap<>();
+
+    private byte[] bytes;
+    private int position;
+
+    IPLDCborReader() {
+
+    }
+
+    @Override
+    public Metadata read(IPLDContext context, ValidationContext validationContext, byte[] bytes, Loader<?> loader,
+            boolean eager) {
+        Metadata metadata = readValues(bytes);
+        IPLDSerializable dataInstance = loader.getOrCreateDataInstance(this, metadata);
+        dataInstance.read(this, context, validationContext, eager, metadata);
+        return metadata;
+    }
+
+    @Override
+    public String readLink(byte[] bytes, String key) {
+        readValues(bytes);
+        return readLink(key);
+    }
+
+    private Metadata readValues(byte[] bytes) {
+        this.bytes = bytes;
+        this.position = 0;
+        ECDSASignature signature = null;
+        int version = 0;
+        Object root = bytes.length > 0 ? readItem() : null;
+        if (root instanceof Map) {
+            for (Entry<?, ?> entry : ((Map<?, ?>) root).entrySet()) {
+                Object key = entry.getKey();
+                Object value = entry.getValue();
+                if (value instanceof Map) {
+                    Map<?, ?> map = (Map<?, ?>) value;
+                    if (IPLDJsonReader.KEY_METADATA.equals(key)) {
+                        if (map.containsKey(IPLDJsonReader.KEY_SIGNATURE_R)) {
+                            BigInteger r = toBigInteger(map.get(IPLDJsonReader.KEY_SIGNATURE_R));
+                            BigInteger s = toBigInteger(map.get(IPLDJsonReader.KEY_SIGNATURE_S));
+                            byte v = ((Number) map.get(IPLDJsonReader.KEY_SIGNATURE_V)).byteValue();
+                            signature = new ECDSASignature(r, s);
+                            signature.v = v;
+                        }
+                        version = ((Number) map.get(IPLDJsonReader.KEY_VERSION)).intValue();
+                    }
+                    else if (IPLDJsonReader.KEY_DATA.equals(key)) {
+                        readData(map);
+                    }
+                }
+            }
+        }
+        this.bytes = null;
+        return new Metadata(version, signature);
+    }
+
+    private void readData(Map<?, ?> data) {
+        for (Entry<?, ?> entry : data.entrySet()) {
+            String key = (String) entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof Link) {
+                links.put(key, ((Link) value).cid);
+            }
+            else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                Object first = list.isEmpty() ? null : list.get(0);
+                if (first instanceof Link) {
+                    linkArrays.put(key, getLinkArray(list));
+                }
+                else if (first instanceof List) {
+                    String[][] linkArrayValues = new String[list.size()][];
+                    int i = 0;
+                    for (Object item : list) {
+                        linkArrayValues[i++] = getLinkArray((List<?>) item);
+                    }
+                    linkArrayArrays.put(key, linkArrayValues);
+                }
+                else {
+                    primitiveArrays.put(key, list.toArray());
+                }
+            }
+            else if (value != NULL) {
+                primitives.put(key, value);
+            }
+        }
+    }
+
+    private String getLink(Object item) {
+        return item instanceof Link ? ((Link) item).cid : (String) item;
+    }
+
+    private String[] getLinkArray(List<?> list) {
+        String[] res = new String[list.size()];
+        int i = 0;
+        for (Object item : list) {
+            res[i++] = getLink(item);
+        }
+        return res;
+    }
+
+    private static BigInteger toBigInteger(Object value) {
+        if (value instanceof byte[]) {
+            return new BigInteger(1, (byte[]) value);
+        }
+        if (value instanceof BigInteger) {
+            return (BigInteger) value;
+        }
+        if (value instanceof String) {
+            return new BigInteger((String) value);
+        }
+        return BigInteger.valueOf(((Number) value).longValue());
+    }
+
+    private Object readItem() {
+        int initial = nextByte();
+        int major = initial >>> 5;
+        int additional = initial & 0x1F;
+        if (major == IPLDCborWriter.MAJOR_SIMPLE) {
+            switch (additional) {
+            case 20:
+                return Boolean.FALSE;
+            case 21:
+                return Boolean.TRUE;
+            case 22:
+            case 23:
+                return NULL;
+            case 26:
+                return (double) Float.intBitsToFloat((int) readBigEndian(4));
+            case 27:
+                return Double.longBitsToDouble(readBigEndian(8));
+            default:
+                throw new IllegalArgumentException("unsupported simple value or float: " + additional);
+            }
+        }
+        long argument = readArgument(additional);
+        switch (major) {
+        case IPLDCborWriter.MAJOR_UNSIGNED:
+            if (argument < 0) {
+                return new BigInteger(Long.toUnsignedString(argument));
+            }
+            return argument;
+        case IPLDCborWriter.MAJOR_NEGATIVE:
+            if (argument < 0) {
+                return BigInteger.ONE.negate().subtract(new BigInteger(Long.toUnsignedString(argument)));
+            }
+            return -1 - argument;
+        case IPLDCborWriter.MAJOR_BYTES:
+            return readBytes(argument);
+        case IPLDCborWriter.MAJOR_TEXT:
+            return new String(readBytes(argument), StandardCharsets.UTF_8);
+        case IPLDCborWriter.MAJOR_ARRAY: {
+            List<Object> res = new ArrayList<>(checkLength(argument));
+            for (long i = 0; i < argument; i++) {
+                res.add(readItem());
+            }
+            return res;
+        }
+        case IPLDCborWriter.MAJOR_MAP: {
+            Map<Object, Object> res = new LinkedHashMap<>();
+            for (long i = 0; i < argument; i++) {
+                Object key = readItem();
+                res.put(key, readItem());
+            }
+            return res;
+        }
+        default: // MAJOR_TAG
+            Object tagged = readItem();
+            if (argument == IPLDCborWriter.TAG_CID && tagged instanceof byte[]) {
+                byte[] cid = (byte[]) tagged;
+                // skip the multibase prefix for raw binary
+                return new Link(Cid.cast(Arrays.copyOfRange(cid, 1, cid.length)).toString());
+            }
+            throw new IllegalArgumentException("unsupported tag: " + argument);
+        }
+    }
+
+    private long readArgument(int additional) {
+        if (additional < 24) {
+            return additional;
+        }
+        switch (additional) {
+        case 24:
+            return readBigEndian(1);
+        case 25:
+            return readBigEndian(2);
+        case 26:
+            return readBigEndian(4);
+        case 27:
+            return readBigEndian(8);
+        default:
+            throw new IllegalArgumentException("indefinite lengths are not allowed in DAG-CBOR");
+        }
+    }
+
+    private long readBigEndian(int length) {
+        long res = 0;
+        for (int i = 0; i < length; i++) {
+            res = res << 8 | nextByte();
+        }
+        return res;
+    }
+
+    private byte[] readBytes(long length) {
+        int len = checkLength(length);
+        if (position + len > bytes.length) {
+            throw new IllegalArgumentException("unexpected end of input");
+        }
+        byte[] res = Arrays.copyOfRange(bytes, position, position + len);
+        position += len;
+        return res;
+    }
+
+    private int checkLength(long length) {
+        if (length < 0 || length > bytes.length - position) {
+            throw new IllegalArgumentException("invalid length: " + length);
+        }
+        return (int) length;
+    }
+
+    private int nextByte() {
+        if (position >= bytes.length) {
+            throw new IllegalArgumentException("unexpected end of input");
+        }
+        return bytes[position++] & 0xFF;
+    }
+
+    @Override
+    public boolean hasPrimitiveKey(String key) {
+        return primitives.containsKey(key);
+    }
+
+    @Override
+    public boolean hasLinkKey(String key) {
+        return links.containsKey(key) || primitives.containsKey(key);
+    }
+
+    @Override
+    public boolean hasPrimitiveArrayKey(String key) {
+        return primitiveArrays.containsKey(key);
+    }
+
+    @Override
+    public boolean hasLinkArrayKey(String key) {
+        return linkArrays.containsKey(key) || primitiveArrays.containsKey(key);
+    }
+
+    @Override
+    public Object readPrimitive(String key) {
+        return primitives.get(key);
+    }
+
+    @Override
+    public Boolean readBoolean(String key) {
+        return (Boolean) primitives.get(key);
+    }
+
+    @Override
+    public Character readCharacter(String key) {
+        Number number = (Number) primitives.get(key);
+        return number == null ? null : (char) number.intValue();
+    }
+
+    @Override
+    public Number readNumber(String key) {
+        return (Number) primitives.get(key);
+    }
+
+    @Override
+    public String readString(String key) {
+        Object primitive = primitives.get(key);
+        return primitive == null ? null : primitive.toString();
+    }
+
+    @Override
+    public String readLink(String key) {
+        String res = links.get(key);
+        return res == null ? readString(key) : res;
+    }
+
+    @Override
+    public boolean[] readBooleanArray(String key) {
+        Object[] values = primitiveArrays.get(key);
+        if (values == null) {
+            return null;
+        }
+        boolean[] res = new boolean[values.length];
+        int i = 0;
+        for (Object value : values) {
+            res[i++] = (Boolean) value;
+        }
+        return res;
+    }
+
+    @Override
+    public byte[] readByteArray(String key, ByteCodec codec) {
+        Object primitive = primitives.get(key);
+        if (primitive instanceof byte[]) {
+            return (byte[]) primitive;
+        }
+        return primitive == null ? null : codec.decode(primitive.toString());
+    }
+
+    @Override
+    public char[] readCharArray(String key) {
+        Object[] values = primitiveArrays.get(key);
+        if (values == null) {
+            return null;
+        }
+        char[] res = new char[values.length];
+        int i = 0;
+        for (Object value : values) {
+            res[i++] = (char) ((Number) value).intValue();
+        }
+        return res;
+    }
+
+    @Override
+    public int[] readIntArray(String key) {
+        Object[] values = primitiveArrays.get(key);
+        if (values == null) {
+            return null;
+        }
+        int[] res = new int[values.length];
+        int i = 0;
+        for (Object value : values) {
+            res[i++] = ((Number) value).intValue();
+        }
+        return res;
+    }
+
+    @Override
+    public long[] readLongArray(String key) {
+        Object[] values = primitiveArrays.get(key);
+        if (values == null) {
+            return null;
+        }
+        long[] res = new long[values.length];
+        int i = 0;
+        for (Object value : values) {
+            res[i++] = ((Number) value).longValue();
+        }
+        return res;
+    }
+
+    @Override
+    public Number[] readNumberArray(String key) {
+        Object[] values = primitiveArrays.get(key);
+        if (values == null) {
+            return null;
+        }
+        Number[] res = new Number[values.length];
+        int i = 0;
+        for (Object value : values) {
+            res[i++] = (Number) value;
+        }
+        return res;
+    }
+
+    @Override
+    public String[] readStringArray(String key) {
+        Object[] values = primitiveArrays.get(key);
+        if (values == null) {
+            return null;
+        }
+        String[] res = new String[values.length];
+        int i = 0;
+        for (Object value : values) {
+            res[i++] = value.toString();
+        }
+        return res;
+    }
+
+    @Override
+    public String[] readLinksArray(String key) {
+        String[] res = linkArrays.get(key);
+        return res == null ? readStringArray(key) : res;
+    }
+
+    @Override
+    public Map<String, String[]> readLinkCollections(String key) {
+        String[][] linkArrays = linkArrayArrays.get(key);
+        if (linkArrays == null) {
+            return null;
+        }
+        Map<String, String[]> res = new LinkedHashMap<>();
+        String[] keys = linkArrays[0];
+        for (int i = 1; i < linkArrays.length; i++) {
+            res.put(keys[i - 1], linkArrays[i]);
+        }
+        return res;
+    }
+
+    @Override
+    public <D extends IPLDSerializable> Map<String, IPLDObject<D>[]> readLinkObjectCollections(String key,
+            IPLDContext context, ValidationContext validationContext, LoaderFactory<D> loaderFactory, boolean eager,
+            KeyProvider<D> keyProvider) {
+        String[][] linkArrays = linkArrayArrays.get(key);
+        if (linkArrays == null) {
+            return null;
+        }
+        Map<String, IPLDObject<D>[]> res = new LinkedHashMap<>();
+        for (String[] linkArray : linkArrays) {
+            @SuppressWarnings("unchecked")
+            IPLDObject<D>[] array = (IPLDObject<D>[]) Array.newInstance(IPLDObject.class, linkArray.length);
+            int i = 0;
+            for (String link : linkArray) {
+                IPLDObject<D> linkObject = new IPLDObject<>(link, loaderFactory.createLoader(), context,
+                        validationContext);
+                if (eager) {
+                    linkObject.getMapped();
+                }
+                array[i++] = linkObject;
+            }
+            if (array.length > 0) {
+                res.put(keyProvider.getKey(array[0]), array);
+            }
+        }
+        return res;
+    }
+
+}
@@ -0,0 +1,496 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.ethereum.crypto.ECKey.ECDSASignature;
+import org.projectjinxers.account.Signer;
+import org.projectjinxers.controller.IPLDObject.ProgressListener;
+import org.projectjinxers.model.IPLDSerializable;
+import org.projectjinxers.model.Metadata;
+import org.spongycastle.util.BigIntegers;
+
+import io.ipfs.cid.Cid;
+
+/**
+ * DAG-CBOR implementation of the interface for writing (serializing) objects to IPFS. The output is canonical (map keys
+ * sorted by length first, then bytewise, minimal length headers), so it can be stored by IPFS as is and its CID can be
+ * calculated locally. Links are written as CIDs with tag 42, byte arrays and signature parts as byte strings. Links,
+ * that are not valid CIDs, are written as text strings. Like the JSON implementation, null values are skipped.
+ * 
+ * @author ProjectJinxers
+ */
+public class IPLDCborWriter implements IPLDWriter {
+
+    static final int MAJOR_UNSIGNED = 0;
+    static final int MAJOR_NEGATIVE = 1;
+    static final int MAJOR_BYTES = 2;
+    static final int MAJOR_TEXT = 3;
+    static final int MAJOR_ARRAY = 4;
+    static final int MAJOR_MAP = 5;
+    static final int MAJOR_TAG = 6;
+    static final int MAJOR_SIMPLE = 7;
+
+    static final int TAG_CID = 42;
+
+    private static final int SIMPLE_FALSE = 0xF4;
+    private static final int SIMPLE_TRUE = 0xF5;
+    private static final int FLOAT_64 = 0xFB;
+
+    /**
+     * Growable byte buffer. Values are written in place, so there are no intermediate copies.
+     */
+    static class Buffer {
+
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void write(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] src, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(src, offset, bytes, size, length);
+            size += length;
+        }
+
+        void writeHeader(int major, long value) {
+            int type = major << 5;
+            if (value < 24) {
+                write(type | (int) value);
+            }
+            else if (value < 0x100) {
+                write(type | 24);
+                write((int) value);
+            }
+            else if (value < 0x10000) {
+                write(type | 25);
+                writeBigEndian(value, 2);
+            }
+            else if (value < 0x100000000L) {
+                write(type | 26);
+                writeBigEndian(value, 4);
+            }
+            else {
+                write(type | 27);
+                writeBigEndian(value, 8);
+            }
+        }
+
+        void writeBigEndian(long value, int length) {
+            for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+                write((int) (value >>> shift));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void ensureCapacity(int additional) {
+            if (size + additional > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+            }
+        }
+
+    }
+
+    /**
+     * A map entry, whose value has already been written to the value buffer. The entries are sorted before the map is
+     * written.
+     */
+    private static class Field implements Comparable<Field> {
+
+        private final byte[] key;
+        private final int start;
+        private int end;
+
+        Field(byte[] key, int start) {
+            this.key = key;
+            this.start = start;
+        }
+
+        @Override
+        public int compareTo(Field o) {
+            if (key.length != o.key.length) {
+                return key.length - o.key.length;
+            }
+            return Arrays.compareUnsigned(key, o.key);
+        }
+
+    }
+
+    private Buffer values;
+    private List<Field> fields;
+
+    IPLDCborWriter() {
+
+    }
+
+    @Override
+    public byte[] write(IPLDContext context, IPLDObject<?> object, Signer signer, ProgressListener progressListener)
+            throws IOException {
+        values = new Buffer();
+        fields = new ArrayList<>();
+        object.write(this, signer, context, progressListener);
+        // "data" and "meta" have the same length, "data" is lexicographically smaller
+        Buffer res = new Buffer();
+        res.writeHeader(MAJOR_MAP, 2);
+        writeText(res, IPLDJsonReader.KEY_DATA);
+        writeDataMap(res);
+        // the signature covers the hash base of the CBOR encoding (see IPLDEncoding.DAG_CBOR)
+        IPLDSerializable data = object.getMapped();
+        byte[] hashBase = object.getForeignSignature() != null || !data.isSignatureMandatory() ? null
+                : IPLDEncoding.DAG_CBOR.createHashBaseWriter().hashBase(context, data);
+        Metadata metadata = object.signIfMandatory(signer, hashBase);
+        if (progressListener != null && object.getForeignSignature() == null && metadata.getSignature() != null
+                && progressListener != object.getProgressListener()) {
+            progressListener.nextStep();
+        }
+        writeText(res, IPLDJsonReader.KEY_METADATA);
+        writeMetadata(res, metadata);
+        if (progressListener != null) {
+            progressListener.nextStep();
+        }
+        return res.toByteArray();
+    }
+
+    @Override
+    public byte[] hashBase(IPLDContext context, IPLDSerializable data) throws IOException {
+        values = new Buffer();
+        fields = new ArrayList<>();
+        data.write(this, null, context, null);
+        Buffer res = new Buffer();
+        writeDataMap(res);
+        return res.toByteArray();
+    }
+
+    @Override
+    public void writeBoolean(String key, Boolean value) throws IOException {
+        if (value != null) {
+            Field field = startField(key);
+            values.write(value ? SIMPLE_TRUE : SIMPLE_FALSE);
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeChar(String key, Character value) throws IOException {
+        if (value != null) {
+            Field field = startField(key);
+            values.writeHeader(MAJOR_UNSIGNED, value);
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeNumber(String key, Number value) throws IOException {
+        if (value != null) {
+            Field field = startField(key);
+            writeNumber(value);
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeString(String key, String value) throws IOException {
+        if (value != null) {
+            Field field = startField(key);
+            writeText(values, value);
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeLink(String key, String link) throws IOException {
+        if (link != null) {
+            Field field = startField(key);
+            writeLink(link);
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeBooleanArray(String key, boolean[] value) throws IOException {
+        if (value != null && value.length > 0) {
+            Field field = startField(key);
+            values.writeHeader(MAJOR_ARRAY, value.length);
+            for (boolean val : value) {
+                values.write(val ? SIMPLE_TRUE : SIMPLE_FALSE);
+            }
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeByteArray(String key, byte[] value, ByteCodec codec) throws IOException {
+        if (value != null && value.length > 0) {
+            Field field = startField(key);
+            values.writeHeader(MAJOR_BYTES, value.length);
+            values.write(value, 0, value.length);
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeCharArray(String key, char[] value) throws IOException {
+        if (value != null && value.length > 0) {
+            Field field = startField(key);
+            values.writeHeader(MAJOR_ARRAY, value.length);
+            for (char val : value) {
+                values.writeHeader(MAJOR_UNSIGNED, val);
+            }
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeIntArray(String key, int[] value) throws IOException {
+        if (value != null && value.length > 0) {
+            Field field = startField(key);
+            values.writeHeader(MAJOR_ARRAY, value.length);
+            for (int val : value) {
+                writeLong(val);
+            }
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeLongArray(String key, long[] value) throws IOException {
+        if (value != null && value.length > 0) {
+            Field field = startField(key);
+            values.writeHeader(MAJOR_ARRAY, value.length);
+            for (long val : value) {
+                writeLong(val);
+            }
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeNumberArray(String key, Number[] value) throws IOException {
+        if (value != null && value.length > 0) {
+            Field field = startField(key);
+            values.writeHeader(MAJOR_ARRAY, value.length);
+            for (Number val : value) {
+                writeNumber(val);
+            }
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeStringArray(String key, String[] value) throws IOException {
+        if (value != null && value.length > 0) {
+            Field field = startField(key);
+            values.writeHeader(MAJOR_ARRAY, value.length);
+            for (String val : value) {
+                writeText(values, val);
+            }
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeLinkArray(String key, String[] links) throws IOException {
+        if (links != null && links.length > 0) {
+            Field field = startField(key);
+            values.writeHeader(MAJOR_ARRAY, links.length);
+            for (String link : links) {
+                writeLink(link);
+            }
+            endField(field);
+        }
+    }
+
+    @Override
+    public void writeLinkArray(String key, IPLDObject<?>[] links, Signer signer, IPLDContext context,
+            ProgressListener progressListener) throws IOException {
+        if (links != null && links.length > 0) {
+            String[] multihashes = new String[links.length];
+            int i = 0;
+            for (IPLDObject<?> link : links) {
+                String multihash = link.getMultihash();
+                if (multihash == null) {
+                    multihash = link.save(context, signer, progressListener);
+                }
+                multihashes[i++] = multihash;
+            }
+            writeLinkArray(key, multihashes);
+        }
+    }
+
+    @Override
+    public void writeLinkArrays(String key, Map<String, String[]> links) throws IOException {
+        if (links != null && links.size() > 0) {
+            // same layout as the JSON implementation: the first array contains the keys
+            Field field = startField(key);
+            values.writeHeader(MAJOR_ARRAY, links.size() + 1);
+            values.writeHeader(MAJOR_ARRAY, links.size());
+            for (String group : links.keySet()) {
+                writeLink(group);
+            }
+            for (String[] linkArray : links.values()) {
+                values.writeHeader(MAJOR_ARRAY, linkArray.length);
+                for (String link : linkArray) {
+                    writeLink(link);
+                }
+            }
+            endField(field);
+        }
+    }
+
+    @Override
+    public <D extends IPLDSerializable> void writeLinkObjectArrays(String key, Map<String, IPLDObject<D>[]> linkArrays,
+            Signer signer, IPLDContext context, ProgressListener progressListener) throws IOException {
+        if (linkArrays != null && linkArrays.size() > 0) {
+            // links have to be saved before the field is started, saving them must not interleave with our buffer
+            List<String[]> multihashArrays = new ArrayList<>();
+            for (IPLDObject<D>[] linkArray : linkArrays.values()) {
+                if (linkArray.length > 0) {
+                    String[] multihashes = new String[linkArray.length];
+                    int i = 0;
+                    for (IPLDObject<?> link : linkArray) {
+                        String multihash = link.getMultihash();
+                        if (multihash == null) {
+                            multihash = link.save(context, signer, progressListener);
+                        }
+                        multihashes[i++] = multihash;
+                    }
+                    multihashArrays.add(multihashes);
+                }
+            }
+            Field field = startField(key);
+            values.writeHeader(MAJOR_ARRAY, multihashArrays.size());
+            for (String[] multihashes : multihashArrays) {
+                values.writeHeader(MAJOR_ARRAY, multihashes.length);
+                for (String multihash : multihashes) {
+                    writeLink(multihash);
+                }
+            }
+            endField(field);
+        }
+    }
+
+    private Field startField(String key) {
+        Field res = new Field(key.getBytes(StandardCharsets.UTF_8), values.size());
+        fields.add(res);
+        return res;
+    }
+
+    private void endField(Field field) {
+        field.end = values.size();
+    }
+
+    private void writeDataMap(Buffer out) {
+        Collections.sort(fields);
+        out.writeHeader(MAJOR_MAP, fields.size());
+        for (Field field : fields) {
+            out.writeHeader(MAJOR_TEXT, field.key.length);
+            out.write(field.key, 0, field.key.length);
+            out.write(values.bytes, field.start, field.end - field.start);
+        }
+    }
+
+    private void writeNumber(Number value) {
+        if (value instanceof Double || value instanceof Float || value instanceof BigDecimal) {
+            // DAG-CBOR only allows 64 bit floats
+            values.write(FLOAT_64);
+            values.writeBigEndian(Double.doubleToLongBits(value.doubleValue()), 8);
+        }
+        else if (value instanceof BigInteger && ((BigInteger) value).bitLength() > 63) {
+            throw new IllegalArgumentException("number out of range: " + value);
+        }
+        else {
+            writeLong(value.longValue());
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value < 0) {
+            values.writeHeader(MAJOR_NEGATIVE, -1 - value);
+        }
+        else {
+            values.writeHeader(MAJOR_UNSIGNED, value);
+        }
+    }
+
+    private void writeLink(String link) {
+        byte[] cid = toCidBytes(link);
+        if (cid == null) {
+            writeText(values, link);
+            return;
+        }
+        values.writeHeader(MAJOR_TAG, TAG_CID);
+        // the leading zero is the multibase prefix for raw binary
+        values.writeHeader(MAJOR_BYTES, cid.length + 1);
+        values.write(0);
+        values.write(cid, 0, cid.length);
+    }
+
+    private static byte[] toCidBytes(String link) {
+        try {
+            Cid cid = Cid.decode(link);
+            // make sure, the link survives a round trip (e.g. a hex string might be accepted as base16 or base32)
+            return link.equals(cid.toString()) ? cid.toBytes() : null;
+        }
+        catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void writeText(Buffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeHeader(MAJOR_TEXT, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeMetadata(Buffer out, Metadata metadata) {
+        ECDSASignature signature = metadata.getSignature();
+        // canonical order: "r", "s", "v", "version"
+        out.writeHeader(MAJOR_MAP, signature == null ? 1 : 4);
+        if (signature != null) {
+            writeText(out, IPLDJsonReader.KEY_SIGNATURE_R);
+            writeBytes(out, BigIntegers.asUnsignedByteArray(signature.r));
+            writeText(out, IPLDJsonReader.KEY_SIGNATURE_S);
+            writeBytes(out, BigIntegers.asUnsignedByteArray(signature.s));
+            writeText(out, IPLDJsonReader.KEY_SIGNATURE_V);
+            out.writeHeader(MAJOR_UNSIGNED, signature.v & 0xFF);
+        }
+        writeText(out, IPLDJsonReader.KEY_VERSION);
+        out.writeHeader(MAJOR_UNSIGNED, metadata.getVersion());
+    }
+
+    private static void writeBytes(Buffer out, byte[] bytes) {
+        out.writeHeader(MAJOR_BYTES, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+}
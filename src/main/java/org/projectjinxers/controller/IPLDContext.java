@@ -14,15 +14,26 @@
 package org.projectjinxers.controller;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.ethereum.crypto.ECKey.ECDSASignature;
 import org.projectjinxers.account.Signer;
+import org.projectjinxers.config.Config;
 import org.projectjinxers.controller.IPLDObject.ProgressListener;
 import org.projectjinxers.model.IPLDSerializable;
 import org.projectjinxers.model.Loader;
 import org.projectjinxers.model.Metadata;
+import org.projectjinxers.model.ModelState;
 import org.projectjinxers.model.User;
 
 /**
@@ -33,15 +44,90 @@ import org.projectjinxers.model.User;
  */
 public class IPLDContext {
 
+    /**
+     * The uploads, that have been started in the background during one (recursive) save operation, and the objects,
+     * that are to be cached, when all uploads have been confirmed.
+     */
+    private static class PendingUploads {
+
+        private final List<Future<String>> uploads = new ArrayList<>();
+        private final List<String> multihashes = new ArrayList<>();
+        private final List<IPLDObject<?>> objects = new ArrayList<>();
+
+        void add(Future<String> upload, IPLDObject<?> object, String multihash) {
+            uploads.add(upload);
+            multihashes.add(multihash);
+            objects.add(object);
+        }
+
+        void await() throws IOException {
+            IOException failure = null;
+            for (Future<String> upload : uploads) {
+                try {
+                    upload.get();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while waiting for uploads", e);
+                }
+                catch (ExecutionException e) {
+                    if (failure == null) {
+                        Throwable cause = e.getCause();
+                        failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+    }
+
+    /**
+     * The maximum number of links to follow per chain while prefetching (older local versions might not be cached).
+     */
+    private static final int MAX_PREFETCH_CHAIN_LENGTH = 64;
+
+    /**
+     * The executor for asynchronous loads, shared by all contexts (created on demand).
+     */
+    private static ExecutorService loadExecutor;
+
+    /**
+     * @return the executor for asynchronous loads, shared by all contexts (bounded by the configured number of load
+     *         threads, the threads are daemon threads); not meant for tasks, that block for a long time
+     */
+    public static synchronized ExecutorService getLoadExecutor() {
+        if (loadExecutor == null) {
+            loadExecutor = Executors.newFixedThreadPool(Config.getSharedInstance().getIPFSLoadThreads(), runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return loadExecutor;
+    }
+
     private final IPFSAccess access;
     private final IPLDEncoding in;
     private final IPLDEncoding out;
     private final boolean eager;
 
-    private Map<String, IPLDObject<?>> cache = new HashMap<>();
+    private final IPLDCache cache;
+    private final Map<String, CompletableFuture<IPLDObject<?>>> pendingLoads = new ConcurrentHashMap<>();
+    private ExecutorService saveExecutor;
+    private ExecutorService verificationExecutor;
+    private ExecutorService prefetchExecutor;
+    private final Map<String, CompletableFuture<byte[]>> prefetchedBlocks = new ConcurrentHashMap<>();
+    private volatile int prefetchGeneration; // incremented when clearing, stops following chains
+    private VerifiedSignatureCache verifiedSignatures = new VerifiedSignatureCache(
+            Config.DEFAULT_CACHE_MAX_VERIFIED_SIGNATURES);
+    // the uploads of the current root save operation of each thread
+    private final ThreadLocal<PendingUploads> pendingUploads = new ThreadLocal<>();
 
     /**
-     * Constructor.
+     * Constructor. The cache is bounded by {@link Config#DEFAULT_CACHE_MAX_ENTRIES}.
      * 
      * @param access the access to the IPFS API
      * @param in     the encoding for submitting data to the IPFS node (IPFS' point of view)
@@ -49,14 +135,34 @@ public class IPLDContext {
      * @param eager  indicates whether or not links are to be resolved instantly (as opposed to on-demand)
      */
     public IPLDContext(IPFSAccess access, IPLDEncoding in, IPLDEncoding out, boolean eager) {
+        this(access, in, out, eager, new LRUIPLDCache(Config.DEFAULT_CACHE_MAX_ENTRIES));
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param access the access to the IPFS API
+     * @param in     the encoding for submitting data to the IPFS node (IPFS' point of view)
+     * @param out    the encoding for saving data in and reading data from IPFS (IPFS' point of view)
+     * @param eager  indicates whether or not links are to be resolved instantly (as opposed to on-demand)
+     * @param cache  the cache for saved and loaded objects
+     */
+    public IPLDContext(IPFSAccess access, IPLDEncoding in, IPLDEncoding out, boolean eager, IPLDCache cache) {
         this.access = access;
         this.in = in;
         this.out = out;
         this.eager = eager;
+        this.cache = cache;
     }
 
     /**
      * Serializes and stores the given object in IPFS. If successful, the given object will also be added to the cache.
+     * If a save executor has been set, and the object is submitted in the encoding it is stored in, the multihashes are
+     * calculated locally, and the uploads of the object and its unsaved links run in the background, while the
+     * remaining links are serialized. This method returns after all of these uploads have been confirmed. The objects
+     * are cached only then. If an upload fails, the multihashes of the saved links are reset. If the object is
+     * submitted in a different encoding (e.g. JSON, that is stored as CBOR), the multihashes can only be assigned by
+     * IPFS, so if a save executor has been set, the unsaved links are saved concurrently, level by level, beforehand.
      * 
      * @param object the object to serialize and store
      * @param signer the optional signer key (if present, and the concrete data instance type supports signing, a
@@ -66,14 +172,72 @@ public class IPLDContext {
      */
     public String saveObject(IPLDObject<?> object, Signer signer, ProgressListener progressListener)
             throws IOException {
+        if (saveExecutor != null && in == out) {
+            PendingUploads pending = pendingUploads.get();
+            if (pending != null) {
+                // a link, that is saved recursively, the root save operation awaits the upload
+                return startUpload(object, signer, progressListener, pending);
+            }
+            pending = new PendingUploads();
+            pendingUploads.set(pending);
+            String multihash;
+            try {
+                multihash = startUpload(object, signer, progressListener, pending);
+                pending.await();
+            }
+            catch (IOException | RuntimeException e) {
+                rollBack(pending);
+                throw e;
+            }
+            finally {
+                pendingUploads.remove();
+            }
+            for (int i = 0; i < pending.objects.size(); i++) {
+                cache.put(pending.multihashes.get(i), pending.objects.get(i).withoutContext(null));
+            }
+            return multihash;
+        }
+        if (saveExecutor != null) {
+            new ParallelSaver(saveExecutor).saveLinks(this, object, signer, progressListener);
+        }
         byte[] bytes = serializeObject(object, signer, progressListener);
         String multihash = access.saveObject(in.getIn(), bytes, out.getIn());
-        synchronized (cache) {
-            cache.put(multihash, object.withoutContext(null));
-        }
+        cache.put(multihash, object.withoutContext(null));
         return multihash;
     }
 
+    private String startUpload(IPLDObject<?> object, Signer signer, ProgressListener progressListener,
+            PendingUploads pending) throws IOException {
+        byte[] bytes = serializeObject(object, signer, progressListener);
+        String calculated = CidCalculator.calculate(out, bytes);
+        pending.add(saveExecutor.submit(() -> {
+            String uploaded = access.saveObject(in.getIn(), bytes, out.getIn());
+            if (!calculated.equals(uploaded)) {
+                throw new IOException("expected multihash " + calculated + ", IPFS returned " + uploaded);
+            }
+            return uploaded;
+        }), object, calculated);
+        return calculated;
+    }
+
+    private void rollBack(PendingUploads pending) {
+        for (Future<String> upload : pending.uploads) {
+            try {
+                upload.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            catch (ExecutionException e) {
+                // the failure is reported by the caller
+            }
+        }
+        for (IPLDObject<?> object : pending.objects) {
+            object.resetMultihash();
+        }
+    }
+
     /**
      * Serializes the given object. The given object won't be cached, saved children will.
      * 
@@ -91,40 +255,155 @@ public class IPLDContext {
 
     /**
      * Reads and deserializes the object addressed under the given multihash. If the cache contains the multihash, the
-     * cached instance is returned instead.
+     * cached instance is returned instead. If another thread is already loading an object with the same multihash,
+     * this method waits for that thread to finish and returns its result as if it had been taken from the cache. Only
+     * if that load operation fails, the object is loaded again by the calling thread.
      * 
      * @param multihash the multihash of the object to load
      * @param loader    the loader
      * @return the load result containing either the metadata of the read object containing the optional signature
-     *         (read, no signing happens here) or the cached object
+     *         (read, no signing happens here) or the cached object (null if the object could not be found)
      * @throws IOException if a single read operation fails
      */
     public LoadResult loadObject(String multihash, Loader<?> loader, ValidationContext validationContext)
             throws IOException {
-        synchronized (cache) {
-            IPLDObject<?> fromCache = cache.get(multihash);
-            if (fromCache != null) {
-                return new LoadResult(fromCache);
+        IPLDObject<?> fromCache = cache.get(multihash);
+        if (fromCache != null) {
+            return new LoadResult(fromCache);
+        }
+        CompletableFuture<IPLDObject<?>> pending = new CompletableFuture<>();
+        CompletableFuture<IPLDObject<?>> running = pendingLoads.putIfAbsent(multihash, pending);
+        if (running != null) {
+            try {
+                IPLDObject<?> loaded = running.join();
+                if (loaded != null) {
+                    return new LoadResult(loaded);
+                }
+            }
+            catch (RuntimeException e) {
+                // the other thread failed, the details have been reported there, we'll try again below
             }
+            return readObject(multihash, loader, validationContext);
         }
-        byte[] bytes = access.loadObject(multihash);
-        if (bytes == null) {
-            return null;
+        try {
+            LoadResult result = readObject(multihash, loader, validationContext);
+            pending.complete(result == null ? null : toLoadedObject(multihash, loader, result));
+            return result;
         }
-        return new LoadResult(loadObject(bytes, loader, validationContext));
+        catch (IOException | RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            pendingLoads.remove(multihash, pending);
+        }
+    }
+
+    private static <D extends IPLDSerializable> IPLDObject<D> toLoadedObject(String multihash, Loader<D> loader,
+            LoadResult result) {
+        return new IPLDObject<>(multihash, loader, null, null).withoutContext(result);
     }
 
+    /**
+     * Loads the given object (see {@link #loadObject(String, Loader, ValidationContext)}) and caches it.
+     * 
+     * @param object the object to load
+     * @return the load result (null if the object could not be found)
+     * @throws IOException if a single read operation fails
+     */
     <D extends IPLDSerializable> LoadResult loadObject(IPLDObject<D> object) throws IOException {
         String multihash = object.getMultihash();
         LoadResult result = loadObject(multihash, object.getLoader(), object.getValidationContext());
         if (result != null && result.getFromCache() == null) {
-            synchronized (cache) {
-                cache.put(multihash, object.withoutContext(result));
-            }
+            cache.put(multihash, object.withoutContext(result));
         }
         return result;
     }
 
+    private LoadResult readObject(String multihash, Loader<?> loader, ValidationContext validationContext)
+            throws IOException {
+        byte[] bytes = null;
+        CompletableFuture<byte[]> prefetched = prefetchedBlocks.remove(multihash);
+        if (prefetched != null) {
+            try {
+                bytes = prefetched.join();
+            }
+            catch (RuntimeException e) {
+                // we'll try again below
+            }
+        }
+        if (bytes == null) {
+            bytes = loadBlock(multihash);
+            if (bytes == null) {
+                return null;
+            }
+        }
+        return new LoadResult(loadObject(bytes, loader, validationContext));
+    }
+
+    private byte[] loadBlock(String multihash) throws IOException {
+        return out.isRawBlock() ? access.loadBlock(multihash) : access.loadObject(multihash);
+    }
+
+    /**
+     * Starts loading the blocks with the given multihashes in the background, if a prefetch executor has been set.
+     * Cached objects are skipped. The blocks are not read, so the objects are still read (and validated) by the thread
+     * that resolves them, but without waiting for IPFS. If a chain key is given, the link under that key is taken from
+     * each prefetched block and followed, until a cached or already prefetched block is reached (or
+     * {@value #MAX_PREFETCH_CHAIN_LENGTH} links have been followed). Prefetched blocks are kept until they are read or
+     * {@link #clearPrefetchedBlocks()} is called.
+     * 
+     * @param multihashes the multihashes of the blocks to prefetch
+     * @param chainKey    the key of the links to follow (e.g. the previous version; null for not following any links)
+     */
+    public void prefetch(Collection<String> multihashes, String chainKey) {
+        if (prefetchExecutor != null) {
+            for (String multihash : multihashes) {
+                prefetch(multihash, chainKey, MAX_PREFETCH_CHAIN_LENGTH);
+            }
+        }
+    }
+
+    private void prefetch(String multihash, String chainKey, int remainingChainLength) {
+        if (cache.get(multihash) != null || pendingLoads.containsKey(multihash)) {
+            return;
+        }
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        if (prefetchedBlocks.putIfAbsent(multihash, future) != null) {
+            return;
+        }
+        int generation = prefetchGeneration;
+        try {
+            prefetchExecutor.execute(() -> {
+                try {
+                    byte[] bytes = loadBlock(multihash);
+                    future.complete(bytes);
+                    if (bytes != null && chainKey != null && remainingChainLength > 0
+                            && generation == prefetchGeneration) {
+                        String link = out.createReader().readLink(bytes, chainKey);
+                        if (link != null) {
+                            prefetch(link, chainKey, remainingChainLength - 1);
+                        }
+                    }
+                }
+                catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            prefetchedBlocks.remove(multihash, future);
+        }
+    }
+
+    /**
+     * Discards all prefetched blocks, that have not been read, and stops following chains.
+     */
+    public void clearPrefetchedBlocks() {
+        prefetchGeneration++;
+        prefetchedBlocks.clear();
+    }
+
     /**
      * Deserializes the given bytes.
      * 
@@ -147,40 +426,55 @@ public class IPLDContext {
      * @param user     the user
      */
     public void verifySignature(IPLDObject<?> object, Signer verifier, User user) {
-        IPLDWriter writer = out.createWriter();
-        try {
-            byte[] hashBase = object.getMapped().hashBase(writer, this);
-            ECDSASignature signature = object.getMetadata().getSignature();
-            if (signature == null) {
-                throw new ValidationException("expected signature");
-            }
-            user.verifySignature(signature, hashBase, verifier);
-        }
-        catch (IOException e) {
-            throw new ValidationException("failed to verify signature", e);
-        }
+        verifySignature(object, verifier, user.getPublicKey());
     }
 
     /**
-     * Verifies the signature of the given object with the given public key.
+     * Verifies the signature of the given object with the given public key. Saved or loaded objects, whose signature
+     * has already been verified with the same public key, are not verified again.
      * 
      * @param object    the object
      * @param verifier  recreates the hash that had been signed and verifies the signature
      * @param publicKey the public key
      */
     public void verifySignature(IPLDObject<?> object, Signer verifier, byte[] publicKey) {
-        IPLDWriter writer = out.createWriter();
+        Metadata metadata = object.getMetadata();
+        ECDSASignature signature = metadata.getSignature();
+        if (signature == null) {
+            throw new ValidationException("expected signature");
+        }
+        String multihash = object.getMultihash();
+        VerifiedSignatureCache verifiedSignatures = this.verifiedSignatures;
+        if (multihash != null && verifiedSignatures.contains(multihash, publicKey)) {
+            return;
+        }
+        IPLDWriter writer = out.createHashBaseWriter();
         try {
             byte[] hashBase = object.getMapped().hashBase(writer, this);
-            ECDSASignature signature = object.getMetadata().getSignature();
-            if (signature == null) {
-                throw new ValidationException("expected signature");
-            }
             verifier.verifySignature(signature, hashBase, publicKey);
         }
         catch (IOException e) {
             throw new ValidationException("failed to verify signature", e);
         }
+        if (multihash != null) {
+            verifiedSignatures.add(multihash, publicKey);
+        }
+    }
+
+    /**
+     * @return the cache of verified signatures (provides the size and hit rate)
+     */
+    public VerifiedSignatureCache getVerifiedSignatureCache() {
+        return verifiedSignatures;
+    }
+
+    /**
+     * Replaces the cache of verified signatures.
+     * 
+     * @param verifiedSignatures the new cache
+     */
+    public void setVerifiedSignatureCache(VerifiedSignatureCache verifiedSignatures) {
+        this.verifiedSignatures = verifiedSignatures;
     }
 
     /**
@@ -195,4 +489,65 @@ public class IPLDContext {
         cache.clear();
     }
 
+    /**
+     * Pins the given model state and the objects it links to directly, so they won't be evicted from the cache. Objects
+     * pinned by a previous call are released.
+     * 
+     * @param modelState the model state to pin (null for releasing all pins)
+     */
+    public void pinModelState(IPLDObject<ModelState> modelState) {
+        if (modelState == null) {
+            cache.pin(null);
+        }
+        else {
+            Collection<String> multihashes = new ArrayList<>();
+            multihashes.add(modelState.getMultihash());
+            modelState.getMapped().collectLinkedMultihashes(multihashes);
+            cache.pin(multihashes);
+        }
+    }
+
+    /**
+     * Sets the executor for saving unsaved links concurrently. Pass null for saving them sequentially while writing.
+     * 
+     * @param saveExecutor the executor
+     */
+    public void setSaveExecutor(ExecutorService saveExecutor) {
+        this.saveExecutor = saveExecutor;
+    }
+
+    /**
+     * @return the executor for verifying signatures concurrently (null for sequential verification)
+     */
+    public ExecutorService getVerificationExecutor() {
+        return verificationExecutor;
+    }
+
+    /**
+     * Sets the executor for verifying the signatures of an incoming model state concurrently. Pass null for verifying
+     * them sequentially while validating.
+     * 
+     * @param verificationExecutor the executor
+     */
+    public void setVerificationExecutor(ExecutorService verificationExecutor) {
+        this.verificationExecutor = verificationExecutor;
+    }
+
+    /**
+     * Sets the executor for prefetching blocks (see {@link #prefetch(Collection, String)}). Pass null for disabling
+     * prefetching.
+     * 
+     * @param prefetchExecutor the executor
+     */
+    public void setPrefetchExecutor(ExecutorService prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    /**
+     * @return the cache (for statistics)
+     */
+    public IPLDCache getCache() {
+        return cache;
+    }
+
 }
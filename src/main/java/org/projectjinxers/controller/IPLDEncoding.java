@@ -23,7 +23,7 @@ public enum IPLDEncoding {
     /**
      * The JSON encoding/codec
      */
-    JSON("json", "json") {
+    JSON("json", "json", 0x0129) {
 
         @Override
         public IPLDReader createReader() {
@@ -39,7 +39,7 @@ public enum IPLDEncoding {
     /**
      * The CBOR encoding/codec
      */
-    CBOR("cbor", "cbor") {
+    CBOR("cbor", "cbor", 0x71) {
 
         @Override
         public IPLDReader createReader() {
@@ -51,14 +51,44 @@ public enum IPLDEncoding {
             return new IPLDJsonWriter(true, true);
         }
 
+    },
+    /**
+     * The native DAG-CBOR encoding/codec. Objects are stored as is, so they have to be loaded as raw blocks. The
+     * signatures still cover the hash base of the {@link #CBOR} encoding, so nodes with different encodings can verify
+     * each other's signatures.
+     */
+    DAG_CBOR("cbor", "cbor", 0x71) {
+
+        @Override
+        public IPLDReader createReader() {
+            return new IPLDCborReader();
+        }
+
+        @Override
+        public IPLDWriter createWriter() {
+            return new IPLDCborWriter();
+        }
+
+        @Override
+        public IPLDWriter createHashBaseWriter() {
+            return CBOR.createWriter();
+        }
+
+        @Override
+        public boolean isRawBlock() {
+            return true;
+        }
+
     };
 
     private String in;
     private String out;
+    private int codec;
 
-    private IPLDEncoding(String in, String out) {
+    private IPLDEncoding(String in, String out, int codec) {
         this.in = in;
         this.out = out;
+        this.codec = codec;
     }
 
     /**
@@ -75,6 +105,29 @@ public enum IPLDEncoding {
         return out;
     }
 
+    /**
+     * @return the multicodec code of the IPLD codec (dag-json or dag-cbor), used for calculating CIDs locally
+     */
+    public int getCodec() {
+        return codec;
+    }
+
+    /**
+     * @return true iff objects in this encoding have to be loaded as raw blocks (as opposed to DAGs rendered by IPFS)
+     */
+    public boolean isRawBlock() {
+        return false;
+    }
+
+    /**
+     * @return the writer for recreating the hash bases of signatures (they are the same for all encodings, so the
+     *         data sections written by {@link #createWriter()} are only the hash bases, if both writers are the same
+     *         kind of writer)
+     */
+    public IPLDWriter createHashBaseWriter() {
+        return createWriter();
+    }
+
     /**
      * @return the reader (corresponds to {@link #getOut()}, IPFS' point of view)
      */
@@ -14,13 +14,15 @@
 package org.projectjinxers.controller;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.lang.reflect.Array;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.ethereum.crypto.ECKey.ECDSASignature;
 import org.projectjinxers.model.IPLDSerializable;
@@ -28,16 +30,16 @@ import org.projectjinxers.model.Loader;
 import org.projectjinxers.model.LoaderFactory;
 import org.projectjinxers.model.Metadata;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonParseException;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 /**
  * JSON implementation of the interface for reading (deserializing) objects from IPFS. JSON null values will be ignored
  * by default. You should not rely on JSON null. There should be no difference between a missing field and a field with
- * value null.
+ * value null. The bytes are read in a single streaming pass without building a JSON tree. Each key gets exactly one
+ * slot, which contains the plain value (Boolean, String or lazily parsed Number), a link or an array.
  * 
  * @author ProjectJinxers
  */
@@ -51,11 +53,34 @@ public class IPLDJsonReader implements IPLDReader {
     public static final String KEY_SIGNATURE_V = "v";
     public static final String KEY_DATA = "data";
 
-    private Map<String, JsonPrimitive> primitives = new HashMap<>();
-    private Map<String, JsonPrimitive[]> primitiveArrays = new HashMap<>();
-    private Map<String, String> links = new HashMap<>();
-    private Map<String, String[]> linkArrays = new HashMap<>();
-    private Map<String, String[][]> linkArrayArrays = new HashMap<>();
+    /**
+     * Slot value for a link, that has been written as a link object (as opposed to a plain string).
+     */
+    private static class Link {
+
+        private final String multihash;
+
+        Link(String multihash) {
+            this.multihash = multihash;
+        }
+
+    }
+
+    /**
+     * Slot value for an array, whose first element is a link object.
+     */
+    private static class LinkArray {
+
+        private final String[] multihashes;
+
+        LinkArray(String[] multihashes) {
+            this.multihashes = multihashes;
+        }
+
+    }
+
+    // values are primitives (Boolean, String, Number), Link, LinkArray, Object[] (primitives) or String[][]
+    private Map<String, Object> slots = new HashMap<>();
 
     IPLDJsonReader() {
 
@@ -64,182 +89,262 @@ public class IPLDJsonReader implements IPLDReader {
     @Override
     public Metadata read(IPLDContext context, ValidationContext validationContext, byte[] bytes, Loader<?> loader,
             boolean eager) {
+        Metadata metadata = readSlots(bytes);
+        IPLDSerializable dataInstance = loader.getOrCreateDataInstance(this, metadata);
+        dataInstance.read(this, context, validationContext, eager, metadata);
+        return metadata;
+    }
+
+    @Override
+    public String readLink(byte[] bytes, String key) {
+        readSlots(bytes);
+        return readLink(key);
+    }
+
+    private Metadata readSlots(byte[] bytes) {
         ECDSASignature signature = null;
         int version = 0;
-        JsonElement element = JsonParser.parseReader(new InputStreamReader(new ByteArrayInputStream(bytes)));
-        if (element.isJsonObject()) {
-            for (Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
-                String key = entry.getKey();
-                JsonElement value = entry.getValue();
-                if (value.isJsonObject()) {
-                    if (KEY_METADATA.equals(key)) {
-                        JsonObject metadataObject = value.getAsJsonObject();
-                        if (metadataObject.has(KEY_SIGNATURE_R)) {
-                            BigInteger r = metadataObject.get(KEY_SIGNATURE_R).getAsBigInteger();
-                            BigInteger s = metadataObject.get(KEY_SIGNATURE_S).getAsBigInteger();
-                            byte v = metadataObject.get(KEY_SIGNATURE_V).getAsByte();
+        try (JsonReader jsonReader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(bytes)))) {
+            if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                jsonReader.beginObject();
+                while (jsonReader.hasNext()) {
+                    String key = jsonReader.nextName();
+                    if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+                        jsonReader.skipValue();
+                    }
+                    else if (KEY_METADATA.equals(key)) {
+                        BigInteger r = null;
+                        BigInteger s = null;
+                        byte v = 0;
+                        jsonReader.beginObject();
+                        while (jsonReader.hasNext()) {
+                            switch (jsonReader.nextName()) {
+                            case KEY_SIGNATURE_R:
+                                r = new BigInteger(jsonReader.nextString());
+                                break;
+                            case KEY_SIGNATURE_S:
+                                s = new BigInteger(jsonReader.nextString());
+                                break;
+                            case KEY_SIGNATURE_V:
+                                v = (byte) jsonReader.nextInt();
+                                break;
+                            case KEY_VERSION:
+                                version = jsonReader.nextInt();
+                                break;
+                            default:
+                                jsonReader.skipValue();
+                            }
+                        }
+                        jsonReader.endObject();
+                        if (r != null) {
                             signature = new ECDSASignature(r, s);
                             signature.v = v;
                         }
-                        version = metadataObject.get(KEY_VERSION).getAsInt();
                     }
                     else if (KEY_DATA.equals(key)) {
-                        readData(value.getAsJsonObject());
+                        readData(jsonReader);
+                    }
+                    else {
+                        jsonReader.skipValue();
                     }
                 }
+                jsonReader.endObject();
             }
         }
-        Metadata metadata = new Metadata(version, signature);
-        IPLDSerializable dataInstance = loader.getOrCreateDataInstance(this, metadata);
-        dataInstance.read(this, context, validationContext, eager, metadata);
-        return metadata;
+        catch (IOException e) {
+            throw new JsonParseException(e);
+        }
+        return new Metadata(version, signature);
     }
 
-    private void readData(JsonObject data) {
-        for (Entry<String, JsonElement> entry : data.entrySet()) {
-            String key = entry.getKey();
-            JsonElement value = entry.getValue();
-            if (value.isJsonObject()) {
+    private void readData(JsonReader jsonReader) throws IOException {
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String key = jsonReader.nextName();
+            switch (jsonReader.peek()) {
+            case BEGIN_OBJECT:
                 // must be a link
-                links.put(key, getLink(value));
-            }
-            else if (value.isJsonArray()) {
-                int i = 0;
-                boolean isLink = false;
-                boolean isLinkArray = false;
-                JsonPrimitive[] primitiveValues = null;
-                String[] linkValues = null;
-                String[][] linkArrayValues = null;
-                JsonArray jsonArray = value.getAsJsonArray();
-                for (JsonElement item : jsonArray) {
-                    if (i == 0) {
-                        if (item.isJsonObject()) {
-                            isLink = true;
-                            linkValues = new String[jsonArray.size()];
-                            linkValues[i] = getLink(item);
-                            linkArrays.put(key, linkValues);
-                        }
-                        else if (item.isJsonArray()) {
-                            isLinkArray = true;
-                            linkArrayValues = new String[jsonArray.size()][];
-                            linkArrayValues[i] = getLinkArray(item.getAsJsonArray());
-                            linkArrayArrays.put(key, linkArrayValues);
+                slots.put(key, new Link(readLink(jsonReader)));
+                break;
+            case BEGIN_ARRAY:
+                jsonReader.beginArray();
+                if (jsonReader.hasNext()) {
+                    JsonToken first = jsonReader.peek();
+                    if (first == JsonToken.BEGIN_OBJECT) {
+                        List<String> links = new ArrayList<>();
+                        while (jsonReader.hasNext()) {
+                            links.add(readLink(jsonReader));
                         }
-                        else {
-                            primitiveValues = new JsonPrimitive[jsonArray.size()];
-                            primitiveValues[i] = item.getAsJsonPrimitive();
-                            primitiveArrays.put(key, primitiveValues);
-                        }
-                    }
-                    else if (isLink) {
-                        linkValues[i] = getLink(item);
+                        slots.put(key, new LinkArray(links.toArray(new String[links.size()])));
                     }
-                    else if (isLinkArray) {
-                        linkArrayValues[i] = getLinkArray(item.getAsJsonArray());
+                    else if (first == JsonToken.BEGIN_ARRAY) {
+                        List<String[]> linkArrays = new ArrayList<>();
+                        while (jsonReader.hasNext()) {
+                            linkArrays.add(readLinkArray(jsonReader));
+                        }
+                        slots.put(key, linkArrays.toArray(new String[linkArrays.size()][]));
                     }
                     else {
-                        primitiveValues[i] = item.getAsJsonPrimitive();
+                        List<Object> primitives = new ArrayList<>();
+                        while (jsonReader.hasNext()) {
+                            primitives.add(readPrimitive(jsonReader));
+                        }
+                        slots.put(key, primitives.toArray());
                     }
-                    i++;
                 }
-            }
-            else if (!value.isJsonNull()) {
-                primitives.put(key, value.getAsJsonPrimitive());
+                jsonReader.endArray();
+                break;
+            case NULL:
+                jsonReader.nextNull();
+                break;
+            default:
+                slots.put(key, readPrimitive(jsonReader));
             }
         }
+        jsonReader.endObject();
     }
 
-    private String getLink(JsonElement element) {
-        return element.isJsonObject() ? element.getAsJsonObject().get(KEY_INNER_LINK).getAsString()
-                : element.getAsString();
+    private Object readPrimitive(JsonReader jsonReader) throws IOException {
+        switch (jsonReader.peek()) {
+        case BOOLEAN:
+            return jsonReader.nextBoolean();
+        case NUMBER:
+            return new LazilyParsedNumber(jsonReader.nextString());
+        case STRING:
+            return jsonReader.nextString();
+        case NULL:
+            jsonReader.nextNull();
+            return null;
+        default:
+            throw new JsonParseException("expected a primitive, found " + jsonReader.peek());
+        }
     }
 
-    private String[] getLinkArray(JsonArray array) {
-        String[] res = new String[array.size()];
-        int i = 0;
-        for (JsonElement element : array) {
-            res[i++] = getLink(element);
+    private String readLink(JsonReader jsonReader) throws IOException {
+        if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+            return jsonReader.nextString();
         }
+        String res = null;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            if (KEY_INNER_LINK.equals(jsonReader.nextName())) {
+                res = jsonReader.nextString();
+            }
+            else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
         return res;
     }
 
+    private String[] readLinkArray(JsonReader jsonReader) throws IOException {
+        List<String> res = new ArrayList<>();
+        jsonReader.beginArray();
+        while (jsonReader.hasNext()) {
+            res.add(readLink(jsonReader));
+        }
+        jsonReader.endArray();
+        return res.toArray(new String[res.size()]);
+    }
+
+    private static boolean isPrimitive(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean;
+    }
+
+    private static boolean isPrimitiveArray(Object value) {
+        return value instanceof Object[] && !(value instanceof String[][]);
+    }
+
+    private static boolean toBoolean(Object value) {
+        return value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString());
+    }
+
+    private static Number toNumber(Object value) {
+        return value instanceof Number ? (Number) value : new LazilyParsedNumber(value.toString());
+    }
+
+    private static char toChar(Object value) {
+        return value instanceof Number ? (char) ((Number) value).intValue() : value.toString().charAt(0);
+    }
+
+    private Object getPrimitive(String key) {
+        Object res = slots.get(key);
+        return isPrimitive(res) ? res : null;
+    }
+
+    private Object[] getPrimitiveArray(String key) {
+        Object res = slots.get(key);
+        return isPrimitiveArray(res) ? (Object[]) res : null;
+    }
+
     @Override
     public boolean hasPrimitiveKey(String key) {
-        return primitives.containsKey(key);
+        return isPrimitive(slots.get(key));
     }
 
     @Override
     public boolean hasLinkKey(String key) {
-        return links.containsKey(key) || primitives.containsKey(key);
+        Object value = slots.get(key);
+        return value instanceof Link || isPrimitive(value);
     }
 
     @Override
     public boolean hasPrimitiveArrayKey(String key) {
-        return primitiveArrays.containsKey(key);
+        return isPrimitiveArray(slots.get(key));
     }
 
     @Override
     public boolean hasLinkArrayKey(String key) {
-        return linkArrays.containsKey(key) || primitiveArrays.containsKey(key);
+        Object value = slots.get(key);
+        return value instanceof LinkArray || isPrimitiveArray(value);
     }
 
     @Override
     public Object readPrimitive(String key) {
-        JsonPrimitive primitive = primitives.get(key);
-        if (primitive != null) {
-            if (primitive.isBoolean()) {
-                return primitive.getAsBoolean();
-            }
-            if (primitive.isNumber()) {
-                return primitive.getAsNumber();
-            }
-            if (primitive.isString()) {
-                return primitive.getAsString();
-            }
-        }
-        return null;
+        return getPrimitive(key);
     }
 
     @Override
     public Boolean readBoolean(String key) {
-        JsonPrimitive primitive = primitives.get(key);
-        return primitive == null ? null : primitive.getAsBoolean();
+        Object primitive = getPrimitive(key);
+        return primitive == null ? null : toBoolean(primitive);
     }
 
     @Override
     public Character readCharacter(String key) {
-        JsonPrimitive primitive = primitives.get(key);
-        return primitive == null ? null : (char) primitive.getAsInt();
+        Object primitive = getPrimitive(key);
+        return primitive == null ? null : (char) toNumber(primitive).intValue();
     }
 
     @Override
     public Number readNumber(String key) {
-        JsonPrimitive primitive = primitives.get(key);
-        return primitive == null ? null : primitive.getAsNumber();
+        Object primitive = getPrimitive(key);
+        return primitive == null ? null : toNumber(primitive);
     }
 
     @Override
     public String readString(String key) {
-        JsonPrimitive primitive = primitives.get(key);
-        return primitive == null ? null : primitive.getAsString();
+        Object primitive = getPrimitive(key);
+        return primitive == null ? null : primitive.toString();
     }
 
     @Override
     public String readLink(String key) {
-        String res = links.get(key);
-        return res == null ? readString(key) : res;
+        Object value = slots.get(key);
+        return value instanceof Link ? ((Link) value).multihash : readString(key);
     }
 
     @Override
     public boolean[] readBooleanArray(String key) {
-        JsonPrimitive[] jsonPrimitives = primitiveArrays.get(key);
-        if (jsonPrimitives == null) {
+        Object[] primitives = getPrimitiveArray(key);
+        if (primitives == null) {
             return null;
         }
-        boolean[] res = new boolean[jsonPrimitives.length];
+        boolean[] res = new boolean[primitives.length];
         int i = 0;
-        for (JsonPrimitive jsonPrimitive : jsonPrimitives) {
-            res[i++] = jsonPrimitive.getAsBoolean();
+        for (Object primitive : primitives) {
+            res[i++] = toBoolean(primitive);
         }
         return res;
     }
@@ -252,98 +357,91 @@ public class IPLDJsonReader implements IPLDReader {
 
     @Override
     public char[] readCharArray(String key) {
-        JsonPrimitive[] jsonPrimitives = primitiveArrays.get(key);
-        if (jsonPrimitives == null) {
+        Object[] primitives = getPrimitiveArray(key);
+        if (primitives == null) {
             return null;
         }
-        char[] res = new char[jsonPrimitives.length];
+        char[] res = new char[primitives.length];
         int i = 0;
-        for (JsonPrimitive jsonPrimitive : jsonPrimitives) {
-            res[i++] = jsonPrimitive.getAsCharacter();
+        for (Object primitive : primitives) {
+            res[i++] = toChar(primitive);
         }
         return res;
     }
 
     @Override
     public int[] readIntArray(String key) {
-        JsonPrimitive[] jsonPrimitives = primitiveArrays.get(key);
-        if (jsonPrimitives == null) {
+        Object[] primitives = getPrimitiveArray(key);
+        if (primitives == null) {
             return null;
         }
-        int[] res = new int[jsonPrimitives.length];
+        int[] res = new int[primitives.length];
         int i = 0;
-        for (JsonPrimitive jsonPrimitive : jsonPrimitives) {
-            res[i++] = jsonPrimitive.getAsInt();
+        for (Object primitive : primitives) {
+            res[i++] = toNumber(primitive).intValue();
         }
         return res;
     }
 
     @Override
     public long[] readLongArray(String key) {
-        JsonPrimitive[] jsonPrimitives = primitiveArrays.get(key);
-        if (jsonPrimitives == null) {
+        Object[] primitives = getPrimitiveArray(key);
+        if (primitives == null) {
             return null;
         }
-        long[] res = new long[jsonPrimitives.length];
+        long[] res = new long[primitives.length];
         int i = 0;
-        for (JsonPrimitive jsonPrimitive : jsonPrimitives) {
-            res[i++] = jsonPrimitive.getAsLong();
+        for (Object primitive : primitives) {
+            res[i++] = toNumber(primitive).longValue();
         }
         return res;
     }
 
     @Override
     public Number[] readNumberArray(String key) {
-        JsonPrimitive[] jsonPrimitives = primitiveArrays.get(key);
-        if (jsonPrimitives == null) {
+        Object[] primitives = getPrimitiveArray(key);
+        if (primitives == null) {
             return null;
         }
-        Number[] res = new Number[jsonPrimitives.length];
+        Number[] res = new Number[primitives.length];
         int i = 0;
-        for (JsonPrimitive jsonPrimitive : jsonPrimitives) {
-            res[i++] = jsonPrimitive.getAsNumber();
+        for (Object primitive : primitives) {
+            res[i++] = toNumber(primitive);
         }
         return res;
     }
 
     @Override
     public String[] readStringArray(String key) {
-        JsonPrimitive[] jsonPrimitives = primitiveArrays.get(key);
-        if (jsonPrimitives == null) {
+        Object[] primitives = getPrimitiveArray(key);
+        if (primitives == null) {
             return null;
         }
-        String[] res = new String[jsonPrimitives.length];
+        String[] res = new String[primitives.length];
         int i = 0;
-        for (JsonPrimitive jsonPrimitive : jsonPrimitives) {
-            res[i++] = jsonPrimitive.getAsString();
+        for (Object primitive : primitives) {
+            res[i++] = primitive.toString();
         }
         return res;
     }
 
     @Override
     public String[] readLinksArray(String key) {
-        String[] res = linkArrays.get(key);
-        return res == null ? readStringArray(key) : res;
+        Object value = slots.get(key);
+        return value instanceof LinkArray ? ((LinkArray) value).multihashes : readStringArray(key);
     }
 
     @Override
     public Map<String, String[]> readLinkCollections(String key) {
-        String[][] linkArrays = linkArrayArrays.get(key);
-        if (linkArrays == null) {
+        Object value = slots.get(key);
+        if (!(value instanceof String[][])) {
             return null;
         }
+        String[][] linkArrays = (String[][]) value;
         Map<String, String[]> res = new LinkedHashMap<>();
-        int i = 0;
-        boolean first = true;
-        String[] keys = null;
-        for (String[] links : linkArrays) {
-            if (first) {
-                keys = links;
-                first = false;
-            }
-            else {
-                res.put(keys[i++], links);
-            }
+        String[] keys = linkArrays[0];
+        for (int i = 1; i < linkArrays.length; i++) {
+            res.put(keys[i - 1], linkArrays[i]);
         }
         return res;
     }
@@ -352,12 +450,12 @@ public class IPLDJsonReader implements IPLDReader {
     public <D extends IPLDSerializable> Map<String, IPLDObject<D>[]> readLinkObjectCollections(String key,
             IPLDContext context, ValidationContext validationContext, LoaderFactory<D> loaderFactory, boolean eager,
             KeyProvider<D> keyProvider) {
-        String[][] linkArrays = linkArrayArrays.get(key);
-        if (linkArrays == null) {
+        Object value = slots.get(key);
+        if (!(value instanceof String[][])) {
             return null;
         }
         Map<String, IPLDObject<D>[]> res = new LinkedHashMap<>();
-        for (String[] linkArray : linkArrays) {
+        for (String[] linkArray : (String[][]) value) {
             boolean first = true;
             @SuppressWarnings("unchecked")
             IPLDObject<D>[] array = (IPLDObject<D>[]) Array.newInstance(IPLDObject.class, linkArray.length);
@@ -17,6 +17,7 @@ import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.util.Arrays;
 import java.util.Map;
 
 import org.ethereum.crypto.ECKey.ECDSASignature;
@@ -24,7 +25,6 @@ import org.projectjinxers.account.Signer;
 import org.projectjinxers.controller.IPLDObject.ProgressListener;
 import org.projectjinxers.model.IPLDSerializable;
 import org.projectjinxers.model.Metadata;
-import org.spongycastle.util.Arrays;
 
 import com.google.gson.stream.JsonWriter;
 
@@ -37,6 +37,17 @@ import com.google.gson.stream.JsonWriter;
  */
 public class IPLDJsonWriter implements IPLDWriter {
 
+    /**
+     * Output stream, that provides access to ranges of the written bytes without copying everything.
+     */
+    private static class ByteArrayBuffer extends ByteArrayOutputStream {
+
+        byte[] copyOfRange(int from, int to) {
+            return Arrays.copyOfRange(buf, from, to);
+        }
+
+    }
+
     private boolean compact;
     private boolean bigSignaturePartsAsString;
     private JsonWriter jsonWriter;
@@ -49,16 +60,14 @@ public class IPLDJsonWriter implements IPLDWriter {
     @Override
     public byte[] write(IPLDContext context, IPLDObject<?> object, Signer signer, ProgressListener progressListener)
             throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(baos)));
+        ByteArrayBuffer buffer = new ByteArrayBuffer();
+        jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(buffer)));
         jsonWriter.beginObject().name(IPLDJsonReader.KEY_DATA).beginObject();
         jsonWriter.flush();
-        byte[] start = baos.toByteArray();
-        baos.reset();
+        int dataStart = buffer.size();
         object.write(this, signer, context, progressListener);
         jsonWriter.flush();
-        byte[] data = baos.toByteArray();
-        baos.reset();
+        byte[] data = buffer.copyOfRange(dataStart, buffer.size());
         jsonWriter.endObject();
         Metadata metadata = object.signIfMandatory(signer, data);
         if (progressListener != null && object.getForeignSignature() == null && metadata.getSignature() != null
@@ -68,27 +77,24 @@ public class IPLDJsonWriter implements IPLDWriter {
         writeMetadata(metadata);
         jsonWriter.endObject();
         jsonWriter.flush();
-        byte[] end = baos.toByteArray();
         if (progressListener != null) {
             progressListener.nextStep();
         }
-        return Arrays.concatenate(start, data, end);
+        return buffer.toByteArray();
     }
 
     @Override
     public byte[] hashBase(IPLDContext context, IPLDSerializable data) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(baos)));
+        ByteArrayBuffer buffer = new ByteArrayBuffer();
+        jsonWriter = new JsonWriter(new BufferedWriter(new OutputStreamWriter(buffer)));
         jsonWriter.beginObject();
+        jsonWriter.flush();
+        // We need beginObject() to prevent an exception. To make sure the hash base is the same as the data section
+        // in write(), we skip the opening brace.
+        int dataStart = buffer.size();
         data.write(this, null, context, null);
         jsonWriter.flush();
-        // We needed beginObject() in write() after KEY_DATA, otherwise the name would not be contained in start but
-        // in data. OTOH we also need beginObject() here, to prevent an exception. To make sure the hash base is the
-        // same in both cases, we remove the first byte here.
-        byte[] bytes = baos.toByteArray();
-        byte[] res = new byte[bytes.length - 1];
-        System.arraycopy(bytes, 1, res, 0, res.length);
-        return res;
+        return buffer.copyOfRange(dataStart, buffer.size());
     }
 
     @Override
@@ -14,6 +14,13 @@
 package org.projectjinxers.controller;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ethereum.crypto.ECKey.ECDSASignature;
 import org.projectjinxers.account.Signer;
@@ -209,6 +216,61 @@ public class IPLDObject<D extends IPLDSerializable> {
         return mapped;
     }
 
+    /**
+     * Resolves the data instance on the shared load executor (see {@link IPLDContext#getLoadExecutor()}), if it has not
+     * been resolved, yet. Concurrent loads of the same object are performed only once by the context.
+     * 
+     * @return the future data instance (completes with null, if the object could not be found, and exceptionally, if
+     *         loading failed)
+     */
+    public CompletableFuture<D> getMappedAsync() {
+        D mapped = this.mapped;
+        if (mapped != null || multihash == null) {
+            return CompletableFuture.completedFuture(mapped);
+        }
+        return CompletableFuture.supplyAsync(this::getMapped, IPLDContext.getLoadExecutor());
+    }
+
+    /**
+     * Resolves the data instances of the given objects concurrently (see {@link #getMappedAsync()}).
+     * 
+     * @param objects the objects to resolve
+     * @return the future number of successfully resolved objects (never completes exceptionally)
+     */
+    public static CompletableFuture<Integer> loadAll(Collection<? extends IPLDObject<?>> objects) {
+        AtomicInteger successCount = new AtomicInteger();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[objects.size()];
+        int i = 0;
+        for (IPLDObject<?> object : objects) {
+            futures[i++] = object.getMappedAsync().handle((mapped, e) -> {
+                if (mapped != null) {
+                    successCount.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        return CompletableFuture.allOf(futures).thenApply(v -> successCount.get());
+    }
+
+    /**
+     * Starts prefetching the blocks of those of the given objects, that have not been resolved, yet (see
+     * {@link IPLDContext#prefetch(Collection, String)}). The objects can be resolved one by one afterwards without
+     * waiting for IPFS each time.
+     * 
+     * @param objects the objects
+     */
+    public static void prefetch(Collection<? extends IPLDObject<?>> objects) {
+        Map<IPLDContext, Collection<String>> multihashes = new IdentityHashMap<>();
+        for (IPLDObject<?> object : objects) {
+            if (object.mapped == null && object.multihash != null && object.context != null) {
+                multihashes.computeIfAbsent(object.context, context -> new ArrayList<>()).add(object.multihash);
+            }
+        }
+        for (Entry<IPLDContext, Collection<String>> entry : multihashes.entrySet()) {
+            entry.getKey().prefetch(entry.getValue(), null);
+        }
+    }
+
     public ValidationContext getValidationContext() {
         return validationContext;
     }
@@ -291,6 +353,13 @@ public class IPLDObject<D extends IPLDSerializable> {
         return multihash;
     }
 
+    /**
+     * Resets the multihash, if it has been calculated locally, but the upload failed.
+     */
+    void resetMultihash() {
+        this.multihash = null;
+    }
+
     /**
      * Writes (serializes) the data instance to IPFS. Referenced objects, that have not been saved, yet, will also be
      * saved automatically by calling this method. If one child save operation fails, the root save operation fails, as
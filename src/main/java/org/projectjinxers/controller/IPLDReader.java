@@ -62,6 +62,15 @@ public interface IPLDReader {
     Metadata read(IPLDContext context, ValidationContext validationContext, byte[] bytes, Loader<?> loader,
             boolean eager);
 
+    /**
+     * Reads a single link value from the given data (the link is not resolved). No data instance is created.
+     * 
+     * @param bytes the raw bytes
+     * @param key   the key
+     * @return the link value for the given key
+     */
+    String readLink(byte[] bytes, String key);
+
     /**
      * Checks if a primitive value for the given key is present.
      * 
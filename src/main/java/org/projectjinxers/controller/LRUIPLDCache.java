@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded cache, that evicts the least recently used unpinned objects. Lookups and insertions don't lock. Each
+ * entry carries the tick of its last access. Once the number of unpinned entries exceeds the limit by more than a
+ * tenth (at least {@value #MIN_SLACK} entries), a single thread evicts the least recently used ones in one batch, while
+ * the others carry on.
+ * 
+ * @author ProjectJinxers
+ */
+public class LRUIPLDCache implements IPLDCache {
+
+    private static class CacheEntry {
+
+        private final IPLDObject<?> object;
+        private volatile long lastAccess;
+
+        CacheEntry(IPLDObject<?> object, long lastAccess) {
+            this.object = object;
+            this.lastAccess = lastAccess;
+        }
+
+    }
+
+    private static class EvictionCandidate {
+
+        private final String multihash;
+        private final CacheEntry entry;
+        private final long lastAccess; // snapshot, the entry's value might change while sorting
+
+        EvictionCandidate(String multihash, CacheEntry entry) {
+            this.multihash = multihash;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+
+    }
+
+    private static final Comparator<EvictionCandidate> LAST_ACCESS_COMPARATOR = new Comparator<>() {
+        @Override
+        public int compare(EvictionCandidate o1, EvictionCandidate o2) {
+            return Long.compare(o1.lastAccess, o2.lastAccess);
+        }
+    };
+
+    static final int MIN_SLACK = 16;
+
+    private final int maxEntries;
+    private final int slack;
+
+    private final Map<String, CacheEntry> entries = new ConcurrentHashMap<>();
+    private volatile Set<String> pinned = Collections.emptySet();
+    private final AtomicLong ticker = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Constructor.
+     * 
+     * @param maxEntries the maximum number of unpinned objects (0 or negative for an unbounded cache)
+     */
+    public LRUIPLDCache(int maxEntries) {
+        this(maxEntries, Math.max(MIN_SLACK, maxEntries / 10));
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param maxEntries the maximum number of unpinned objects (0 or negative for an unbounded cache)
+     * @param slack      the number of unpinned objects, the limit can be exceeded by before evicting
+     */
+    LRUIPLDCache(int maxEntries, int slack) {
+        this.maxEntries = maxEntries;
+        this.slack = slack;
+    }
+
+    @Override
+    public IPLDObject<?> get(String multihash) {
+        CacheEntry entry = entries.get(multihash);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        entry.lastAccess = ticker.incrementAndGet();
+        hitCount.increment();
+        return entry.object;
+    }
+
+    @Override
+    public void put(String multihash, IPLDObject<?> object) {
+        entries.put(multihash, new CacheEntry(object, ticker.incrementAndGet()));
+        if (maxEntries > 0 && entries.size() > maxEntries + slack + pinned.size()) {
+            evict();
+        }
+    }
+
+    @Override
+    public void pin(Collection<String> multihashes) {
+        this.pinned = multihashes == null || multihashes.isEmpty() ? Collections.emptySet()
+                : Collections.unmodifiableSet(new HashSet<>(multihashes));
+        if (maxEntries > 0) {
+            evict();
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    private void evict() {
+        if (evicting.compareAndSet(false, true)) {
+            try {
+                Set<String> pinned = this.pinned;
+                int unpinned = 0;
+                for (String multihash : entries.keySet()) {
+                    if (!pinned.contains(multihash)) {
+                        unpinned++;
+                    }
+                }
+                int toEvict = unpinned - maxEntries;
+                if (toEvict > 0) {
+                    // keeps the least recently used candidates, the most recently used one of them on top
+                    PriorityQueue<EvictionCandidate> candidates = new PriorityQueue<>(toEvict + 1,
+                            LAST_ACCESS_COMPARATOR.reversed());
+                    for (Entry<String, CacheEntry> entry : entries.entrySet()) {
+                        String multihash = entry.getKey();
+                        if (!pinned.contains(multihash)) {
+                            candidates.add(new EvictionCandidate(multihash, entry.getValue()));
+                            if (candidates.size() > toEvict) {
+                                candidates.poll();
+                            }
+                        }
+                    }
+                    for (EvictionCandidate candidate : candidates) {
+                        if (entries.remove(candidate.multihash, candidate.entry)) {
+                            evictionCount.increment();
+                        }
+                    }
+                }
+            }
+            finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+}
@@ -33,6 +33,14 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import org.ethereum.crypto.ECKey.ECDSASignature;
@@ -81,17 +89,6 @@ public class ModelController {
 
     }
 
-    static class PendingSubMessage {
-
-        final String message;
-        final long timestamp;
-
-        PendingSubMessage(String message, long timestamp) {
-            this.message = message;
-            this.timestamp = timestamp;
-        }
-    }
-
     // Currently this is a container for progress listeners only. Could be used as a real progress listener in the
     // future (with subclasses UserStateProgressListener and ModelStateProgressListener).
     private static class ForwardingProgressListener implements ProgressListener {
@@ -178,6 +175,7 @@ public class ModelController {
     private static final String PUBSUB_SUB_KEY_FROM = "from";
     private static final String PUBSUB_SUB_KEY_DATA = "data";
     private static final String PUBSUB_TOPIC_PREFIX_OWNERSHIP_REQUEST = "or";
+    private static final String ENCODING_DAG_CBOR = "dag-cbor";
 
     private static final Map<String, ModelController> MODEL_CONTROLLERS = new HashMap<>();
 
@@ -212,8 +210,11 @@ public class ModelController {
         synchronized (MODEL_CONTROLLERS) {
             removed = MODEL_CONTROLLERS.remove(address);
         }
-        if (removed != null && removed.listener != null) {
-            removed.listener.handleRemoved();
+        if (removed != null) {
+            removed.shutdownExecutors();
+            if (removed.listener != null) {
+                removed.listener.handleRemoved();
+            }
         }
     }
 
@@ -228,13 +229,25 @@ public class ModelController {
     private String peerIDBase64;
     private IPLDObject<ModelState> currentValidatedState;
     private Map<String, SettlementController> currentLocalHashes = new HashMap<>();
+    // the hashes in currentLocalHashes with a retained settlement snapshot, oldest first
+    private final Deque<String> settlementSnapshotHashes = new ArrayDeque<>();
 
     private ValidationContext currentValidationContext;
     private SettlementController currentSnapshot;
 
-    private boolean validatingModelState;
-    private Deque<PendingSubMessage> pendingModelStates;
-    private Deque<PendingSubMessage> pendingOwnershipRequests;
+    // serializes the handling of received model states and ownership requests and the local changes
+    private final EventLoop eventLoop;
+    // the executors created for the context, shut down when the controller is removed
+    private final Collection<ExecutorService> executors = new ArrayList<>();
+    // ignores repeated model state announcements and throttles peers, before they reach the event loop
+    private final PubSubFilter pubSubFilter;
+    // collects local changes within the configured commit window, so they are committed in a single model state
+    private ScheduledExecutorService commitScheduler;
+    private ScheduledFuture<?> scheduledCommit;
+    private int commitGeneration;
+    private int uncommittedChanges;
+    // the progress listeners of the collected local changes, notified if the deferred commit fails
+    private Collection<ProgressListener> deferredProgressListeners;
 
     private Map<String, IPLDObject<UserState>> pendingUserStates;
     private Map<String, UserState> appliedSettlementData;
@@ -269,10 +282,47 @@ public class ModelController {
         this.access = access;
         this.config = config == null ? Config.getSharedInstance() : config;
         this.secretConfig = secretConfig == null ? SecretConfig.getSharedInstance() : secretConfig;
-        this.context = new IPLDContext(access, IPLDEncoding.JSON, IPLDEncoding.CBOR, false);
+        if (ENCODING_DAG_CBOR.equals(this.config.getIPFSEncoding())) {
+            this.context = new IPLDContext(access, IPLDEncoding.DAG_CBOR, IPLDEncoding.DAG_CBOR, false,
+                    new LRUIPLDCache(this.config.getCacheMaxEntries()));
+        }
+        else {
+            this.context = new IPLDContext(access, IPLDEncoding.JSON, IPLDEncoding.CBOR, false,
+                    new LRUIPLDCache(this.config.getCacheMaxEntries()));
+        }
+        int saveThreads = this.config.getIPFSSaveThreads();
+        if (saveThreads > 1) {
+            ExecutorService saveExecutor = Executors.newFixedThreadPool(saveThreads, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+            context.setSaveExecutor(saveExecutor);
+            executors.add(saveExecutor);
+        }
+        int prefetchThreads = this.config.getIPFSPrefetchThreads();
+        if (prefetchThreads > 1) {
+            ExecutorService prefetchExecutor = Executors.newFixedThreadPool(prefetchThreads, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+            context.setPrefetchExecutor(prefetchExecutor);
+            executors.add(prefetchExecutor);
+        }
+        context.setVerifiedSignatureCache(new VerifiedSignatureCache(this.config.getCacheMaxVerifiedSignatures()));
+        int verificationThreads = this.config.getVerificationThreads();
+        if (verificationThreads > 1) {
+            ExecutorService verificationExecutor = new ForkJoinPool(verificationThreads);
+            context.setVerificationExecutor(verificationExecutor);
+            executors.add(verificationExecutor);
+        }
         this.timestampTolerance = timestampTolerance;
         this.userVerificationRequired = this.config.isUserVerificationRequired();
         address = this.config.getIOTAAddress();
+        this.eventLoop = new EventLoop("ModelController " + address, this.config.getIPFSInboxCapacity());
+        this.pubSubFilter = new PubSubFilter(this.config.getPubSubSeenMaxEntries(), this.config.getPubSubValidatedTTL(),
+                this.config.getPubSubRejectedTTL(), this.config.getPubSubPeerBurst(), this.config.getPubSubPeerRate());
     }
 
     void subscribeToModelStatesTopic() {
@@ -292,7 +342,20 @@ public class ModelController {
                             }
                             else {
                                 String pubSubData = (String) map.get(PUBSUB_SUB_KEY_DATA);
-                                handleIncomingModelState(pubSubData, System.currentTimeMillis());
+                                long timestamp = System.currentTimeMillis();
+                                String multihash = convertPubSubDataToOriginal(pubSubData);
+                                if (!pubSubFilter.accept(from, multihash, timestamp)) {
+                                    System.out.println("Seen recently or peer throttled -> model state ignored");
+                                }
+                                // a newer model state from the same peer supersedes a waiting one
+                                else if (!eventLoop.post(from, () -> {
+                                    // the same model state might have been validated while this one was waiting
+                                    if (!pubSubFilter.isSeen(multihash, System.currentTimeMillis())) {
+                                        handleIncomingModelState(pubSubData, timestamp);
+                                    }
+                                })) {
+                                    System.out.println("Inbox full -> model state dropped");
+                                }
                             }
                         }
                         catch (Exception e) {
@@ -325,8 +388,11 @@ public class ModelController {
                             String from = (String) map.get(PUBSUB_SUB_KEY_FROM);
                             if (!peerIDBase64.equals(from)) {
                                 String pubSubData = (String) map.get(PUBSUB_SUB_KEY_DATA);
-                                handleIncomingOwnershipRequest(pubSubData,
-                                        System.currentTimeMillis() + timestampTolerance);
+                                long timestamp = System.currentTimeMillis() + timestampTolerance;
+                                if (!eventLoop.post(null,
+                                        () -> handleIncomingOwnershipRequest(pubSubData, timestamp))) {
+                                    System.out.println("Inbox full -> ownership request dropped");
+                                }
                             }
                         }
                         catch (Exception e) {
@@ -371,6 +437,11 @@ public class ModelController {
         return currentValidatedState;
     }
 
+    private void setCurrentValidatedState(IPLDObject<ModelState> currentValidatedState) {
+        this.currentValidatedState = currentValidatedState;
+        context.pinModelState(currentValidatedState);
+    }
+
     public boolean initialize(ModelControllerListener listener) {
         this.listener = listener;
         if (!initialized) {
@@ -392,13 +463,13 @@ public class ModelController {
                     try {
                         currentModelStateHash = access.readModelStateHash(address);
                         if (currentModelStateHash != null) {
-                            this.currentValidatedState = loadModelState(currentModelStateHash, false);
+                            setCurrentValidatedState(loadModelState(currentModelStateHash, false));
                         }
                     }
                     catch (IOException e) {
                         currentModelStateHash = this.config.getValidHash(address);
                         if (currentModelStateHash != null) {
-                            this.currentValidatedState = loadModelState(currentModelStateHash, false);
+                            setCurrentValidatedState(loadModelState(currentModelStateHash, false));
                         }
                         do {
                             currentModelStateHash = readNextModelStateHashFromTangle(address);
@@ -407,7 +478,7 @@ public class ModelController {
                                     this.currentValidationContext = new ValidationContext(context, null, null,
                                             System.currentTimeMillis() + timestampTolerance, 0, this.config,
                                             this.secretConfig);
-                                    this.currentValidatedState = loadModelState(currentModelStateHash, true);
+                                    setCurrentValidatedState(loadModelState(currentModelStateHash, true));
                                     access.saveModelStateHash(address, currentModelStateHash);
                                     break;
                                 }
@@ -440,51 +511,58 @@ public class ModelController {
         ModelState modelState = new ModelState();
         IPLDObject<ModelState> object = new IPLDObject<>(multihash, modelState, context,
                 validate ? currentValidationContext : null);
-        return object.getMapped() == null ? null : object;
+        try {
+            return object.getMapped() == null ? null : object;
+        }
+        finally {
+            if (validate) {
+                context.clearPrefetchedBlocks();
+            }
+        }
     }
 
     boolean handleIncomingModelState(String pubSubData, long timestamp) {
-        if (validatingModelState) {
-            storePotentialModelStateHash(pubSubData, timestamp);
-            return false;
+        if (!eventLoop.isLoopThread()) {
+            return callOnEventLoop(() -> handleIncomingModelState(pubSubData, timestamp));
         }
-        validatingModelState = true;
         try {
             String multihash = convertPubSubDataToOriginal(pubSubData);
             if (currentLocalHashes.containsKey(multihash)) {
                 if (currentValidatedState == null || !multihash.equals(currentValidatedState.getMultihash())) {
-                    this.currentValidatedState = loadModelState(multihash, false);
+                    setCurrentValidatedState(loadModelState(multihash, false));
                     if (listener != null) {
                         listener.onModelStateValidated();
                     }
-                    SettlementController localSettlement = currentLocalHashes.get(multihash);
-                    if (localSettlement != null) {
-                        this.currentSnapshot = localSettlement;
-                    }
+                    // if the snapshot has been evicted, there is none, that matches the state, until the next merge
+                    this.currentSnapshot = currentLocalHashes.get(multihash);
                     checkPendingUserStatesAndQueues(currentValidatedState);
                 }
             }
             else {
                 currentValidationContext = new ValidationContext(context, currentValidatedState,
                         currentLocalHashes.keySet(), timestamp, timestampTolerance, config, secretConfig);
-                IPLDObject<ModelState> loaded = loadModelState(multihash, true);
+                IPLDObject<ModelState> loaded;
+                try {
+                    loaded = loadModelState(multihash, true);
+                }
+                catch (ValidationException e) {
+                    pubSubFilter.rejected(multihash, System.currentTimeMillis());
+                    throw e;
+                }
+                pubSubFilter.validated(multihash, System.currentTimeMillis());
                 mergeWithValidated(loaded);
             }
         }
         catch (Exception e) {
             e.printStackTrace();
         }
-        finally {
-            validatingModelState = false;
-        }
         processPending();
         return true;
     }
 
     boolean handleIncomingOwnershipRequest(String pubSubData, long timestamp) {
-        if (validatingModelState) {
-            storePotentialOwnershipRequestHash(pubSubData, timestamp);
-            return false;
+        if (!eventLoop.isLoopThread()) {
+            return callOnEventLoop(() -> handleIncomingOwnershipRequest(pubSubData, timestamp));
         }
         String decoded = convertPubSubDataToOriginal(pubSubData);
         String[] parts = decoded
@@ -522,14 +600,95 @@ public class ModelController {
     }
 
     private void processPending() {
+        if (scheduledCommit != null) { // the scheduled commit will include the pending changes
+            return;
+        }
         try {
             executePendingChanges();
         }
         catch (Exception e) {
             e.printStackTrace();
         }
-        processPendingModelStates();
-        processPendingOwnershipRequests();
+    }
+
+    /**
+     * Shuts down the executors, that have been created for the context, after the event currently being handled (if
+     * any), so a running validation or save operation can still use them. The event loop is shut down, as well.
+     */
+    private void shutdownExecutors() {
+        Runnable task = () -> {
+            context.setSaveExecutor(null);
+            context.setPrefetchExecutor(null);
+            context.setVerificationExecutor(null);
+            for (ExecutorService executor : executors) {
+                executor.shutdown();
+            }
+            // on the loop thread, this is the current task, so the loop ends afterwards
+            eventLoop.shutdown();
+        };
+        if (eventLoop.isLoopThread() || !eventLoop.post(null, task)) {
+            task.run();
+        }
+    }
+
+    private <T> T callOnEventLoop(Callable<T> task) {
+        try {
+            return eventLoop.call(task);
+        }
+        catch (RuntimeException e) {
+            throw e;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the number of received messages and local changes, that wait for being processed
+     */
+    public int getQueueDepth() {
+        return eventLoop.getQueueDepth();
+    }
+
+    /**
+     * @return the highest number of received messages and local changes, that waited for being processed at once
+     */
+    public int getMaxQueueDepth() {
+        return eventLoop.getMaxQueueDepth();
+    }
+
+    /**
+     * @return the number of received model states, that have been dropped, because a newer one from the same peer had
+     *         been received before they could be processed
+     */
+    public long getSupersededModelStateCount() {
+        return eventLoop.getSupersededCount();
+    }
+
+    /**
+     * @return the number of received messages, that have been dropped, because the inbox was full
+     */
+    public long getRejectedMessageCount() {
+        return eventLoop.getRejectedCount();
+    }
+
+    /**
+     * @return the number of received model states, that have been ignored, because they had been validated or rejected
+     *         recently
+     */
+    public long getIgnoredModelStateCount() {
+        return pubSubFilter.getIgnoredCount();
+    }
+
+    /**
+     * @return the number of received model states, that have been ignored, because the sending peer exceeded its rate
+     */
+    public long getThrottledModelStateCount() {
+        return pubSubFilter.getThrottledCount();
     }
 
     /**
@@ -683,6 +842,30 @@ public class ModelController {
     private boolean saveLocalChanges(IPLDObject<Document> document, IPLDObject<DocumentRemoval> documentRemoval,
             IPLDObject<SettlementRequest> settlementRequest, IPLDObject<UnbanRequest> unbanRequest,
             OwnershipTransferController ownershipTransferController, IPLDObject<Voting> voting, long timestamp) {
+        if (!eventLoop.isLoopThread()) {
+            return callOnEventLoop(() -> saveLocalChanges(document, documentRemoval, settlementRequest, unbanRequest,
+                    ownershipTransferController, voting, timestamp));
+        }
+        if (document != null || documentRemoval != null || settlementRequest != null || unbanRequest != null
+                || ownershipTransferController != null || voting != null) {
+            long commitWindow = config.getCommitWindow();
+            if (commitWindow > 0) {
+                handleNoUserStatesSaved(document, documentRemoval, settlementRequest, unbanRequest,
+                        ownershipTransferController, voting);
+                addDeferredProgressListeners(document, documentRemoval, settlementRequest, unbanRequest, voting);
+                if (++uncommittedChanges < config.getCommitMaxChanges() && scheduleCommit(commitWindow)) {
+                    return false; // queued, not committed yet
+                }
+                return commitDeferredChanges();
+            }
+        }
+        return commitLocalChanges(document, documentRemoval, settlementRequest, unbanRequest,
+                ownershipTransferController, voting, timestamp);
+    }
+
+    private boolean commitLocalChanges(IPLDObject<Document> document, IPLDObject<DocumentRemoval> documentRemoval,
+            IPLDObject<SettlementRequest> settlementRequest, IPLDObject<UnbanRequest> unbanRequest,
+            OwnershipTransferController ownershipTransferController, IPLDObject<Voting> voting, long timestamp) {
         IPLDObject<ModelState> currentModelState = currentValidatedState;
         ModelState currentState;
         ModelState modelState;
@@ -953,7 +1136,9 @@ public class ModelController {
         else {
             Map<String, SealedDocument> sealedDocs = new HashMap<>();
             Set<String> invalidSettlementRequests = new HashSet<>();
-            if (settlementController.evaluate(sealedDocs, invalidSettlementRequests, modelState)) {
+            // the results are going to be part of a new model state
+            if (settlementController.evaluate(sealedDocs, invalidSettlementRequests, modelState,
+                    ModelState.CURRENT_META_VERSION)) {
                 settlementStates = new HashMap<>();
                 settlementController.update(settlementStates, modelState, sealedDocs);
                 sealedDocuments = new ArrayList<>();
@@ -1092,6 +1277,9 @@ public class ModelController {
                 userState = document.getMapped().getUserState();
             }
             Map<String, IPLDObject<Document>> docs = documents.get(userHash);
+            if (userState == null && docs != null) { // new user, whose first documents have been queued
+                userState = docs.values().iterator().next().getMapped().getUserState();
+            }
             if (queuedDocuments != null) {
                 synchronized (queuedDocuments) {
                     queuedDocuments.remove(userHash);
@@ -1229,7 +1417,8 @@ public class ModelController {
             return false;
         }
         try {
-            currentLocalHashes.put(newLocalState.save(context, null, null), settlementController);
+            String newHash = newLocalState.save(context, null, null);
+            putCurrentLocalHash(newHash, settlementController);
             if (pendingUserStates != null) {
                 synchronized (pendingUserStates) {
                     pendingUserStates.clear();
@@ -1450,24 +1639,6 @@ public class ModelController {
         this.pendingNewReviewTableEntries = newReviewTableEntries;
     }
 
-    private void storePotentialModelStateHash(String pubSubData, long timestamp) {
-        if (pendingModelStates == null) {
-            pendingModelStates = new ArrayDeque<>();
-        }
-        synchronized (pendingModelStates) {
-            pendingModelStates.push(new PendingSubMessage(pubSubData, timestamp));
-        }
-    }
-
-    private void storePotentialOwnershipRequestHash(String pubSubData, long timestamp) {
-        if (pendingOwnershipRequests == null) {
-            pendingOwnershipRequests = new ArrayDeque<>();
-        }
-        synchronized (pendingOwnershipRequests) {
-            pendingOwnershipRequests.push(new PendingSubMessage(pubSubData, timestamp));
-        }
-    }
-
     private void enqueueDocument(IPLDObject<Document> document) {
         String key = document.getMapped().expectUserState().getUser().getMultihash();
         queuedDocuments = enqueue(document, queuedDocuments, key);
@@ -1624,6 +1795,115 @@ public class ModelController {
         return false;
     }
 
+    private void addDeferredProgressListeners(IPLDObject<?>... changes) {
+        for (IPLDObject<?> change : changes) {
+            ProgressListener progressListener = change == null ? null : change.getProgressListener();
+            if (progressListener != null) {
+                if (deferredProgressListeners == null) {
+                    deferredProgressListeners = new ArrayList<>();
+                }
+                deferredProgressListeners.add(progressListener);
+            }
+        }
+    }
+
+    /**
+     * Schedules a commit of the collected local changes after the commit window, unless one has already been
+     * scheduled.
+     * 
+     * @param commitWindow the commit window in milliseconds
+     * @return false iff the commit could not be scheduled (the controller has been removed)
+     */
+    private boolean scheduleCommit(long commitWindow) {
+        if (scheduledCommit != null) {
+            return true;
+        }
+        if (commitScheduler == null) {
+            commitScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Commit scheduler " + address);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executors.add(commitScheduler);
+        }
+        int generation = ++commitGeneration;
+        try {
+            scheduledCommit = commitScheduler.schedule(() -> postCommit(commitWindow, generation), commitWindow,
+                    TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private void postCommit(long commitWindow, int generation) {
+        if (!eventLoop.post(null, () -> commitScheduledChanges(generation))) { // inbox full, try again later
+            try {
+                commitScheduler.schedule(() -> postCommit(commitWindow, generation), commitWindow,
+                        TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e) {
+                // the controller has been removed
+            }
+        }
+    }
+
+    private void commitScheduledChanges(int generation) {
+        // the scheduled commit is obsolete, if the changes have been committed early
+        if (generation == commitGeneration && scheduledCommit != null) {
+            commitDeferredChanges();
+        }
+    }
+
+    /**
+     * Commits the collected local changes and cancels the scheduled commit, if any. If the commit fails, the failure
+     * is reported to the progress listeners of the collected changes.
+     * 
+     * @return true iff a new local model state has been saved
+     */
+    private boolean commitDeferredChanges() {
+        if (scheduledCommit != null) {
+            scheduledCommit.cancel(false);
+            scheduledCommit = null;
+        }
+        commitGeneration++;
+        uncommittedChanges = 0;
+        Collection<ProgressListener> progressListeners = deferredProgressListeners;
+        deferredProgressListeners = null;
+        try {
+            return executePendingChanges();
+        }
+        catch (Exception e) {
+            e.printStackTrace();
+            if (progressListeners != null) {
+                for (ProgressListener progressListener : progressListeners) {
+                    progressListener.failedTask(ProgressTask.LINK_MODEL, "Failed to commit the local changes.", e);
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Adds the hash of a local model state. Only the most recent settlement snapshots are retained, the hashes of older
+     * ones are kept without their snapshots (they are still needed for finding common states while validating).
+     * 
+     * @param multihash the multihash of the local model state
+     * @param snapshot  the settlement snapshot (can be null)
+     */
+    private void putCurrentLocalHash(String multihash, SettlementController snapshot) {
+        currentLocalHashes.put(multihash, snapshot);
+        if (snapshot != null) {
+            settlementSnapshotHashes.remove(multihash);
+            settlementSnapshotHashes.add(multihash);
+            int maxSnapshots = Math.max(1, config.getMaxSettlementSnapshots());
+            while (settlementSnapshotHashes.size() > maxSnapshots) {
+                currentLocalHashes.put(settlementSnapshotHashes.poll(), null);
+            }
+        }
+    }
+
     private boolean mergeWithValidated(IPLDObject<ModelState> validated) {
         IPLDObject<ModelState> nextValidatedState;
         ModelState localMergeBase;
@@ -1632,10 +1912,10 @@ public class ModelController {
             Map<String, Set<String>> obsoleteReviewVersions = currentValidationContext.getObsoleteReviewVersions();
             SettlementController snapshot = currentValidationContext.getMainSettlementController()
                     .createPreEvaluationSnapshot(0);
-            currentLocalHashes.put(validated.getMultihash(), snapshot);
+            putCurrentLocalHash(validated.getMultihash(), snapshot);
             if (obsoleteReviewVersions.size() == 0 || !localRoot.removeObsoleteReviewVersions(obsoleteReviewVersions)) {
                 nextValidatedState = validated;
-                this.currentValidatedState = nextValidatedState;
+                setCurrentValidatedState(nextValidatedState);
                 this.currentSnapshot = snapshot;
                 checkPendingUserStatesAndQueues(validated);
                 return true;
@@ -1651,7 +1931,7 @@ public class ModelController {
             String newHash = nextValidatedState.save(context, null, null);
             SettlementController currentSnapshot = currentValidationContext.getMainSettlementController()
                     .createPreEvaluationSnapshot(0);
-            currentLocalHashes.put(newHash, currentSnapshot);
+            putCurrentLocalHash(newHash, currentSnapshot);
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -1859,54 +2139,6 @@ public class ModelController {
         }
     }
 
-    private void processPendingModelStates() {
-        if (pendingModelStates != null) {
-            do {
-                PendingSubMessage pending;
-                synchronized (pendingModelStates) {
-                    pending = pendingModelStates.isEmpty() ? null : pendingModelStates.pop();
-                }
-                if (pending == null) {
-                    break;
-                }
-                try {
-                    if (!handleIncomingModelState(pending.message, pending.timestamp)) {
-                        break;
-                    }
-                }
-                catch (Exception e) {
-                    System.out.println("Couldn't handle received model state hash: " + pending.message);
-                    e.printStackTrace();
-                }
-            }
-            while (true);
-        }
-    }
-
-    private void processPendingOwnershipRequests() {
-        if (pendingOwnershipRequests != null) {
-            do {
-                PendingSubMessage pending;
-                synchronized (pendingOwnershipRequests) {
-                    pending = pendingOwnershipRequests.isEmpty() ? null : pendingOwnershipRequests.pop();
-                }
-                if (pending == null) {
-                    break;
-                }
-                try {
-                    if (!handleIncomingOwnershipRequest(pending.message, pending.timestamp)) {
-                        break;
-                    }
-                }
-                catch (Exception e) {
-                    System.out.println("Couldn't handle received ownership request: " + pending.message);
-                    e.printStackTrace();
-                }
-            }
-            while (true);
-        }
-    }
-
     private void publishLocalState(IPLDObject<ModelState> localState) {
         try {
             access.publish(address, localState.getMultihash());
@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.projectjinxers.account.Signer;
+import org.projectjinxers.controller.IPLDObject.ProgressListener;
+import org.projectjinxers.controller.IPLDObject.ProgressTask;
+import org.projectjinxers.model.IPLDSerializable;
+
+/**
+ * Saves the unsaved subgraph of an object level by level. The first pass collects all unsaved links (only those, that
+ * would be saved recursively by a regular writer) and calculates their heights (leaves have height 0). Then all links
+ * of the same height are saved concurrently. Since all unsaved children of a link have a lower height, saving a link
+ * never recurses. That way the number of consecutive IPFS round trips is the height of the subgraph instead of the
+ * number of unsaved links. The root object itself is not saved by this class.
+ * 
+ * @author ProjectJinxers
+ */
+class ParallelSaver implements IPLDWriter {
+
+    private static class UnsavedLink {
+
+        private final IPLDObject<?> object;
+        private final Signer signer;
+        private final ProgressListener progressListener;
+        private boolean visited;
+        private int height;
+
+        UnsavedLink(IPLDObject<?> object, Signer signer, ProgressListener progressListener) {
+            this.object = object;
+            this.signer = signer;
+            this.progressListener = progressListener;
+        }
+
+    }
+
+    /**
+     * Progress listeners are not required to be thread-safe. This wrapper serializes the calls from the concurrent
+     * save operations.
+     */
+    private static class SynchronizedProgressListener implements ProgressListener {
+
+        private final ProgressListener wrapped;
+
+        SynchronizedProgressListener(ProgressListener wrapped) {
+            this.wrapped = wrapped;
+        }
+
+        @Override
+        public synchronized boolean isDeterminate() {
+            return wrapped.isDeterminate();
+        }
+
+        @Override
+        public synchronized void startedTask(ProgressTask task, int steps) {
+            wrapped.startedTask(task, steps);
+        }
+
+        @Override
+        public synchronized void nextStep() {
+            wrapped.nextStep();
+        }
+
+        @Override
+        public synchronized void finishedTask(ProgressTask task) {
+            wrapped.finishedTask(task);
+        }
+
+        @Override
+        public synchronized void failedTask(ProgressTask task, String message, Throwable failure) {
+            wrapped.failedTask(task, message, failure);
+        }
+
+        @Override
+        public synchronized void enqueued() {
+            wrapped.enqueued();
+        }
+
+        @Override
+        public synchronized boolean dequeued() {
+            return wrapped.dequeued();
+        }
+
+        @Override
+        public synchronized void obsoleted() {
+            wrapped.obsoleted();
+        }
+
+        @Override
+        public synchronized boolean isCanceled() {
+            return wrapped.isCanceled();
+        }
+
+    }
+
+    private final ExecutorService executor;
+
+    private final Map<IPLDObject<?>, UnsavedLink> collected = new IdentityHashMap<>();
+    private final Map<ProgressListener, ProgressListener> synchronizedListeners = new IdentityHashMap<>();
+    private List<UnsavedLink> currentLinks;
+
+    /**
+     * Constructor.
+     * 
+     * @param executor the executor for the concurrent save operations
+     */
+    ParallelSaver(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Saves all unsaved links of the given root object (recursively).
+     * 
+     * @param context          the context
+     * @param root             the root object (will not be saved)
+     * @param signer           the signer for recursion
+     * @param progressListener the progress listener for recursion
+     * @throws IOException if saving at least one link fails
+     */
+    void saveLinks(IPLDContext context, IPLDObject<?> root, Signer signer, ProgressListener progressListener)
+            throws IOException {
+        int height = collect(context, root, signer, progressListener);
+        if (height == 0) {
+            return;
+        }
+        List<List<UnsavedLink>> levels = new ArrayList<>();
+        for (int i = 0; i < height; i++) {
+            levels.add(new ArrayList<>());
+        }
+        for (UnsavedLink link : collected.values()) {
+            levels.get(link.height).add(link);
+        }
+        for (List<UnsavedLink> level : levels) {
+            saveLevel(context, level);
+        }
+    }
+
+    private int collect(IPLDContext context, IPLDObject<?> object, Signer signer, ProgressListener progressListener)
+            throws IOException {
+        List<UnsavedLink> links = new ArrayList<>();
+        currentLinks = links;
+        object.write(this, signer, context, progressListener);
+        int height = 0;
+        for (UnsavedLink link : links) {
+            if (!link.visited) {
+                link.visited = true;
+                link.height = collect(context, link.object, link.signer, link.progressListener);
+            }
+            height = Math.max(height, link.height + 1);
+        }
+        return height;
+    }
+
+    private void saveLevel(IPLDContext context, List<UnsavedLink> level) throws IOException {
+        if (level.size() == 1) {
+            UnsavedLink link = level.get(0);
+            link.object.save(context, link.signer, link.progressListener);
+            return;
+        }
+        List<Future<String>> futures = new ArrayList<>();
+        for (UnsavedLink link : level) {
+            futures.add(executor.submit(() -> link.object.save(context, link.signer, link.progressListener)));
+        }
+        IOException failure = null;
+        for (Future<String> future : futures) {
+            try {
+                future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new IOException("interrupted while saving", e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (failure == null) {
+                    failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void addLink(IPLDObject<?> link, Signer signer, IPLDContext context, ProgressListener progressListener) {
+        // no context means the link must have been saved already, we let the regular writer fail in that case
+        if (link != null && link.getMultihash() == null && context != null) {
+            UnsavedLink unsaved = collected.get(link);
+            if (unsaved == null) {
+                ProgressListener listener = progressListener;
+                if (listener != null && listener != link.getProgressListener()) {
+                    listener = synchronizedListeners.computeIfAbsent(listener, SynchronizedProgressListener::new);
+                }
+                unsaved = new UnsavedLink(link, signer, listener);
+                collected.put(link, unsaved);
+            }
+            // shared links are added to each parent, so the parents' heights are correct
+            currentLinks.add(unsaved);
+        }
+    }
+
+    @Override
+    public byte[] write(IPLDContext context, IPLDObject<?> object, Signer signer, ProgressListener progressListener)
+            throws IOException {
+        return null;
+    }
+
+    @Override
+    public byte[] hashBase(IPLDContext context, IPLDSerializable data) throws IOException {
+        return null;
+    }
+
+    @Override
+    public void writeBoolean(String key, Boolean value) throws IOException {
+
+    }
+
+    @Override
+    public void writeChar(String key, Character value) throws IOException {
+
+    }
+
+    @Override
+    public void writeNumber(String key, Number value) throws IOException {
+
+    }
+
+    @Override
+    public void writeString(String key, String value) throws IOException {
+
+    }
+
+    @Override
+    public void writeLink(String key, String link) throws IOException {
+
+    }
+
+    @Override
+    public void writeLink(String key, IPLDObject<?> link, Signer signer, IPLDContext context,
+            ProgressListener progressListener) throws IOException {
+        addLink(link, signer, context, progressListener);
+    }
+
+    @Override
+    public void writeBooleanArray(String key, boolean[] value) throws IOException {
+
+    }
+
+    @Override
+    public void writeByteArray(String key, byte[] value, ByteCodec codec) throws IOException {
+
+    }
+
+    @Override
+    public void writeCharArray(String key, char[] value) throws IOException {
+
+    }
+
+    @Override
+    public void writeIntArray(String key, int[] value) throws IOException {
+
+    }
+
+    @Override
+    public void writeLongArray(String key, long[] value) throws IOException {
+
+    }
+
+    @Override
+    public void writeNumberArray(String key, Number[] value) throws IOException {
+
+    }
+
+    @Override
+    public void writeStringArray(String key, String[] value) throws IOException {
+
+    }
+
+    @Override
+    public void writeLinkArray(String key, String[] links) throws IOException {
+
+    }
+
+    @Override
+    public void writeLinkArray(String key, IPLDObject<?>[] links, Signer signer, IPLDContext context,
+            ProgressListener progressListener) throws IOException {
+        if (links != null) {
+            for (IPLDObject<?> link : links) {
+                addLink(link, signer, context, progressListener);
+            }
+        }
+    }
+
+    @Override
+    public void writeLinkArrays(String key, Map<String, String[]> links) throws IOException {
+
+    }
+
+    @Override
+    public <D extends IPLDSerializable> void writeLinkObjectArrays(String key, Map<String, IPLDObject<D>[]> linkArrays,
+            Signer signer, IPLDContext context, ProgressListener progressListener) throws IOException {
+        if (linkArrays != null) {
+            for (IPLDObject<D>[] links : linkArrays.values()) {
+                for (IPLDObject<D> link : links) {
+                    addLink(link, signer, context, progressListener);
+                }
+            }
+        }
+    }
+
+}
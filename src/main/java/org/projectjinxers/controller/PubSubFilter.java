@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Filters model state announcements received via pubsub, before they are validated. Multihashes, that have recently
+ * been validated or rejected, are ignored until their time to live has expired. Additionally, each peer (identified by
+ * the pubsub 'from' field) has a token bucket, so a single peer can't flood the validation with announcements. Both the
+ * seen multihashes and the peers are bounded, the least recently used ones are forgotten first. Instances are
+ * thread-safe.
+ * 
+ * @author ProjectJinxers
+ */
+class PubSubFilter {
+
+    private static class TokenBucket {
+
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double tokens, long lastRefill) {
+            this.tokens = tokens;
+            this.lastRefill = lastRefill;
+        }
+
+    }
+
+    private final int maxEntries;
+    private final long validatedTTL;
+    private final long rejectedTTL;
+    private final int peerBurst;
+    private final double peerRate;
+
+    private final Map<String, Long> seen; // multihash -> expiry
+    private final Map<String, TokenBucket> buckets;
+
+    private long ignoredCount;
+    private long throttledCount;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxEntries   the maximum number of remembered multihashes (and peers)
+     * @param validatedTTL the time in milliseconds a validated multihash is remembered
+     * @param rejectedTTL  the time in milliseconds a rejected multihash is remembered
+     * @param peerBurst    the maximum number of announcements a peer can send in a burst
+     * @param peerRate     the sustained number of announcements per second a peer can send
+     */
+    PubSubFilter(int maxEntries, long validatedTTL, long rejectedTTL, int peerBurst, double peerRate) {
+        this.maxEntries = maxEntries;
+        this.validatedTTL = validatedTTL;
+        this.rejectedTTL = rejectedTTL;
+        this.peerBurst = peerBurst;
+        this.peerRate = peerRate;
+        this.seen = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<String, Long> eldest) {
+                return size() > PubSubFilter.this.maxEntries;
+            }
+        };
+        this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<String, TokenBucket> eldest) {
+                return size() > PubSubFilter.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Checks, whether an announcement should be validated. If the multihash has been seen recently, the peer's token
+     * bucket is not touched.
+     * 
+     * @param from      the announcing peer
+     * @param multihash the announced multihash
+     * @param now       the current time in milliseconds
+     * @return true iff the announced model state should be validated
+     */
+    synchronized boolean accept(String from, String multihash, long now) {
+        if (isSeen(multihash, now)) {
+            ignoredCount++;
+            return false;
+        }
+        TokenBucket bucket = buckets.get(from);
+        if (bucket == null) {
+            bucket = new TokenBucket(peerBurst, now);
+            buckets.put(from, bucket);
+        }
+        else {
+            bucket.tokens = Math.min(peerBurst, bucket.tokens + (now - bucket.lastRefill) * peerRate / 1000);
+            bucket.lastRefill = now;
+        }
+        if (bucket.tokens < 1) {
+            throttledCount++;
+            return false;
+        }
+        bucket.tokens--;
+        return true;
+    }
+
+    /**
+     * @param multihash the multihash
+     * @param now       the current time in milliseconds
+     * @return true iff the multihash has recently been validated or rejected
+     */
+    synchronized boolean isSeen(String multihash, long now) {
+        Long expiry = seen.get(multihash);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry <= now) {
+            seen.remove(multihash);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers a successfully validated multihash.
+     * 
+     * @param multihash the multihash
+     * @param now       the current time in milliseconds
+     */
+    synchronized void validated(String multihash, long now) {
+        seen.put(multihash, now + validatedTTL);
+    }
+
+    /**
+     * Remembers a multihash, that failed validation.
+     * 
+     * @param multihash the multihash
+     * @param now       the current time in milliseconds
+     */
+    synchronized void rejected(String multihash, long now) {
+        seen.put(multihash, now + rejectedTTL);
+    }
+
+    /**
+     * @return the number of announcements, that have been ignored, because the multihash had been seen recently
+     */
+    synchronized long getIgnoredCount() {
+        return ignoredCount;
+    }
+
+    /**
+     * @return the number of announcements, that have been ignored, because the peer exceeded its rate
+     */
+    synchronized long getThrottledCount() {
+        return throttledCount;
+    }
+
+}
@@ -30,10 +30,12 @@ import org.projectjinxers.model.SealedDocument;
 import org.projectjinxers.model.SettlementRequest;
 import org.projectjinxers.model.User;
 import org.projectjinxers.model.UserState;
+import org.projectjinxers.util.PersistentLinkedMap;
+import org.projectjinxers.util.PersistentLinkedSet;
 
 /**
  * @author ProjectJinxers
- *
+ * 
  */
 public class SettlementController {
 
@@ -48,8 +50,8 @@ public class SettlementController {
         private String documentOwner;
         private IPLDObject<Document> document;
         private IPLDObject<Document> invertTruth;
-        private Map<IPLDObject<User>, IPLDObject<Review>> reviews = new HashMap<>();
-        private Map<String, IPLDObject<Review>> reviewsByDocumentHash = new HashMap<>();
+        private Map<IPLDObject<User>, IPLDObject<Review>> reviews;
+        private Map<String, IPLDObject<Review>> reviewsByDocumentHash;
 
         private int approveCount;
         private int declineCount;
@@ -64,6 +66,30 @@ public class SettlementController {
 
         private SealedDocument sealedDocument;
 
+        // instances are shared with snapshots, only the controller holding the current owner token may modify them
+        private Object owner;
+        // identifies the controller, that has created this instance or copied it including the evaluation results
+        private Object evaluator;
+
+        SettlementData(Object owner, Object evaluator) {
+            this.owner = owner;
+            this.evaluator = evaluator;
+            this.reviews = new PersistentLinkedMap<>();
+            this.reviewsByDocumentHash = new PersistentLinkedMap<>();
+        }
+
+        private SettlementData(SettlementData original, Object owner, Object evaluator) {
+            this.owner = owner;
+            this.evaluator = evaluator;
+            this.requestedAt = original.requestedAt;
+            this.forMainValidation = original.forMainValidation;
+            this.documentOwner = original.documentOwner;
+            this.document = original.document;
+            this.invertTruth = original.invertTruth;
+            this.reviews = new PersistentLinkedMap<>(original.reviews);
+            this.reviewsByDocumentHash = new PersistentLinkedMap<>(original.reviewsByDocumentHash);
+        }
+
         void addReview(IPLDObject<Review> reviewObject) {
             Review review = reviewObject.getMapped();
             UserState reviewer = review.expectUserState();
@@ -171,14 +197,24 @@ public class SettlementController {
             }
         }
 
-        SettlementData createPreEvaluationSnapshot() {
-            SettlementData res = new SettlementData();
-            res.requestedAt = requestedAt;
-            res.forMainValidation = forMainValidation;
-            res.documentOwner = documentOwner;
-            res.document = document;
-            res.invertTruth = invertTruth;
-            res.reviews.putAll(reviews);
+        SettlementData createPreEvaluationSnapshot(Object owner, Object evaluator) {
+            return new SettlementData(this, owner, evaluator);
+        }
+
+        SettlementData copy(Object owner) {
+            SettlementData res = new SettlementData(this, owner, evaluator);
+            res.assumedValid = assumedValid;
+            res.approveCount = approveCount;
+            res.declineCount = declineCount;
+            res.neutralCount = neutralCount;
+            // the evaluation results are replaced, but never modified
+            res.falseClaim = falseClaim;
+            res.falseApprovals = falseApprovals;
+            res.falseDeclinations = falseDeclinations;
+            res.trueClaim = trueClaim;
+            res.trueApprovals = trueApprovals;
+            res.trueDeclinations = trueDeclinations;
+            res.sealedDocument = sealedDocument;
             return res;
         }
 
@@ -613,9 +649,9 @@ public class SettlementController {
     private boolean forMainValidation;
     private boolean resetSettlementData;
 
-    private Set<String> documentOwners = new TreeSet<>();
-    private Set<String> invalidRequests = new TreeSet<>();
-    private Map<String, SettlementData> eligibleSettlements = new HashMap<>();
+    private Set<String> documentOwners = new PersistentLinkedSet<>();
+    private Set<String> invalidRequests = new PersistentLinkedSet<>();
+    private Map<String, SettlementData> eligibleSettlements = new PersistentLinkedMap<>();
     private Set<String> unbanned;
     private Map<String, IPLDObject<User>> grantedClaimUnbans;
     private Map<String, IPLDObject<User>> grantedApprovalUnbans;
@@ -629,6 +665,10 @@ public class SettlementController {
 
     private TruthInversionGraph truthInversionGraph;
 
+    // see SettlementData (the owner token is replaced, when a snapshot is created)
+    private Object settlementDataOwner = new Object();
+    private final Object settlementDataEvaluator = new Object();
+
     SettlementController(IPLDObject<ModelState> previousState, ModelState commonState,
             ValidationContext validationContext, boolean main, long timestamp, long timestampTolerance) {
         this.validationContext = validationContext;
@@ -639,9 +679,9 @@ public class SettlementController {
         }
         if (main) {
             this.forMainValidation = true;
-            this.invalidByReview = new HashMap<>();
-            this.invalidByTimestamp = new TreeSet<>();
-            this.removedDocuments = new TreeSet<>();
+            this.invalidByReview = new PersistentLinkedMap<>();
+            this.invalidByTimestamp = new PersistentLinkedSet<>();
+            this.removedDocuments = new PersistentLinkedSet<>();
         }
         Set<Entry<String, IPLDObject<SettlementRequest>>> requestEntries;
         if (previousState == null) {
@@ -855,7 +895,7 @@ public class SettlementController {
             if (main) {
                 invalidByReview.remove(removedHash);
             }
-            SettlementData data = eligibleSettlements.get(reviewed.getMultihash());
+            SettlementData data = getSettlementData(reviewed.getMultihash());
             if (data != null) {
                 data.removeReview(document.expectUserState().getUser());
             }
@@ -870,37 +910,37 @@ public class SettlementController {
         if (doc instanceof Review) {
             if (((Review) doc).getApprove()) {
                 if (grantedApprovalUnbans == null) {
-                    grantedApprovalUnbans = new HashMap<>();
+                    grantedApprovalUnbans = new PersistentLinkedMap<>();
                 }
                 grantedApprovalUnbans.put(documentHash, user);
             }
             else {
                 if (grantedDeclinationUnbans == null) {
-                    grantedDeclinationUnbans = new HashMap<>();
+                    grantedDeclinationUnbans = new PersistentLinkedMap<>();
                 }
                 grantedDeclinationUnbans.put(documentHash, user);
             }
         }
         else {
             if (grantedClaimUnbans == null) {
-                grantedClaimUnbans = new HashMap<>();
+                grantedClaimUnbans = new PersistentLinkedMap<>();
             }
             grantedClaimUnbans.put(documentHash, user);
         }
         if (unbanned == null) {
-            unbanned = new HashSet<>();
+            unbanned = new PersistentLinkedSet<>();
         }
         unbanned.add(user.getMultihash());
     }
 
     private SettlementData addEligibleSettlement(IPLDObject<Document> document, boolean needRequest) {
         String documentMultihash = document.getMultihash();
-        SettlementData data = eligibleSettlements.get(documentMultihash);
+        SettlementData data = getSettlementData(documentMultihash);
         if (data == null) {
             if (needRequest) {
                 return null;
             }
-            data = new SettlementData();
+            data = new SettlementData(settlementDataOwner, settlementDataEvaluator);
             Document doc = document.getMapped();
             String owner = doc.expectUserState().getUser().getMultihash();
             data.documentOwner = owner;
@@ -926,6 +966,34 @@ public class SettlementController {
         return data;
     }
 
+    private SettlementData getSettlementData(String documentMultihash) {
+        return ensureOwnSettlementData(documentMultihash, eligibleSettlements.get(documentMultihash));
+    }
+
+    /**
+     * Makes sure the given settlement data can be modified. If it is shared with a snapshot, it is copied and replaced
+     * in the maps, that contain it. Settlement data, that has been inherited from the controller a snapshot has been
+     * created from, is copied without its evaluation results.
+     * 
+     * @param documentMultihash the key
+     * @param data              the settlement data (can be null)
+     * @return the settlement data, that can be modified by this controller
+     */
+    private SettlementData ensureOwnSettlementData(String documentMultihash, SettlementData data) {
+        if (data == null || data.owner == settlementDataOwner) {
+            return data;
+        }
+        SettlementData res = data.evaluator == settlementDataEvaluator ? data.copy(settlementDataOwner)
+                : data.createPreEvaluationSnapshot(settlementDataOwner, settlementDataEvaluator);
+        if (eligibleSettlements.get(documentMultihash) == data) {
+            eligibleSettlements.put(documentMultihash, res);
+        }
+        if (eligibleMainValidation != null && eligibleMainValidation.get(documentMultihash) == data) {
+            eligibleMainValidation.put(documentMultihash, res);
+        }
+        return res;
+    }
+
     public boolean checkUser(String userHash) {
         if (unbanned != null && unbanned.contains(userHash)) {
             return true;
@@ -936,16 +1004,37 @@ public class SettlementController {
         return documentOwners.contains(userHash);
     }
 
+    /**
+     * Evaluates the eligible settlements with the rules of the meta version of the given model state.
+     * 
+     * @see #evaluate(Map, Set, ModelState, int)
+     */
     public boolean evaluate(Map<String, SealedDocument> sealedDocuments, Set<String> invalidSettlementRequests,
             ModelState modelState) {
+        return evaluate(sealedDocuments, invalidSettlementRequests, modelState, modelState.getMetaVersion());
+    }
+
+    /**
+     * Evaluates the eligible settlements and collects the sealed documents. If there are truth inversions, the
+     * affected reviews are added to the truth inversion graph.
+     * 
+     * @param sealedDocuments           the map to put the sealed documents in
+     * @param invalidSettlementRequests the optional set to add the hashes of invalid settlement requests to
+     * @param modelState                the model state
+     * @param metaVersion               the meta version of the model state, that is going to contain the results (the
+     *                                  rules for adding reviews to the truth inversion graph depend on it)
+     * @return true iff there are results
+     */
+    public boolean evaluate(Map<String, SealedDocument> sealedDocuments, Set<String> invalidSettlementRequests,
+            ModelState modelState, int metaVersion) {
         boolean res;
         if (main && validationMode) {
             res = evaluateMainValidation(sealedDocuments, modelState);
         }
         else {
             if (resetSettlementData) {
-                for (SettlementData data : eligibleMainValidation.values()) {
-                    data.reset();
+                for (String key : new ArrayList<>(eligibleMainValidation.keySet())) {
+                    ensureOwnSettlementData(key, eligibleMainValidation.get(key)).reset();
                 }
                 resetSettlementData = false;
             }
@@ -959,9 +1048,8 @@ public class SettlementController {
             else {
                 invalid = null;
             }
-            for (Entry<String, SettlementData> entry : eligibleSettlements.entrySet()) {
-                String key = entry.getKey();
-                SettlementData data = entry.getValue();
+            for (String key : new ArrayList<>(eligibleSettlements.keySet())) {
+                SettlementData data = getSettlementData(key);
                 if (data.requestedAt != 0 && (invalid == null || !invalid.contains(key)) && data.count()) {
                     if (data.reviews.size() < SettlementData.MIN_TOTAL_COUNT) {
                         if (validationMode) {
@@ -999,31 +1087,11 @@ public class SettlementController {
         }
         if (truthInversionGraph != null) {
             try {
-                Collection<IPLDObject<UserState>> userStates = modelState.expectAllUserStates();
-                Collection<IPLDObject<Document>> reviews = new ArrayList<>();
-                for (IPLDObject<UserState> userState : userStates) {
-                    Map<String, IPLDObject<Document>> allDocuments = userState.getMapped().getAllDocuments();
-                    if (allDocuments != null) {
-                        for (Entry<String, IPLDObject<Document>> entry : allDocuments.entrySet()) {
-                            IPLDObject<Document> document = entry.getValue();
-                            Document doc = document.getMapped();
-                            if (doc instanceof Review) {
-                                if (((Review) doc).isInvertTruth() && !sealedDocuments.containsKey(entry.getKey())
-                                        && modelState.isSealedDocument(entry.getKey())) {
-                                    truthInversionGraph.addTruthInversionReview(document);
-                                }
-                                else {
-                                    reviews.add(document);
-                                }
-                            }
-                            else if (doc == null) {
-                                throw new ValidationException("Can't validate potientially cascading truth inversion");
-                            }
-                        }
-                    }
+                if (metaVersion >= ModelState.META_VERSION_TRUTH_INVERSION_CLOSURE) {
+                    addTruthInversionClosure(sealedDocuments, modelState);
                 }
-                for (IPLDObject<Document> review : reviews) {
-                    truthInversionGraph.addReview(review);
+                else {
+                    addTruthInversionReviews(sealedDocuments, modelState);
                 }
             }
             catch (ValidationException e) {
@@ -1036,16 +1104,88 @@ public class SettlementController {
         return res;
     }
 
+    /**
+     * Adds the reviews in the order, in which they are stored. Reviews of reviews are only added, if the reviewed
+     * review has been stored before.
+     */
+    private void addTruthInversionReviews(Map<String, SealedDocument> sealedDocuments, ModelState modelState) {
+        Collection<IPLDObject<UserState>> userStates = modelState.expectAllUserStates();
+        Collection<IPLDObject<Document>> reviews = new ArrayList<>();
+        for (IPLDObject<UserState> userState : userStates) {
+            Map<String, IPLDObject<Document>> allDocuments = userState.getMapped().getAllDocuments();
+            if (allDocuments != null) {
+                for (Entry<String, IPLDObject<Document>> entry : allDocuments.entrySet()) {
+                    IPLDObject<Document> document = entry.getValue();
+                    Document doc = document.getMapped();
+                    if (doc instanceof Review) {
+                        if (((Review) doc).isInvertTruth() && !sealedDocuments.containsKey(entry.getKey())
+                                && modelState.isSealedDocument(entry.getKey())) {
+                            truthInversionGraph.addTruthInversionReview(document);
+                        }
+                        else {
+                            reviews.add(document);
+                        }
+                    }
+                    else if (doc == null) {
+                        throw new ValidationException("Can't validate potientially cascading truth inversion");
+                    }
+                }
+            }
+        }
+        for (IPLDObject<Document> review : reviews) {
+            truthInversionGraph.addReview(review);
+        }
+    }
+
+    /**
+     * Adds the sealed invert truth reviews from the document indexes and then all reviews of documents in the graph,
+     * repeatedly, until no more documents are added.
+     */
+    private void addTruthInversionClosure(Map<String, SealedDocument> sealedDocuments, ModelState modelState) {
+        Collection<IPLDObject<UserState>> userStates = modelState.expectAllUserStates();
+        Set<String> oldTruthInversions = new HashSet<>();
+        for (IPLDObject<UserState> userState : userStates) {
+            for (IPLDObject<Document> review : userState.getMapped().getInvertTruthReviews()) {
+                String multihash = review.getMultihash();
+                if (!sealedDocuments.containsKey(multihash) && modelState.isSealedDocument(multihash)) {
+                    truthInversionGraph.addTruthInversionReview(review);
+                    oldTruthInversions.add(multihash);
+                }
+            }
+        }
+        // only reviews of documents in the graph are relevant, adding them might add more documents, so this is
+        // repeated until there are no more unvisited documents
+        Set<String> visited = new HashSet<>();
+        Collection<String> unvisited = truthInversionGraph.index.keySet();
+        while (!unvisited.isEmpty()) {
+            Collection<String> reviewedHashes = new ArrayList<>();
+            for (String multihash : unvisited) {
+                if (visited.add(multihash)) {
+                    reviewedHashes.add(multihash);
+                }
+            }
+            for (String reviewedHash : reviewedHashes) {
+                for (IPLDObject<UserState> userState : userStates) {
+                    for (IPLDObject<Document> review : userState.getMapped().getReviews(reviewedHash)) {
+                        if (!oldTruthInversions.contains(review.getMultihash())) {
+                            truthInversionGraph.addReview(review);
+                        }
+                    }
+                }
+            }
+            unvisited = reviewedHashes.isEmpty() ? reviewedHashes : truthInversionGraph.index.keySet();
+        }
+    }
+
     private boolean evaluateMainValidation(Map<String, SealedDocument> sealedDocuments, ModelState modelState) {
         if (eligibleMainValidation == null) {
             eligibleMainValidation = new HashMap<>();
             documentOwnersMainValidation = new TreeSet<>();
             Set<String> invalid = new TreeSet<>(invalidByReview.values());
             invalid.addAll(invalidByTimestamp);
-            for (Entry<String, SettlementData> entry : eligibleSettlements.entrySet()) {
-                SettlementData data = entry.getValue();
+            for (String documentHash : new ArrayList<>(eligibleSettlements.keySet())) {
+                SettlementData data = getSettlementData(documentHash);
                 if (data.requestedAt != 0 && data.forMainValidation) {
-                    String documentHash = entry.getKey();
                     if (!invalid.contains(documentHash)) {
                         if (data.reviews.size() < SettlementData.MIN_TOTAL_COUNT) {
                             throw new ValidationException("settlement request for document with too few reviews");
@@ -1078,8 +1218,8 @@ public class SettlementController {
             return true;
         }
         Map<String, SettlementData> eligible = main && validationMode ? eligibleMainValidation : eligibleSettlements;
-        for (SettlementData data : eligible.values()) {
-            if (data.isAffected(user)) {
+        for (String key : new ArrayList<>(eligible.keySet())) {
+            if (ensureOwnSettlementData(key, eligible.get(key)).isAffected(user)) {
                 return true;
             }
         }
@@ -1089,8 +1229,8 @@ public class SettlementController {
     public void update(Map<String, UserState> userStates, ModelState modelState,
             Map<String, SealedDocument> sealedDocuments) {
         Map<String, SettlementData> eligible = main && validationMode ? eligibleMainValidation : eligibleSettlements;
-        for (SettlementData data : eligible.values()) {
-            data.update(userStates);
+        for (String key : new ArrayList<>(eligible.keySet())) {
+            ensureOwnSettlementData(key, eligible.get(key)).update(userStates);
         }
         if (truthInversionGraph != null) {
             truthInversionGraph.traverse(userStates, modelState, sealedDocuments);
@@ -1129,34 +1269,41 @@ public class SettlementController {
         return false;
     }
 
+    /**
+     * Creates a snapshot of the settlement state before evaluation. The collections and the settlement data are shared
+     * (in constant time) and copied by this controller and the snapshot, before they are modified.
+     * 
+     * @param timestamp the timestamp for the snapshot (0 or negative for the timestamp of this controller)
+     * @return the snapshot
+     */
     public SettlementController createPreEvaluationSnapshot(long timestamp) {
         SettlementController res = new SettlementController(null, null, null, true,
                 timestamp <= 0 ? this.timestamp : timestamp, timestampTolerance);
-        res.documentOwners.addAll(documentOwners);
-        res.invalidRequests.addAll(invalidRequests);
-        for (Entry<String, SettlementData> entry : eligibleSettlements.entrySet()) {
-            res.eligibleSettlements.put(entry.getKey(), entry.getValue().createPreEvaluationSnapshot());
-        }
+        res.documentOwners = new PersistentLinkedSet<>(documentOwners);
+        res.invalidRequests = new PersistentLinkedSet<>(invalidRequests);
+        res.eligibleSettlements = new PersistentLinkedMap<>(eligibleSettlements);
+        // this controller must not modify the shared settlement data anymore
+        settlementDataOwner = new Object();
         if (unbanned != null) {
-            res.unbanned = new HashSet<>(unbanned);
+            res.unbanned = new PersistentLinkedSet<>(unbanned);
         }
         if (grantedClaimUnbans != null) {
-            res.grantedClaimUnbans = new HashMap<>(grantedClaimUnbans);
+            res.grantedClaimUnbans = new PersistentLinkedMap<>(grantedClaimUnbans);
         }
         if (grantedApprovalUnbans != null) {
-            res.grantedApprovalUnbans = new HashMap<>(grantedApprovalUnbans);
+            res.grantedApprovalUnbans = new PersistentLinkedMap<>(grantedApprovalUnbans);
         }
         if (grantedDeclinationUnbans != null) {
-            res.grantedDeclinationUnbans = new HashMap<>(grantedDeclinationUnbans);
+            res.grantedDeclinationUnbans = new PersistentLinkedMap<>(grantedDeclinationUnbans);
         }
         if (invalidByReview != null) {
-            res.invalidByReview.putAll(invalidByReview);
+            res.invalidByReview = new PersistentLinkedMap<>(invalidByReview);
         }
         if (invalidByTimestamp != null) {
-            res.invalidByTimestamp.addAll(invalidByTimestamp);
+            res.invalidByTimestamp = new PersistentLinkedSet<>(invalidByTimestamp);
         }
         if (removedDocuments != null) {
-            res.removedDocuments = new HashSet<>(removedDocuments);
+            res.removedDocuments = new PersistentLinkedSet<>(removedDocuments);
         }
         return res;
     }
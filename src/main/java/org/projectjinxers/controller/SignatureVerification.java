@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.projectjinxers.account.Signer;
+
+/**
+ * Collects the signature checks of one validation and runs them concurrently. The first invalid signature cancels the
+ * remaining checks. If a check has failed while others are still being submitted, the next submission fails, too.
+ * 
+ * @author ProjectJinxers
+ */
+class SignatureVerification {
+
+    private final IPLDContext context;
+    private final CompletionService<Void> completionService;
+    private final List<Future<Void>> pending = new ArrayList<>();
+    private volatile boolean failed;
+
+    SignatureVerification(IPLDContext context, ExecutorService executor) {
+        this.context = context;
+        this.completionService = new ExecutorCompletionService<>(executor);
+    }
+
+    /**
+     * Submits a signature check.
+     * 
+     * @param object    the signed object
+     * @param publicKey the public key of the signer
+     * @throws ValidationException if a previously submitted check has already failed
+     */
+    void submit(IPLDObject<?> object, byte[] publicKey) {
+        if (failed) {
+            await();
+        }
+        pending.add(completionService.submit(() -> {
+            try {
+                context.verifySignature(object, Signer.VERIFIER, publicKey);
+            }
+            catch (RuntimeException e) {
+                failed = true;
+                throw e;
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * Waits for all submitted checks to finish.
+     * 
+     * @throws ValidationException if at least one signature is invalid
+     */
+    void await() {
+        try {
+            for (int i = pending.size(); i > 0; i--) {
+                completionService.take().get();
+            }
+            pending.clear();
+        }
+        catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new ValidationException("interrupted while verifying signatures", e);
+        }
+        catch (ExecutionException e) {
+            cancel();
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ValidationException("failed to verify signature", cause);
+        }
+    }
+
+    /**
+     * Cancels all checks, that have not finished, yet.
+     */
+    void cancel() {
+        for (Future<Void> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+    }
+
+}
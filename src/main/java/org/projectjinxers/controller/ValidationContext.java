@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 
 import org.projectjinxers.account.Signer;
 import org.projectjinxers.config.Config;
@@ -93,6 +94,7 @@ public class ValidationContext {
     private Map<String, IPLDObject<UserState>> validatedUserStates;
 
     private Set<String> validated = new TreeSet<>();
+    private SignatureVerification signatureVerification;
     private Map<String, Set<String>> obsoleteReviewVersions = new HashMap<>();
 
     public ValidationContext(IPLDContext context, IPLDObject<ModelState> currentValidLocalState,
@@ -163,8 +165,55 @@ public class ValidationContext {
         }
     }
 
+    /**
+     * Validates the given model state. If the context has a verification executor, the signatures are verified
+     * concurrently. Nested calls share the verification stage of the outermost call, which waits for all signature
+     * checks to finish.
+     * 
+     * @param modelState the model state to validate
+     */
     public void validateModelState(ModelState modelState) {
+        ExecutorService executor = context.getVerificationExecutor();
+        if (executor == null || signatureVerification != null) {
+            validateModelStateInternal(modelState);
+        }
+        else {
+            signatureVerification = new SignatureVerification(context, executor);
+            try {
+                validateModelStateInternal(modelState);
+                signatureVerification.await();
+            }
+            finally {
+                signatureVerification.cancel();
+                signatureVerification = null;
+            }
+        }
+    }
+
+    /**
+     * Verifies the signature of the given object with the public key of the given user. While a model state is being
+     * validated concurrently, the check is only submitted. A failure is then reported by a later submission or when
+     * the validation of the model state finishes.
+     * 
+     * @param object the signed object
+     * @param user   the signer
+     */
+    public void verifySignature(IPLDObject<?> object, User user) {
+        if (signatureVerification == null) {
+            context.verifySignature(object, Signer.VERIFIER, user);
+        }
+        else {
+            signatureVerification.submit(object, user.getPublicKey());
+        }
+    }
+
+    private void validateModelStateInternal(ModelState modelState) {
         findCommonState(modelState);
+        // oldest first, so the ancestors of each state have been validated
+        for (ModelState previous : previousStates) {
+            previous.validateSkipLink();
+        }
+        modelState.validateSkipLink();
         if (mainSettlementController == null) {
             mainSettlementController = new SettlementController(modelState.getPreviousVersion(), commonState, this,
                     true, modelState.getTimestamp(), timestampTolerance);
@@ -266,6 +315,10 @@ public class ValidationContext {
                     else {
                         findBestCommonUserState(userHash, userStateObject, commonUserState, previousStates);
                     }
+                    for (UserState previous : previousStates) {
+                        previous.validateSkipLink();
+                    }
+                    userState.validateSkipLink();
                     UserState.DOCUMENT_KEY_COLLECTOR.validateMoveOnceUndeletableEntries(previousStates);
                     UserState.SETTLEMENT_KEY_COLLECTOR.validateUndeletableEntries(previousStates, this.previousStates);
                     UserState.OWNERSHIP_KEY_COLLECTOR.validateMoveOnceUndeletableEntries(previousStates);
@@ -403,8 +456,9 @@ public class ValidationContext {
                         return;
                     }
                 }
-                while (localVersion > remoteVersion) {
-                    localStateObject = localState.getPreviousVersion();
+                if (localVersion > remoteVersion) {
+                    // the local states have been validated, so their skip links can be followed
+                    localStateObject = ModelState.getAncestor(localStateObject, remoteVersion);
                     if (localStateObject == null) {
                         return;
                     }
@@ -461,8 +515,8 @@ public class ValidationContext {
                     previousStates.push(remoteUserState);
                     remoteVersion = remoteUserState.getVersion();
                 }
-                while (localVersion > remoteVersion) {
-                    localUserStateObject = localUserState.getPreviousVersion();
+                if (localVersion > remoteVersion) {
+                    localUserStateObject = UserState.getAncestor(localUserStateObject, remoteVersion);
                     if (localUserStateObject == null) {
                         return;
                     }
@@ -497,13 +551,13 @@ public class ValidationContext {
         long remoteVersion = remoteUserState.getVersion();
 
         while (remoteVersion > minCommonVersion) {
-            while (localVersion > remoteVersion) {
-                localUserStateObject = localUserState.getPreviousVersion();
-                if (localUserStateObject == null) {
-                    break;
+            if (localVersion > remoteVersion) {
+                IPLDObject<UserState> ancestor = UserState.getAncestor(localUserStateObject, remoteVersion);
+                if (ancestor != null) {
+                    localUserStateObject = ancestor;
+                    localUserState = ancestor.getMapped();
+                    localVersion = localUserState.getVersion();
                 }
-                localUserState = localUserStateObject.getMapped();
-                localVersion = localUserState.getVersion();
             }
             if (localVersion == remoteVersion) {
                 if (localUserStateObject.getMultihash().equals(remoteUserStateObject.getMultihash())) {
@@ -561,7 +615,7 @@ public class ValidationContext {
             String userHash = user.getMultihash();
             user = currentValidLocalState.getMapped().expectUserState(userHash).getMapped().getUser();
         }
-        context.verifySignature(request, Signer.VERIFIER, user.getMapped());
+        verifySignature(request, user.getMapped());
         IPLDObject<Document> document = req.getDocument();
         String documentHash = document.getMapped().getFirstVersionHash();
         if (documentHash == null) {
@@ -606,7 +660,7 @@ public class ValidationContext {
         if (currentValidLocalState != null) {
             user = currentValidLocalState.getMapped().expectUserState(userHash).getMapped().getUser();
         }
-        context.verifySignature(request, Signer.VERIFIER, user.getMapped());
+        verifySignature(request, user.getMapped());
         return userHash;
     }
 
@@ -727,16 +781,14 @@ public class ValidationContext {
             // those references here
             if (doc.getPreviousVersion() == null) {
                 String reviewedHash = review.getDocument().getMultihash();
-                for (IPLDObject<Document> documentObject : userState.getAllDocuments().values()) {
-                    doc = documentObject.getMapped();
-                    if (documentObject != document && doc instanceof Review && doc.getPreviousVersion() == null
-                            && reviewedHash.equals(((Review) doc).getDocument().getMultihash())) {
+                for (IPLDObject<Document> documentObject : userState.getReviews(reviewedHash)) {
+                    if (documentObject != document && documentObject.getMapped().getPreviousVersion() == null) {
                         throw new ValidationException("already reviewed");
                     }
                 }
             }
         }
-        context.verifySignature(document, Signer.VERIFIER, user);
+        verifySignature(document, user);
     }
 
     /*
@@ -759,7 +811,7 @@ public class ValidationContext {
                         "can't remove a review of a document with a valid pending settlement request");
             }
         }
-        context.verifySignature(removal, Signer.VERIFIER, user);
+        verifySignature(removal, user);
     }
 
     /*
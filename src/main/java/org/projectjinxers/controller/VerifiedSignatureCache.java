@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Size-bounded set of (multihash, public key) pairs, whose signatures have already been verified successfully. Since
+ * the contents of a block (including the signature) can't change under its multihash, a pair, that has been verified
+ * once, never has to be verified again. The least recently used pairs are evicted first.
+ * 
+ * @author ProjectJinxers
+ */
+public class VerifiedSignatureCache {
+
+    private static final class Key {
+
+        private final String multihash;
+        private final byte[] publicKey;
+        private final int hashCode;
+
+        Key(String multihash, byte[] publicKey) {
+            this.multihash = multihash;
+            this.publicKey = publicKey;
+            this.hashCode = 31 * multihash.hashCode() + Arrays.hashCode(publicKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return multihash.equals(other.multihash) && Arrays.equals(publicKey, other.publicKey);
+        }
+
+    }
+
+    private final LinkedHashMap<Key, Boolean> entries;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Constructor.
+     * 
+     * @param maxEntries the maximum number of pairs (0 or negative for an unbounded cache)
+     */
+    public VerifiedSignatureCache(int maxEntries) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Entry<Key, Boolean> eldest) {
+                return maxEntries > 0 && size() > maxEntries;
+            }
+
+        };
+    }
+
+    /**
+     * @param multihash the multihash of the signed object
+     * @param publicKey the public key of the signer
+     * @return true iff the signature of the object with the given multihash has already been verified with the given
+     *         public key
+     */
+    public boolean contains(String multihash, byte[] publicKey) {
+        boolean res;
+        synchronized (entries) {
+            res = entries.get(new Key(multihash, publicKey)) != null;
+        }
+        if (res) {
+            hitCount.increment();
+        }
+        else {
+            missCount.increment();
+        }
+        return res;
+    }
+
+    /**
+     * Records a successful verification.
+     * 
+     * @param multihash the multihash of the signed object
+     * @param publicKey the public key of the signer
+     */
+    public void add(String multihash, byte[] publicKey) {
+        Key key = new Key(multihash, publicKey.clone());
+        synchronized (entries) {
+            entries.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @return the number of cached pairs
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the number of lookups, that found a verified pair
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return the number of lookups, that didn't find a verified pair
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return the ratio of successful lookups to all lookups (0 if there haven't been any lookups)
+     */
+    public double getHitRate() {
+        long hits = hitCount.sum();
+        long total = hits + missCount.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+}
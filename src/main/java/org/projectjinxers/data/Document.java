@@ -168,9 +168,8 @@ public class Document extends ProgressObserver {
                 return true;
             });
             startedTask(ProgressTask.LOAD, -1);
-            new Thread(() -> {
+            getLoaderExecutor().execute(() -> {
                 try {
-                    Thread.sleep(2000);
                     if (documentObject == null) {
                         ModelController controller;
                         if (group == null) {
@@ -227,7 +226,7 @@ public class Document extends ProgressObserver {
                     failedTask(ProgressTask.LOAD, "Failed to load the document.", e);
                 }
                 loading = false;
-            }).start();
+            });
         }
         return documentObject;
     }
@@ -288,9 +287,6 @@ public class Document extends ProgressObserver {
         new Thread(() -> {
             try {
                 controller.saveDocument(documentObject, signer);
-                if (user.getMultihash() == null) {
-                    user.didSaveUserObject();
-                }
             }
             catch (IOException e) {
 
@@ -331,6 +327,15 @@ public class Document extends ProgressObserver {
         }
     }
 
+    @Override
+    public void finishedTask(ProgressTask task) {
+        // the user object is part of the model state only after the (possibly deferred) commit
+        if (task == ProgressTask.LINK_MODEL && saveCalled && user != null && user.getMultihash() == null) {
+            user.didSaveUserObject();
+        }
+        super.finishedTask(task);
+    }
+
     @Override
     public boolean isDestroying() {
         return removeCalled;
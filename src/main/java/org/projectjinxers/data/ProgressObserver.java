@@ -13,6 +13,10 @@
  */
 package org.projectjinxers.data;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.projectjinxers.config.Config;
 import org.projectjinxers.controller.IPLDObject.ProgressListener;
 import org.projectjinxers.controller.IPLDObject.ProgressTask;
 
@@ -36,6 +40,9 @@ public abstract class ProgressObserver implements ProgressListener {
 
     }
 
+    // shared by the loaders of all data objects, created on demand
+    private static ExecutorService loaderExecutor;
+
     private transient boolean determinate;
 
     private transient ProgressTask currentTask;
@@ -173,6 +180,22 @@ public abstract class ProgressObserver implements ProgressListener {
         return retry.retry();
     }
 
+    /**
+     * @return the executor for loading data objects in the background (bounded by the configured number of load
+     *         threads, the threads are daemon threads); this is not the load executor of the IPLD contexts, since the
+     *         loaders block on loads and on initializing model controllers
+     */
+    protected static synchronized ExecutorService getLoaderExecutor() {
+        if (loaderExecutor == null) {
+            loaderExecutor = Executors.newFixedThreadPool(Config.getSharedInstance().getIPFSLoadThreads(), runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return loaderExecutor;
+    }
+
     public abstract boolean isDestroying();
 
     public abstract String getStatusMessagePrefix();
@@ -110,7 +110,7 @@ public class User extends ProgressObserver {
                 return true;
             });
             startedTask(ProgressTask.LOAD, -1);
-            new Thread(() -> {
+            getLoaderExecutor().execute(() -> {
                 try {
                     IPLDObject<org.projectjinxers.model.User> tmp = userObject;
                     if (tmp == null) {
@@ -137,7 +137,7 @@ public class User extends ProgressObserver {
                 catch (Exception e) {
                     failedTask(ProgressTask.LOAD, "Failed to load the user.", e);
                 }
-            }).start();
+            });
         }
         return userObject;
     }
@@ -148,7 +148,7 @@ public class User extends ProgressObserver {
             return true;
         });
         startedTask(ProgressTask.LOAD, -1);
-        new Thread(() -> {
+        getLoaderExecutor().execute(() -> {
             ModelController controller = group.getOrCreateController();
             if (group.isInitializingController()) {
                 failedTask(ProgressTask.LOAD,
@@ -173,7 +173,7 @@ public class User extends ProgressObserver {
                     }
                 }
             }
-        }).start();
+        });
     }
 
     public IPLDObject<org.projectjinxers.model.User> getOrCreateNewUserObject() {
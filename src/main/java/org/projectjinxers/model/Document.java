@@ -62,7 +62,7 @@ public class Document implements IPLDSerializable {
     private static final String KEY_SOURCE = "s";
     private static final String KEY_CONTENTS = "c";
     private static final String KEY_USER_STATE = "u";
-    private static final String KEY_PREVIOUS_VERSION = "p";
+    static final String KEY_PREVIOUS_VERSION = "p";
     private static final String KEY_FIRST_VERSION = "f";
     private static final String KEY_LINKS = "l";
 
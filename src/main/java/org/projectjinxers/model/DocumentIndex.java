@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.projectjinxers.controller.IPLDObject;
+import org.projectjinxers.controller.ValidationException;
+import org.projectjinxers.util.PersistentLinkedMap;
+
+/**
+ * Index of all document versions of a {@link UserState}. A UserState's index is derived from the one of its previous
+ * version by only re-indexing the version chains of changed documents, the unchanged structure is shared (see
+ * {@link PersistentLinkedMap}). Instances are not modified after they have been built or derived.
+ * 
+ * @author ProjectJinxers
+ */
+class DocumentIndex {
+
+    // by first version hash, then by multihash (at indexing time), oldest version first
+    private final Map<String, Map<String, IPLDObject<Document>>> versionChains;
+    // all versions by multihash
+    private final Map<String, IPLDObject<Document>> documents;
+    // by hash of the reviewed document, then by multihash of the review version
+    private final Map<String, Map<String, IPLDObject<Document>>> reviews;
+    // all invert truth review versions by multihash
+    private final Map<String, IPLDObject<Document>> invertTruthReviews;
+
+    /**
+     * Builds the index for the given documents.
+     * 
+     * @param documents the documents (latest versions by first version hash)
+     */
+    DocumentIndex(Map<String, IPLDObject<Document>> documents) {
+        this.versionChains = new PersistentLinkedMap<>();
+        this.documents = new PersistentLinkedMap<>();
+        this.reviews = new PersistentLinkedMap<>();
+        this.invertTruthReviews = new PersistentLinkedMap<>();
+        for (Entry<String, IPLDObject<Document>> entry : documents.entrySet()) {
+            addChain(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private DocumentIndex(DocumentIndex base) {
+        this.versionChains = new PersistentLinkedMap<>(base.versionChains);
+        this.documents = new PersistentLinkedMap<>(base.documents);
+        this.reviews = new PersistentLinkedMap<>(base.reviews);
+        this.invertTruthReviews = new PersistentLinkedMap<>(base.invertTruthReviews);
+    }
+
+    /**
+     * Derives the index for a newer version of the documents map.
+     * 
+     * @param documents   the newer documents (latest versions by first version hash)
+     * @param changedKeys the keys (first version hashes) of all added, changed and removed documents
+     * @return the derived index
+     */
+    DocumentIndex derive(Map<String, IPLDObject<Document>> documents, Collection<String> changedKeys) {
+        DocumentIndex res = new DocumentIndex(this);
+        for (String key : changedKeys) {
+            res.removeChain(key);
+            IPLDObject<Document> document = documents.get(key);
+            if (document != null) {
+                res.addChain(key, document);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @param firstVersionHash the hash of the first version of a document
+     * @return all versions of the document (oldest first) or null, if there is no such document
+     */
+    Collection<IPLDObject<Document>> getVersionChain(String firstVersionHash) {
+        Map<String, IPLDObject<Document>> res = versionChains.get(firstVersionHash);
+        return res == null ? null : Collections.unmodifiableCollection(res.values());
+    }
+
+    /**
+     * @param multihash the multihash of a document version
+     * @return the document version or null, if there is no such version
+     */
+    IPLDObject<Document> getDocument(String multihash) {
+        return documents.get(multihash);
+    }
+
+    /**
+     * @return true iff versions have been indexed before they were saved (their multihashes were unknown)
+     */
+    boolean hasUnsavedVersions() {
+        return documents.containsKey(null);
+    }
+
+    /**
+     * @return a read-only view of all document versions by multihash
+     */
+    Map<String, IPLDObject<Document>> getDocuments() {
+        return Collections.unmodifiableMap(documents);
+    }
+
+    /**
+     * @param reviewedDocumentHash the hash of the reviewed document
+     * @return all versions of all reviews of the document (can be empty, but not null)
+     */
+    Collection<IPLDObject<Document>> getReviews(String reviewedDocumentHash) {
+        Map<String, IPLDObject<Document>> res = reviews.get(reviewedDocumentHash);
+        return res == null ? Collections.emptyList() : Collections.unmodifiableCollection(res.values());
+    }
+
+    /**
+     * @return all versions of all invert truth reviews (read-only)
+     */
+    Collection<IPLDObject<Document>> getInvertTruthReviews() {
+        return Collections.unmodifiableCollection(invertTruthReviews.values());
+    }
+
+    private void addChain(String key, IPLDObject<Document> document) {
+        Map<String, IPLDObject<Document>> versions = new LinkedHashMap<>();
+        UserState.expandDocuments(Collections.singletonMap(key, document), null, versions, null);
+        versionChains.put(key, versions);
+        for (Entry<String, IPLDObject<Document>> entry : versions.entrySet()) {
+            String multihash = entry.getKey();
+            IPLDObject<Document> version = entry.getValue();
+            documents.put(multihash, version);
+            Document doc = version.getMapped();
+            if (doc == null) {
+                throw new ValidationException("Can't validate potientially cascading truth inversion");
+            }
+            if (doc instanceof Review) {
+                Review review = (Review) doc;
+                String reviewedHash = review.getDocument().getMultihash();
+                Map<String, IPLDObject<Document>> reviewVersions = reviews.get(reviewedHash);
+                // the inner maps might be shared with the base index, so they are copied
+                reviewVersions = reviewVersions == null ? new LinkedHashMap<>() : new LinkedHashMap<>(reviewVersions);
+                reviewVersions.put(multihash, version);
+                reviews.put(reviewedHash, reviewVersions);
+                if (review.isInvertTruth()) {
+                    invertTruthReviews.put(multihash, version);
+                }
+            }
+        }
+    }
+
+    private void removeChain(String key) {
+        Map<String, IPLDObject<Document>> versions = versionChains.remove(key);
+        if (versions != null) {
+            for (Entry<String, IPLDObject<Document>> entry : versions.entrySet()) {
+                String multihash = entry.getKey();
+                IPLDObject<Document> version = entry.getValue();
+                documents.remove(multihash);
+                Document doc = version.getMapped();
+                if (doc instanceof Review) {
+                    String reviewedHash = ((Review) doc).getDocument().getMultihash();
+                    Map<String, IPLDObject<Document>> reviewVersions = reviews.get(reviewedHash);
+                    if (reviewVersions != null) {
+                        reviewVersions = new LinkedHashMap<>(reviewVersions);
+                        reviewVersions.remove(multihash);
+                        if (reviewVersions.isEmpty()) {
+                            reviews.remove(reviewedHash);
+                        }
+                        else {
+                            reviews.put(reviewedHash, reviewVersions);
+                        }
+                    }
+                    invertTruthReviews.remove(multihash);
+                }
+            }
+        }
+    }
+
+}
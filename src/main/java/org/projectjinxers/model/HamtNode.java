@@ -0,0 +1,528 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.model;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.projectjinxers.account.Signer;
+import org.projectjinxers.controller.IPLDContext;
+import org.projectjinxers.controller.IPLDObject;
+import org.projectjinxers.controller.IPLDObject.ProgressListener;
+import org.projectjinxers.controller.IPLDReader;
+import org.projectjinxers.controller.IPLDReader.KeyProvider;
+import org.projectjinxers.controller.IPLDWriter;
+import org.projectjinxers.controller.ValidationContext;
+import org.projectjinxers.util.PersistentLinkedMap;
+
+/**
+ * Node of a hash array mapped trie (HAMT), which stores large maps (key to one or more links) in multiple small
+ * objects. A node either is a leaf, which contains up to {@link #MAX_LEAF_ENTRIES} entries (sorted by key), or a
+ * branch, which contains up to 32 children (one per 5 bits of the key hash, the present ones are marked in a bitmap).
+ * The shape only depends on the set of keys, so equal maps result in equal multihashes. When building a new version,
+ * unchanged nodes of the previous version are reused, so updating a single entry creates O(log n) new nodes only.
+ * 
+ * @author ProjectJinxers
+ */
+public class HamtNode implements IPLDSerializable, Loader<HamtNode> {
+
+    private static final String KEY_BITMAP = "b";
+    private static final String KEY_CHILDREN = "n";
+    private static final String KEY_KEYS = "k";
+    private static final String KEY_COUNTS = "c";
+    private static final String KEY_LINKS = "l";
+
+    static final int BITS_PER_LEVEL = 5;
+    static final int MAX_LEVEL = 6;
+    static final int MAX_LEAF_ENTRIES = 32;
+
+    /**
+     * Builds a HAMT for the given entries. Nodes of the reference HAMT with equal contents are reused.
+     * 
+     * @param entries   the entries (the values must be arrays of IPLDObjects or Strings)
+     * @param reference the root of the reference HAMT (e.g. the one of the previous version, can be null)
+     * @return the root of the HAMT (null if there are no entries)
+     */
+    public static IPLDObject<HamtNode> build(SortedMap<String, ? extends Object[]> entries,
+            IPLDObject<HamtNode> reference) {
+        if (entries == null || entries.isEmpty()) {
+            return null;
+        }
+        return build(entries, 0, reference);
+    }
+
+    private static IPLDObject<HamtNode> build(SortedMap<String, ? extends Object[]> entries, int level,
+            IPLDObject<HamtNode> reference) {
+        HamtNode ref = reference == null ? null : reference.getMapped();
+        if (entries.size() <= MAX_LEAF_ENTRIES || level == MAX_LEVEL) {
+            HamtNode leaf = new HamtNode(entries);
+            return ref != null && leaf.hasSameEntries(ref) ? reference : new IPLDObject<>(leaf);
+        }
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        SortedMap<String, Object[]>[] slots = new SortedMap[1 << BITS_PER_LEVEL];
+        for (Entry<String, ? extends Object[]> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            int slot = getSlot(key, level);
+            if (slots[slot] == null) {
+                slots[slot] = new TreeMap<>();
+            }
+            slots[slot].put(key, entry.getValue());
+        }
+        long bitmap = 0;
+        List<IPLDObject<HamtNode>> children = new ArrayList<>();
+        boolean unchanged = ref != null && ref.children != null;
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (slots[slot] != null) {
+                bitmap |= 1L << slot;
+                IPLDObject<HamtNode> refChild = ref == null ? null : ref.getChild(slot);
+                IPLDObject<HamtNode> child = build(slots[slot], level + 1, refChild);
+                unchanged = unchanged && child == refChild;
+                children.add(child);
+            }
+        }
+        if (unchanged && bitmap == ref.bitmap) {
+            return reference;
+        }
+        @SuppressWarnings("unchecked")
+        IPLDObject<HamtNode>[] array = (IPLDObject<HamtNode>[]) Array.newInstance(IPLDObject.class, children.size());
+        return new IPLDObject<>(new HamtNode(bitmap, children.toArray(array)));
+    }
+
+    static int getSlot(String key, int level) {
+        // spread the bits of the hash code (specified for Strings, so it's stable across platforms)
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return (hash >>> (level * BITS_PER_LEVEL)) & ((1 << BITS_PER_LEVEL) - 1);
+    }
+
+    /**
+     * @param reader  the reader
+     * @param key     the key of the link to the root
+     * @param context the context
+     * @return the (lazily loaded) root of the HAMT or null, if there is no link for the given key
+     */
+    public static IPLDObject<HamtNode> readRoot(IPLDReader reader, String key, IPLDContext context) {
+        return reader.readLinkObject(key, context, null, LoaderFactory.HAMT_NODE, false);
+    }
+
+    /**
+     * Reads the entries of a HAMT, that maps keys to single link objects.
+     * 
+     * @param <D>               the type of the linked objects
+     * @param root              the root of the HAMT (can be null)
+     * @param context           the context
+     * @param validationContext the validation context
+     * @param loaderFactory     the loader factory for the linked objects
+     * @param eager             whether or not to load the linked objects immediately
+     * @param keyProvider       provides the keys for the linked objects
+     * @return the map or null, if the root is null
+     */
+    public static <D extends IPLDSerializable> Map<String, IPLDObject<D>> readLinks(IPLDObject<HamtNode> root,
+            IPLDContext context, ValidationContext validationContext, LoaderFactory<D> loaderFactory, boolean eager,
+            KeyProvider<D> keyProvider) {
+        return readLinks(root, context, validationContext, loaderFactory, eager, keyProvider, null);
+    }
+
+    /**
+     * Reads the entries of a HAMT, that maps keys to single link objects. If there is a validation context, the linked
+     * blocks and their chains (see {@link IPLDContext#prefetch(Collection, String)}) are prefetched, since they are
+     * going to be validated anyway.
+     * 
+     * @param <D>               the type of the linked objects
+     * @param root              the root of the HAMT (can be null)
+     * @param context           the context
+     * @param validationContext the validation context
+     * @param loaderFactory     the loader factory for the linked objects
+     * @param eager             whether or not to load the linked objects immediately
+     * @param keyProvider       provides the keys for the linked objects
+     * @param chainKey          the key of the links to follow while prefetching (null for not following any links)
+     * @return the map or null, if the root is null
+     */
+    public static <D extends IPLDSerializable> Map<String, IPLDObject<D>> readLinks(IPLDObject<HamtNode> root,
+            IPLDContext context, ValidationContext validationContext, LoaderFactory<D> loaderFactory, boolean eager,
+            KeyProvider<D> keyProvider, String chainKey) {
+        if (root == null) {
+            return null;
+        }
+        Map<String, String[]> entries = new LinkedHashMap<>();
+        resolveShards(root).collectEntries(entries);
+        if (validationContext != null) {
+            Collection<String> links = new ArrayList<>();
+            for (String[] entry : entries.values()) {
+                links.add(entry[0]);
+            }
+            context.prefetch(links, chainKey);
+        }
+        Map<String, IPLDObject<D>> res = new PersistentLinkedMap<>();
+        for (String[] links : entries.values()) {
+            // the key is taken from the linked object, the stored key is only used for routing
+            IPLDObject<D> link = new IPLDObject<>(links[0], loaderFactory.createLoader(), context, validationContext);
+            if (eager) {
+                link.getMapped();
+            }
+            res.put(keyProvider.getKey(link), link);
+        }
+        return res;
+    }
+
+    /**
+     * Reads the entries of a HAMT, that maps keys to arrays of link objects.
+     * 
+     * @param <D>               the type of the linked objects
+     * @param root              the root of the HAMT (can be null)
+     * @param context           the context
+     * @param validationContext the validation context
+     * @param loaderFactory     the loader factory for the linked objects
+     * @param eager             whether or not to load the linked objects immediately
+     * @param keyProvider       provides the keys for the linked objects (the first one of each array is used)
+     * @return the map or null, if the root is null
+     */
+    public static <D extends IPLDSerializable> Map<String, IPLDObject<D>[]> readLinkArrays(IPLDObject<HamtNode> root,
+            IPLDContext context, ValidationContext validationContext, LoaderFactory<D> loaderFactory, boolean eager,
+            KeyProvider<D> keyProvider) {
+        if (root == null) {
+            return null;
+        }
+        Map<String, String[]> entries = new LinkedHashMap<>();
+        resolveShards(root).collectEntries(entries);
+        if (validationContext != null) {
+            Collection<String> links = new ArrayList<>();
+            for (String[] entry : entries.values()) {
+                links.addAll(Arrays.asList(entry));
+            }
+            context.prefetch(links, null);
+        }
+        Map<String, IPLDObject<D>[]> res = new PersistentLinkedMap<>();
+        for (String[] links : entries.values()) {
+            @SuppressWarnings("unchecked")
+            IPLDObject<D>[] array = (IPLDObject<D>[]) Array.newInstance(IPLDObject.class, links.length);
+            int i = 0;
+            for (String link : links) {
+                IPLDObject<D> linkObject = new IPLDObject<>(link, loaderFactory.createLoader(), context,
+                        validationContext);
+                if (eager) {
+                    linkObject.getMapped();
+                }
+                array[i++] = linkObject;
+            }
+            if (array.length > 0) {
+                res.put(keyProvider.getKey(array[0]), array);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Reads the entries of a HAMT, that maps keys to arrays of plain links.
+     * 
+     * @param root the root of the HAMT (can be null)
+     * @return the map or null, if the root is null
+     */
+    public static Map<String, String[]> readStringArrays(IPLDObject<HamtNode> root) {
+        if (root == null) {
+            return null;
+        }
+        Map<String, String[]> res = new PersistentLinkedMap<>();
+        resolveShards(root).collectEntries(res);
+        return res;
+    }
+
+    /**
+     * @param <D>   the type of the linked objects
+     * @param links the links by key (can be null)
+     * @return the sorted HAMT entries or null, if the given map is null
+     */
+    public static <D extends IPLDSerializable> SortedMap<String, IPLDObject<?>[]> toEntries(
+            Map<String, IPLDObject<D>> links) {
+        if (links == null) {
+            return null;
+        }
+        SortedMap<String, IPLDObject<?>[]> res = new TreeMap<>();
+        for (Entry<String, IPLDObject<D>> entry : links.entrySet()) {
+            res.put(entry.getKey(), new IPLDObject<?>[] { entry.getValue() });
+        }
+        return res;
+    }
+
+    /**
+     * Builds a HAMT for the given entries and writes the link to its root.
+     * 
+     * @param writer           the writer
+     * @param key              the key of the link to the root
+     * @param entries          the entries
+     * @param reference        the root of the reference HAMT (can be null)
+     * @param signer           the signer for recursion
+     * @param context          the context for recursion
+     * @param progressListener the progress listener
+     * @return the root of the written HAMT (null if there are no entries)
+     * @throws IOException if writing fails
+     */
+    public static IPLDObject<HamtNode> writeRoot(IPLDWriter writer, String key,
+            SortedMap<String, ? extends Object[]> entries, IPLDObject<HamtNode> reference, Signer signer,
+            IPLDContext context, ProgressListener progressListener) throws IOException {
+        IPLDObject<HamtNode> root = build(entries, reference);
+        writer.writeLink(key, root, signer, context, progressListener);
+        return root;
+    }
+
+    /**
+     * Adds the keys of all entries, that have been added or changed in the newer HAMT, to the given collection.
+     * Subtrees with equal multihashes are skipped, so only the shards along the changed paths are compared (and
+     * loaded).
+     * 
+     * @param now   the root of the newer HAMT (can be null)
+     * @param since the root of the older HAMT (can be null)
+     * @param keys  the collection to add the keys to
+     */
+    public static void collectChangedKeys(IPLDObject<HamtNode> now, IPLDObject<HamtNode> since,
+            Collection<String> keys) {
+        if (now == null || isSameNode(now, since)) {
+            return;
+        }
+        if (since != null) {
+            IPLDObject.prefetch(Arrays.asList(now, since));
+        }
+        HamtNode nowNode = now.getMapped();
+        HamtNode sinceNode = since == null ? null : since.getMapped();
+        if (nowNode.children != null && sinceNode != null && sinceNode.children != null) {
+            // the changed children of both versions are prefetched, before they are compared one by one
+            List<IPLDObject<HamtNode>> changed = new ArrayList<>();
+            for (int slot = 0; slot < 1 << BITS_PER_LEVEL; slot++) {
+                IPLDObject<HamtNode> child = nowNode.getChild(slot);
+                IPLDObject<HamtNode> sinceChild = sinceNode.getChild(slot);
+                if (child != null && !isSameNode(child, sinceChild)) {
+                    changed.add(child);
+                    if (sinceChild != null) {
+                        changed.add(sinceChild);
+                    }
+                }
+            }
+            IPLDObject.prefetch(changed);
+            for (int slot = 0; slot < 1 << BITS_PER_LEVEL; slot++) {
+                IPLDObject<HamtNode> child = nowNode.getChild(slot);
+                if (child != null) {
+                    collectChangedKeys(child, sinceNode.getChild(slot), keys);
+                }
+            }
+            return;
+        }
+        Map<String, String[]> nowEntries = new LinkedHashMap<>();
+        resolveShards(now).collectEntries(nowEntries);
+        Map<String, String[]> sinceEntries = new HashMap<>();
+        if (sinceNode != null) {
+            resolveShards(since).collectEntries(sinceEntries);
+        }
+        for (Entry<String, String[]> entry : nowEntries.entrySet()) {
+            if (!Arrays.equals(entry.getValue(), sinceEntries.get(entry.getKey()))) {
+                keys.add(entry.getKey());
+            }
+        }
+    }
+
+    private static boolean isSameNode(IPLDObject<HamtNode> node, IPLDObject<HamtNode> other) {
+        if (node == other) {
+            return true;
+        }
+        String multihash = node.getMultihash();
+        return other != null && multihash != null && multihash.equals(other.getMultihash());
+    }
+
+    /**
+     * Resolves all shards of the given (sub) HAMT level by level. The shards of each level are prefetched concurrently
+     * (see {@link IPLDObject#prefetch(Collection)}), so the number of consecutive IPFS round trips is the depth of the
+     * trie instead of the number of shards. The read maps contain all entries, since their keys are taken from the
+     * linked objects (the stored keys are only used for routing), so shards can't be loaded on demand.
+     * 
+     * @param root the root of the (sub) HAMT
+     * @return the resolved root
+     */
+    private static HamtNode resolveShards(IPLDObject<HamtNode> root) {
+        HamtNode res = root.getMapped();
+        List<HamtNode> level = Collections.singletonList(res);
+        while (!level.isEmpty()) {
+            List<IPLDObject<HamtNode>> children = new ArrayList<>();
+            for (HamtNode node : level) {
+                if (node.children != null) {
+                    children.addAll(Arrays.asList(node.children));
+                }
+            }
+            IPLDObject.prefetch(children);
+            List<HamtNode> next = new ArrayList<>(children.size());
+            for (IPLDObject<HamtNode> child : children) {
+                next.add(child.getMapped());
+            }
+            level = next;
+        }
+        return res;
+    }
+
+    private long bitmap;
+    private IPLDObject<HamtNode>[] children;
+
+    private String[] keys;
+    private int[] counts; // null if there is exactly one value per key
+    private IPLDObject<?>[] links; // for locally built leaves with link object values
+    private String[] hashes; // for loaded leaves and String values
+
+    HamtNode() {
+
+    }
+
+    private HamtNode(long bitmap, IPLDObject<HamtNode>[] children) {
+        this.bitmap = bitmap;
+        this.children = children;
+    }
+
+    private HamtNode(SortedMap<String, ? extends Object[]> entries) {
+        keys = entries.keySet().toArray(new String[entries.size()]);
+        int[] counts = new int[keys.length];
+        boolean single = true;
+        List<Object> values = new ArrayList<>();
+        boolean linkValues = false;
+        int i = 0;
+        for (Object[] value : entries.values()) {
+            counts[i++] = value.length;
+            single = single && value.length == 1;
+            linkValues = value instanceof IPLDObject<?>[];
+            values.addAll(Arrays.asList(value));
+        }
+        this.counts = single ? null : counts;
+        if (linkValues) {
+            this.links = values.toArray(new IPLDObject<?>[values.size()]);
+        }
+        else {
+            this.hashes = values.toArray(new String[values.size()]);
+        }
+    }
+
+    @Override
+    public void read(IPLDReader reader, IPLDContext context, ValidationContext validationContext, boolean eager,
+            Metadata metadata) {
+        if (reader.hasPrimitiveKey(KEY_BITMAP)) {
+            this.bitmap = reader.readNumber(KEY_BITMAP).longValue();
+            this.children = reader.readLinkObjectsArray(KEY_CHILDREN, context, null, LoaderFactory.HAMT_NODE, eager);
+        }
+        else {
+            this.keys = reader.readStringArray(KEY_KEYS);
+            this.counts = reader.readIntArray(KEY_COUNTS);
+            this.hashes = reader.readLinksArray(KEY_LINKS);
+        }
+    }
+
+    @Override
+    public void write(IPLDWriter writer, Signer signer, IPLDContext context, ProgressListener progressListener)
+            throws IOException {
+        if (children != null) {
+            writer.writeNumber(KEY_BITMAP, bitmap);
+            writer.writeLinkArray(KEY_CHILDREN, children, signer, context, progressListener);
+        }
+        else {
+            writer.writeStringArray(KEY_KEYS, keys);
+            writer.writeIntArray(KEY_COUNTS, counts);
+            if (links == null) {
+                writer.writeLinkArray(KEY_LINKS, hashes);
+            }
+            else {
+                writer.writeLinkArray(KEY_LINKS, links, signer, context, progressListener);
+            }
+        }
+    }
+
+    /**
+     * Adds all entries of this (sub) HAMT to the given map. Missing children are loaded.
+     * 
+     * @param entries the map to add the entries to (key to multihashes of the values)
+     */
+    public void collectEntries(Map<String, String[]> entries) {
+        if (children != null) {
+            for (IPLDObject<HamtNode> child : children) {
+                child.getMapped().collectEntries(entries);
+            }
+        }
+        else if (keys != null) {
+            int offset = 0;
+            for (int i = 0; i < keys.length; i++) {
+                int count = counts == null ? 1 : counts[i];
+                String[] values = new String[count];
+                for (int j = 0; j < count; j++) {
+                    values[j] = getValueHash(offset + j);
+                }
+                entries.put(keys[i], values);
+                offset += count;
+            }
+        }
+    }
+
+    IPLDObject<HamtNode> getChild(int slot) {
+        long bit = 1L << slot;
+        if (children == null || (bitmap & bit) == 0) {
+            return null;
+        }
+        return children[Long.bitCount(bitmap & (bit - 1))];
+    }
+
+    private int getValueCount() {
+        if (links != null) {
+            return links.length;
+        }
+        return hashes == null ? 0 : hashes.length;
+    }
+
+    private String getValueHash(int index) {
+        return links == null ? hashes[index] : links[index].getMultihash();
+    }
+
+    private boolean hasSameEntries(HamtNode other) {
+        if (other.keys == null || !Arrays.equals(keys, other.keys) || !Arrays.equals(counts, other.counts)) {
+            return false;
+        }
+        int count = getValueCount();
+        if (count != other.getValueCount()) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            String hash = getValueHash(i);
+            if (hash == null || !hash.equals(other.getValueHash(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public HamtNode getOrCreateDataInstance(IPLDReader reader, Metadata metadata) {
+        return this;
+    }
+
+    @Override
+    public HamtNode getLoaded() {
+        return this;
+    }
+
+}
@@ -247,6 +247,16 @@ public interface LoaderFactory<D extends IPLDSerializable> {
         }
     };
 
+    /**
+     * The factory for HamtNode instances.
+     */
+    public static final LoaderFactory<HamtNode> HAMT_NODE = new LoaderFactory<>() {
+        @Override
+        public Loader<HamtNode> createLoader() {
+            return new HamtNode();
+        }
+    };
+
     /**
      * Creates a new loader.
      * 
@@ -23,9 +23,12 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.projectjinxers.account.Signer;
@@ -39,6 +42,7 @@ import org.projectjinxers.controller.SettlementController;
 import org.projectjinxers.controller.ValidationContext;
 import org.projectjinxers.controller.ValidationException;
 import org.projectjinxers.util.ModelUtility;
+import org.projectjinxers.util.PersistentLinkedMap;
 
 import static org.projectjinxers.util.ModelUtility.addProgressListeners;
 import static org.projectjinxers.util.ModelUtility.isEqual;
@@ -59,6 +63,27 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
     private static final String KEY_SEALED_DOCUMENTS = "d";
     private static final String KEY_OWNERSHIP_REQUESTS = "o";
     private static final String KEY_REVIEW_TABLE = "r";
+    private static final String KEY_SKIP_LINK = "k";
+
+    /**
+     * Since this meta version, the maps are stored as HAMTs (see {@link HamtNode}) instead of inline.
+     */
+    static final int META_VERSION_HAMT = 1;
+    /**
+     * Since this meta version, there is an optional skip link to an earlier version (see
+     * {@link ModelUtility#getSkipVersion(long)}).
+     */
+    static final int META_VERSION_SKIP_LINKS = 2;
+    /**
+     * Since this meta version, all reviews of documents in a truth inversion graph (including reviews of reviews) are
+     * added to the graph, regardless of the order, in which the documents are stored (see
+     * {@link SettlementController#evaluate(Map, Set, ModelState, int)}).
+     */
+    public static final int META_VERSION_TRUTH_INVERSION_CLOSURE = 3;
+    /**
+     * The meta version of new instances.
+     */
+    public static final int CURRENT_META_VERSION = META_VERSION_TRUTH_INVERSION_CLOSURE;
 
     private static final KeyProvider<UserState> USER_STATE_KEY_PROVIDER = new KeyProvider<>() {
 
@@ -156,6 +181,7 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
     private long version;
     private long timestamp;
     private IPLDObject<ModelState> previousVersion;
+    private IPLDObject<ModelState> skipLink;
     private Map<String, IPLDObject<UserState>> userStates;
     private Map<String, IPLDObject<Voting>> votings;
     private Map<String, IPLDObject<SettlementRequest>> settlementRequests;
@@ -170,6 +196,14 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
     private Map<String, IPLDObject<OwnershipRequest>[]> newOwnershipRequests;
     private Map<String, String[]> newReviewTableEntries;
 
+    // document hash -> key of the voting for the transfer of ownership of that document (built on demand, derived from
+    // the index of the previous version, if that has already been built)
+    private Map<String, String> ownershipTransferVotings;
+
+    private int metaVersion = CURRENT_META_VERSION;
+    // the HAMT roots (by key) this instance has been read from or written to, for reusing unchanged nodes
+    private Map<String, IPLDObject<HamtNode>> hamtRoots = new HashMap<>();
+
     private long newUserStatesSince;
     private long newVotingsSince;
     private long newSettlementRequestsSince;
@@ -187,20 +221,47 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
         }
         this.previousVersion = reader.readLinkObject(KEY_PREVIOUS_VERSION, context, null, LoaderFactory.MODEL_STATE,
                 false); // we don't want to load the entire tree, do we?
-        if (validationContext != null && previousVersion != null && previousVersion.getMapped().version >= version) {
-            throw new ValidationException("version must be increased");
-        }
-        this.userStates = reader.readLinkObjects(KEY_USER_STATES, context, validationContext, LoaderFactory.USER_STATE,
-                eager, USER_STATE_KEY_PROVIDER);
-        this.votings = reader.readLinkObjects(KEY_VOTINGS, context, validationContext, LoaderFactory.VOTING, eager,
-                VOTING_KEY_PROVIDER);
-        this.settlementRequests = reader.readLinkObjects(KEY_SETTLEMENT_REQUESTS, context, validationContext,
-                LoaderFactory.SETTLEMENT_REQUEST, eager, UserState.SETTLEMENT_REQUEST_KEY_PROVIDER);
-        this.sealedDocuments = reader.readLinkObjects(KEY_SEALED_DOCUMENTS, context, validationContext,
-                LoaderFactory.SEALED_DOCUMENT, eager, SEALED_DOCUMENT_KEY_PROVIDER);
-        this.ownershipRequests = reader.readLinkObjectCollections(KEY_OWNERSHIP_REQUESTS, context, validationContext,
-                LoaderFactory.OWNERSHIP_REQUEST, eager, OWNERSHIP_REQUESTS_KEY_PROVIDER);
-        this.reviewTable = reader.readLinkCollections(KEY_REVIEW_TABLE);
+        if (validationContext != null && previousVersion != null) {
+            // the validation walks back to the common state, so at least the recent versions are going to be needed
+            context.prefetch(Collections.singleton(previousVersion.getMultihash()), KEY_PREVIOUS_VERSION);
+            if (previousVersion.getMapped().version >= version) {
+                throw new ValidationException("version must be increased");
+            }
+        }
+        this.metaVersion = metadata.getVersion();
+        if (metaVersion >= META_VERSION_SKIP_LINKS) {
+            // validated by the validation context, once the ancestors are known
+            this.skipLink = reader.readLinkObject(KEY_SKIP_LINK, context, null, LoaderFactory.MODEL_STATE, false);
+        }
+        if (metaVersion >= META_VERSION_HAMT) {
+            this.userStates = HamtNode.readLinks(readHamtRoot(reader, KEY_USER_STATES, context), context,
+                    validationContext, LoaderFactory.USER_STATE, eager, USER_STATE_KEY_PROVIDER,
+                    UserState.KEY_PREVIOUS_VERSION);
+            this.votings = HamtNode.readLinks(readHamtRoot(reader, KEY_VOTINGS, context), context, validationContext,
+                    LoaderFactory.VOTING, eager, VOTING_KEY_PROVIDER);
+            this.settlementRequests = HamtNode.readLinks(readHamtRoot(reader, KEY_SETTLEMENT_REQUESTS, context),
+                    context, validationContext, LoaderFactory.SETTLEMENT_REQUEST, eager,
+                    UserState.SETTLEMENT_REQUEST_KEY_PROVIDER);
+            this.sealedDocuments = HamtNode.readLinks(readHamtRoot(reader, KEY_SEALED_DOCUMENTS, context), context,
+                    validationContext, LoaderFactory.SEALED_DOCUMENT, eager, SEALED_DOCUMENT_KEY_PROVIDER);
+            this.ownershipRequests = HamtNode.readLinkArrays(readHamtRoot(reader, KEY_OWNERSHIP_REQUESTS, context),
+                    context, validationContext, LoaderFactory.OWNERSHIP_REQUEST, eager,
+                    OWNERSHIP_REQUESTS_KEY_PROVIDER);
+            this.reviewTable = HamtNode.readStringArrays(readHamtRoot(reader, KEY_REVIEW_TABLE, context));
+        }
+        else {
+            this.userStates = reader.readLinkObjects(KEY_USER_STATES, context, validationContext,
+                    LoaderFactory.USER_STATE, eager, USER_STATE_KEY_PROVIDER);
+            this.votings = reader.readLinkObjects(KEY_VOTINGS, context, validationContext, LoaderFactory.VOTING, eager,
+                    VOTING_KEY_PROVIDER);
+            this.settlementRequests = reader.readLinkObjects(KEY_SETTLEMENT_REQUESTS, context, validationContext,
+                    LoaderFactory.SETTLEMENT_REQUEST, eager, UserState.SETTLEMENT_REQUEST_KEY_PROVIDER);
+            this.sealedDocuments = reader.readLinkObjects(KEY_SEALED_DOCUMENTS, context, validationContext,
+                    LoaderFactory.SEALED_DOCUMENT, eager, SEALED_DOCUMENT_KEY_PROVIDER);
+            this.ownershipRequests = reader.readLinkObjectCollections(KEY_OWNERSHIP_REQUESTS, context,
+                    validationContext, LoaderFactory.OWNERSHIP_REQUEST, eager, OWNERSHIP_REQUESTS_KEY_PROVIDER);
+            this.reviewTable = reader.readLinkCollections(KEY_REVIEW_TABLE);
+        }
         if (validationContext != null) {
             validationContext.validateModelState(this);
         }
@@ -212,12 +273,62 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
         writer.writeNumber(KEY_VERSION, version);
         writer.writeNumber(KEY_TIMESTAMP, timestamp);
         writer.writeLink(KEY_PREVIOUS_VERSION, previousVersion, null, null, null);
-        writer.writeLinkObjects(KEY_USER_STATES, userStates, null, null, null);
-        writer.writeLinkObjects(KEY_VOTINGS, votings, null, null, null);
-        writer.writeLinkObjects(KEY_SETTLEMENT_REQUESTS, settlementRequests, null, null, null);
-        writer.writeLinkObjects(KEY_SEALED_DOCUMENTS, sealedDocuments, signer, context, progressListener);
-        writer.writeLinkObjectArrays(KEY_OWNERSHIP_REQUESTS, ownershipRequests, null, null, null);
-        writer.writeLinkArrays(KEY_REVIEW_TABLE, reviewTable);
+        if (metaVersion >= META_VERSION_SKIP_LINKS) {
+            if (skipLink == null) {
+                skipLink = findSkipLinkTarget();
+            }
+            writer.writeLink(KEY_SKIP_LINK, skipLink, null, null, null);
+        }
+        if (metaVersion >= META_VERSION_HAMT) {
+            writeHamtRoot(writer, KEY_USER_STATES, HamtNode.toEntries(userStates), signer, context, null);
+            writeHamtRoot(writer, KEY_VOTINGS, HamtNode.toEntries(votings), signer, context, null);
+            writeHamtRoot(writer, KEY_SETTLEMENT_REQUESTS, HamtNode.toEntries(settlementRequests), signer, context,
+                    null);
+            writeHamtRoot(writer, KEY_SEALED_DOCUMENTS, HamtNode.toEntries(sealedDocuments), signer, context,
+                    progressListener);
+            writeHamtRoot(writer, KEY_OWNERSHIP_REQUESTS,
+                    ownershipRequests == null ? null : new TreeMap<>(ownershipRequests), signer, context, null);
+            writeHamtRoot(writer, KEY_REVIEW_TABLE, reviewTable == null ? null : new TreeMap<>(reviewTable), signer,
+                    context, null);
+        }
+        else {
+            writer.writeLinkObjects(KEY_USER_STATES, userStates, null, null, null);
+            writer.writeLinkObjects(KEY_VOTINGS, votings, null, null, null);
+            writer.writeLinkObjects(KEY_SETTLEMENT_REQUESTS, settlementRequests, null, null, null);
+            writer.writeLinkObjects(KEY_SEALED_DOCUMENTS, sealedDocuments, signer, context, progressListener);
+            writer.writeLinkObjectArrays(KEY_OWNERSHIP_REQUESTS, ownershipRequests, null, null, null);
+            writer.writeLinkArrays(KEY_REVIEW_TABLE, reviewTable);
+        }
+    }
+
+    private IPLDObject<HamtNode> readHamtRoot(IPLDReader reader, String key, IPLDContext context) {
+        IPLDObject<HamtNode> res = HamtNode.readRoot(reader, key, context);
+        if (res != null) {
+            hamtRoots.put(key, res);
+        }
+        return res;
+    }
+
+    private void writeHamtRoot(IPLDWriter writer, String key, SortedMap<String, ? extends Object[]> entries,
+            Signer signer, IPLDContext context, ProgressListener progressListener) throws IOException {
+        // the reference for reusing nodes is the last written HAMT or the one of the previous version
+        IPLDObject<HamtNode> reference = hamtRoots.get(key);
+        if (reference == null && previousVersion != null && previousVersion.isMapped()) {
+            reference = previousVersion.getMapped().hamtRoots.get(key);
+        }
+        IPLDObject<HamtNode> root = HamtNode.writeRoot(writer, key, entries, reference, signer, context,
+                progressListener);
+        if (root == null) {
+            hamtRoots.remove(key);
+        }
+        else {
+            hamtRoots.put(key, root);
+        }
+    }
+
+    @Override
+    public int getMetaVersion() {
+        return metaVersion;
     }
 
     public long getVersion() {
@@ -232,6 +343,64 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
         return previousVersion;
     }
 
+    public IPLDObject<ModelState> getSkipLink() {
+        return skipLink;
+    }
+
+    /**
+     * Finds the ancestor of the given state with the greatest version, that is less than or equal to the given version.
+     * Skip links are followed where possible, so the number of loaded states is logarithmic in the distance.
+     * 
+     * @param from    the state to start from (returned if its version is not greater than the given version)
+     * @param version the version
+     * @return the ancestor or null, if there is no such ancestor
+     */
+    public static IPLDObject<ModelState> getAncestor(IPLDObject<ModelState> from, long version) {
+        IPLDObject<ModelState> walk = from;
+        ModelState state = walk.getMapped();
+        while (state.version > version) {
+            IPLDObject<ModelState> next = null;
+            if (state.skipLink != null && ModelUtility.isSkipLinkPreferred(state.version, version)) {
+                // if versions have been skipped, the target might be older than the given version, but then there is
+                // no version in between, so the target is the result (no need to load it for checking its version)
+                next = state.skipLink;
+            }
+            if (next == null) {
+                next = state.previousVersion;
+                if (next == null) {
+                    return null;
+                }
+            }
+            walk = next;
+            state = walk.getMapped();
+        }
+        return walk;
+    }
+
+    /**
+     * Validates the skip link (if any). The skip links of all ancestors must have been validated before.
+     * 
+     * @throws ValidationException if the skip link doesn't point to the expected ancestor
+     */
+    public void validateSkipLink() {
+        if (skipLink != null) {
+            IPLDObject<ModelState> expected = previousVersion == null ? null
+                    : getAncestor(previousVersion, ModelUtility.getSkipVersion(version));
+            if (expected == null || !skipLink.getMultihash().equals(expected.getMultihash())) {
+                throw new ValidationException("invalid skip link");
+            }
+        }
+    }
+
+    private IPLDObject<ModelState> findSkipLinkTarget() {
+        if (previousVersion == null || version < 2) {
+            return null;
+        }
+        IPLDObject<ModelState> res = getAncestor(previousVersion, ModelUtility.getSkipVersion(version));
+        // the previous version is linked anyway
+        return res == null || res == previousVersion || res.getMultihash() == null ? null : res;
+    }
+
     public Set<Entry<String, IPLDObject<SettlementRequest>>> getAllSettlementRequestEntries() {
         return settlementRequests == null ? null : settlementRequests.entrySet();
     }
@@ -283,18 +452,106 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
      * @return the voting for transfer of ownership of the document with the given hash, if any
      */
     public IPLDObject<Voting> getVotingForOwnershipTransfer(String documentHash) {
-        if (votings != null) {
-            for (IPLDObject<Voting> voting : votings.values()) {
-                Votable votable = voting.getMapped().getSubject().getMapped();
-                if (votable instanceof OwnershipSelection) {
-                    OwnershipSelection ownershipSelection = (OwnershipSelection) votable;
-                    if (documentHash.equals(ownershipSelection.getDocument().getMultihash())) {
-                        return voting;
+        if (votings == null) {
+            return null;
+        }
+        String votingKey = getOwnershipTransferVotings().get(documentHash);
+        return votingKey == null ? null : votings.get(votingKey);
+    }
+
+    private Map<String, String> getOwnershipTransferVotings() {
+        if (ownershipTransferVotings == null) {
+            Map<String, String> previousIndex = null;
+            ModelState previous = null;
+            if (previousVersion != null && previousVersion.isMapped()) {
+                previous = previousVersion.getMapped();
+                previousIndex = previous.ownershipTransferVotings;
+            }
+            Map<String, String> index;
+            if (previousIndex == null) {
+                index = new PersistentLinkedMap<>();
+                if (votings != null) {
+                    indexOwnershipTransferVotings(index, votings);
+                }
+            }
+            else {
+                index = new PersistentLinkedMap<>(previousIndex);
+                Map<String, IPLDObject<Voting>> changed = new LinkedHashMap<>();
+                Set<String> removed = new HashSet<>();
+                for (String key : getChangedVotingKeys(previous)) {
+                    IPLDObject<Voting> voting = votings == null ? null : votings.get(key);
+                    if (voting == null) {
+                        removed.add(key);
+                    }
+                    else {
+                        changed.put(key, voting);
                     }
                 }
+                if (removed.size() > 0) {
+                    index.entrySet().removeIf(entry -> removed.contains(entry.getValue()));
+                }
+                indexOwnershipTransferVotings(index, changed);
+            }
+            ownershipTransferVotings = index;
+        }
+        return ownershipTransferVotings;
+    }
+
+    private Collection<String> getChangedVotingKeys(ModelState since) {
+        Set<String> res = new LinkedHashSet<>();
+        IPLDObject<HamtNode> root = hamtRoots.get(KEY_VOTINGS);
+        IPLDObject<HamtNode> sinceRoot = since.hamtRoots.get(KEY_VOTINGS);
+        if (root != null && sinceRoot != null) {
+            HamtNode.collectChangedKeys(root, sinceRoot, res);
+            HamtNode.collectChangedKeys(sinceRoot, root, res);
+        }
+        else {
+            Map<String, IPLDObject<Voting>> sinceVotings = since.votings == null ? Collections.emptyMap()
+                    : since.votings;
+            if (votings != null) {
+                for (Entry<String, IPLDObject<Voting>> entry : votings.entrySet()) {
+                    IPLDObject<Voting> known = sinceVotings.get(entry.getKey());
+                    if (known != entry.getValue() && (known == null || known.getMultihash() == null
+                            || !known.getMultihash().equals(entry.getValue().getMultihash()))) {
+                        res.add(entry.getKey());
+                    }
+                }
+            }
+            for (String key : sinceVotings.keySet()) {
+                if (votings == null || !votings.containsKey(key)) {
+                    res.add(key);
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Carries the ownership transfer voting index forward to the given new instance, if it has already been built for
+     * this instance. Otherwise the new instance builds its own index on demand.
+     * 
+     * @param updated    the new instance
+     * @param newVotings the votings, that have been added to (or replaced in) the new instance
+     */
+    private void deriveOwnershipTransferVotings(ModelState updated, Map<String, IPLDObject<Voting>> newVotings) {
+        if (ownershipTransferVotings != null) {
+            Map<String, String> index = new PersistentLinkedMap<>(ownershipTransferVotings);
+            if (newVotings != null) {
+                indexOwnershipTransferVotings(index, newVotings);
+            }
+            updated.ownershipTransferVotings = index;
+        }
+    }
+
+    private static void indexOwnershipTransferVotings(Map<String, String> index,
+            Map<String, IPLDObject<Voting>> votings) {
+        for (Entry<String, IPLDObject<Voting>> entry : votings.entrySet()) {
+            Votable votable = entry.getValue().getMapped().getSubject().getMapped();
+            if (votable instanceof OwnershipSelection) {
+                OwnershipSelection ownershipSelection = (OwnershipSelection) votable;
+                index.putIfAbsent(ownershipSelection.getDocument().getMultihash(), entry.getKey());
             }
         }
-        return null;
     }
 
     public IPLDObject<Voting> expectVotingForUnbanRequest(String unbanRequestHash) {
@@ -349,6 +606,44 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
         return reviewTable == null ? null : reviewTable.get(documentHash);
     }
 
+    /**
+     * Adds the multihashes of all directly linked objects (previous version, user states, votings, settlement
+     * requests, sealed documents and ownership requests) to the given collection. Unsaved links are skipped.
+     * 
+     * @param multihashes the collection to add the multihashes to
+     */
+    public void collectLinkedMultihashes(Collection<String> multihashes) {
+        if (previousVersion != null && previousVersion.getMultihash() != null) {
+            multihashes.add(previousVersion.getMultihash());
+        }
+        collectLinkedMultihashes(userStates, multihashes);
+        collectLinkedMultihashes(votings, multihashes);
+        collectLinkedMultihashes(settlementRequests, multihashes);
+        collectLinkedMultihashes(sealedDocuments, multihashes);
+        if (ownershipRequests != null) {
+            for (IPLDObject<OwnershipRequest>[] requests : ownershipRequests.values()) {
+                for (IPLDObject<OwnershipRequest> request : requests) {
+                    String multihash = request.getMultihash();
+                    if (multihash != null) {
+                        multihashes.add(multihash);
+                    }
+                }
+            }
+        }
+    }
+
+    private <D extends IPLDSerializable> void collectLinkedMultihashes(Map<String, IPLDObject<D>> links,
+            Collection<String> multihashes) {
+        if (links != null) {
+            for (IPLDObject<D> link : links.values()) {
+                String multihash = link.getMultihash();
+                if (multihash != null) {
+                    multihashes.add(multihash);
+                }
+            }
+        }
+    }
+
     /**
      * Finds related documents and returns the date of the most recent one. If the given document is not the most recent
      * version for its current owner, null is returned.
@@ -416,28 +711,26 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
         ModelState updated;
         if (current == null) {
             if (userState != null && this.userStates == null) {
-                this.userStates = new LinkedHashMap<>();
+                this.userStates = new PersistentLinkedMap<>();
             }
             if (settlementRequests != null && this.settlementRequests == null) {
-                this.settlementRequests = new LinkedHashMap<>();
+                this.settlementRequests = new PersistentLinkedMap<>();
             }
             if (ownershipRequests != null && this.ownershipRequests == null) {
-                this.ownershipRequests = new LinkedHashMap<>();
+                this.ownershipRequests = new PersistentLinkedMap<>();
             }
             if (votings != null && this.votings == null) {
-                this.votings = new LinkedHashMap<>();
+                this.votings = new PersistentLinkedMap<>();
             }
             if (sealedDocuments != null && this.sealedDocuments == null) {
-                this.sealedDocuments = new LinkedHashMap<>();
+                this.sealedDocuments = new PersistentLinkedMap<>();
             }
             if (reviewTable != null) {
                 if (this.reviewTable == null) {
-                    this.reviewTable = new LinkedHashMap<>(reviewTable);
+                    this.reviewTable = new PersistentLinkedMap<>(reviewTable);
                 }
                 else {
-                    Map<String, String[]> temp = new LinkedHashMap<>();
-                    mergeStringArrayMaps(this.reviewTable, reviewTable, temp);
-                    this.reviewTable = temp;
+                    this.reviewTable = mergeStringArrayMaps(this.reviewTable, reviewTable);
                 }
             }
             updated = this;
@@ -447,47 +740,46 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
             updated.version = version + 1;
             updated.previousVersion = current;
             if (this.userStates != null) {
-                updated.userStates = new LinkedHashMap<>(this.userStates);
+                updated.userStates = new PersistentLinkedMap<>(this.userStates);
             }
             if (this.votings != null) {
-                updated.votings = new LinkedHashMap<>(this.votings);
+                updated.votings = new PersistentLinkedMap<>(this.votings);
             }
             else if (votings != null) {
-                updated.votings = new LinkedHashMap<>();
+                updated.votings = new PersistentLinkedMap<>();
             }
             if (this.settlementRequests != null) {
-                updated.settlementRequests = new LinkedHashMap<>(this.settlementRequests);
+                updated.settlementRequests = new PersistentLinkedMap<>(this.settlementRequests);
             }
             else if (settlementRequests != null) {
-                updated.settlementRequests = new LinkedHashMap<>();
+                updated.settlementRequests = new PersistentLinkedMap<>();
             }
             if (this.sealedDocuments != null) {
-                updated.sealedDocuments = new LinkedHashMap<>(this.sealedDocuments);
+                updated.sealedDocuments = new PersistentLinkedMap<>(this.sealedDocuments);
             }
             else if (sealedDocuments != null) {
-                updated.sealedDocuments = new LinkedHashMap<>();
+                updated.sealedDocuments = new PersistentLinkedMap<>();
             }
             if (this.ownershipRequests != null) {
-                updated.ownershipRequests = new LinkedHashMap<>(this.ownershipRequests);
+                updated.ownershipRequests = new PersistentLinkedMap<>(this.ownershipRequests);
             }
             else if (ownershipRequests != null) {
-                updated.ownershipRequests = new LinkedHashMap<>();
+                updated.ownershipRequests = new PersistentLinkedMap<>();
             }
             if (reviewTable == null) {
                 if (this.reviewTable != null) {
-                    updated.reviewTable = new LinkedHashMap<>(this.reviewTable);
+                    updated.reviewTable = new PersistentLinkedMap<>(this.reviewTable);
                 }
             }
             else {
                 if (this.reviewTable == null) {
-                    updated.reviewTable = new LinkedHashMap<>(reviewTable);
+                    updated.reviewTable = new PersistentLinkedMap<>(reviewTable);
                 }
                 else {
-                    updated.reviewTable = new LinkedHashMap<>();
                     // merging retains 'links' to older versions of reviews, this is part of the contract (checking for
                     // older versions would defy the purpose of this table) - validation must allow for the presence of
                     // older versions, but can clean them up, if easily achievable
-                    mergeStringArrayMaps(this.reviewTable, reviewTable, updated.reviewTable);
+                    updated.reviewTable = mergeStringArrayMaps(this.reviewTable, reviewTable);
                 }
             }
         }
@@ -518,6 +810,14 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
         if (votings != null) {
             addProgressListeners(votings, updated.votings, null, progressListeners);
         }
+        if (updated == this) {
+            if (votings != null && ownershipTransferVotings != null) {
+                indexOwnershipTransferVotings(ownershipTransferVotings, votings);
+            }
+        }
+        else {
+            deriveOwnershipTransferVotings(updated, votings);
+        }
         if (sealedDocuments != null) {
             for (IPLDObject<SealedDocument> sealed : sealedDocuments) {
                 String key = SEALED_DOCUMENT_KEY_PROVIDER.getKey(sealed);
@@ -691,7 +991,8 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
         Map<String, IPLDObject<UserState>> newUserStates = other.newUserStates == null ? null
                 : new LinkedHashMap<>(other.newUserStates);
         ModelState res = new ModelState();
-        res.userStates = new LinkedHashMap<String, IPLDObject<UserState>>();
+        // unchanged entries are shared, only the replaced ones are put
+        res.userStates = new PersistentLinkedMap<>(userStates);
         Map<String, UserState> mergedUserStates = new HashMap<>();
         // can't be null, otherwise it would be a trivial merge
         for (Entry<String, IPLDObject<UserState>> entry : userStates.entrySet()) {
@@ -705,11 +1006,8 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
             else {
                 IPLDObject<UserState> value = entry.getValue();
                 IPLDObject<UserState> remoteUserStateObject = newUserStates == null ? null : newUserStates.remove(key);
-                if (remoteUserStateObject == null
-                        || remoteUserStateObject.getMultihash().equals(value.getMultihash())) {
-                    res.userStates.put(key, value);
-                }
-                else {
+                if (remoteUserStateObject != null
+                        && !remoteUserStateObject.getMultihash().equals(value.getMultihash())) {
                     UserState merged = value.getMapped().mergeWith(remoteUserStateObject, validationContext);
                     res.userStates.put(key, new IPLDObject<UserState>(merged));
                     mergedUserStates.put(key, merged);
@@ -740,19 +1038,21 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
 
         if (this.votings == null) {
             res.votings = other.votings;
+            res.ownershipTransferVotings = other.ownershipTransferVotings;
         }
         else {
-            res.votings = new LinkedHashMap<>(votings);
+            res.votings = new PersistentLinkedMap<>(votings);
             Map<String, IPLDObject<Voting>> newVotings = other.newVotings;
             if (newVotings != null) {
                 res.votings.putAll(newVotings);
             }
+            deriveOwnershipTransferVotings(res, newVotings);
         }
         if (this.settlementRequests == null) {
             res.settlementRequests = other.settlementRequests;
         }
         else {
-            res.settlementRequests = new LinkedHashMap<>(settlementRequests);
+            res.settlementRequests = new PersistentLinkedMap<>(settlementRequests);
             Map<String, IPLDObject<SettlementRequest>> newSettlementRequests = other.newSettlementRequests;
             if (newSettlementRequests != null) {
                 res.settlementRequests.putAll(newSettlementRequests);
@@ -762,7 +1062,7 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
             res.sealedDocuments = other.sealedDocuments;
         }
         else {
-            res.sealedDocuments = new LinkedHashMap<>(sealedDocuments);
+            res.sealedDocuments = new PersistentLinkedMap<>(sealedDocuments);
             Map<String, IPLDObject<SealedDocument>> newSealedDocuments = other.newSealedDocuments;
             if (newSealedDocuments != null) {
                 for (Entry<String, IPLDObject<SealedDocument>> entry : newSealedDocuments.entrySet()) {
@@ -776,50 +1076,45 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
         if (this.ownershipRequests == null) {
             res.ownershipRequests = other.ownershipRequests;
         }
-        else if (other.ownershipRequests == null) {
-            res.ownershipRequests = new LinkedHashMap<>(ownershipRequests);
-        }
         else {
-            Map<String, IPLDObject<OwnershipRequest>[]> newOwnershipRequests = other.newOwnershipRequests == null ? null
-                    : new LinkedHashMap<>(other.newOwnershipRequests);
-            res.ownershipRequests = new LinkedHashMap<>();
-            for (Entry<String, IPLDObject<OwnershipRequest>[]> entry : ownershipRequests.entrySet()) {
-                String key = entry.getKey();
-                IPLDObject<OwnershipRequest>[] otherRequests = newOwnershipRequests == null ? null
-                        : newOwnershipRequests.remove(key);
-                if (otherRequests == null) {
-                    res.ownershipRequests.put(key, entry.getValue());
-                }
-                else {
-                    Map<String, IPLDObject<OwnershipRequest>> merged = new LinkedHashMap<>();
-                    for (IPLDObject<OwnershipRequest> request : entry.getValue()) {
-                        merged.put(request.getMultihash(), request);
+            res.ownershipRequests = new PersistentLinkedMap<>(ownershipRequests);
+            Map<String, IPLDObject<OwnershipRequest>[]> newOwnershipRequests = other.newOwnershipRequests;
+            if (other.ownershipRequests != null && newOwnershipRequests != null) {
+                // existing keys keep their positions, new keys are appended
+                for (Entry<String, IPLDObject<OwnershipRequest>[]> entry : newOwnershipRequests.entrySet()) {
+                    String key = entry.getKey();
+                    IPLDObject<OwnershipRequest>[] otherRequests = entry.getValue();
+                    IPLDObject<OwnershipRequest>[] requests = ownershipRequests.get(key);
+                    if (requests == null) {
+                        res.ownershipRequests.put(key, otherRequests);
                     }
-                    for (IPLDObject<OwnershipRequest> request : otherRequests) {
-                        String hash = request.getMultihash();
-                        if (!merged.containsKey(hash)) {
-                            merged.put(hash, request);
+                    else {
+                        Map<String, IPLDObject<OwnershipRequest>> merged = new LinkedHashMap<>();
+                        for (IPLDObject<OwnershipRequest> request : requests) {
+                            merged.put(request.getMultihash(), request);
                         }
+                        for (IPLDObject<OwnershipRequest> request : otherRequests) {
+                            String hash = request.getMultihash();
+                            if (!merged.containsKey(hash)) {
+                                merged.put(hash, request);
+                            }
+                        }
+                        IPLDObject<OwnershipRequest>[] copy = Arrays.copyOf(otherRequests, merged.size());
+                        copy = merged.values().toArray(copy);
+                        res.ownershipRequests.put(key, copy);
                     }
-                    IPLDObject<OwnershipRequest>[] copy = Arrays.copyOf(otherRequests, merged.size());
-                    copy = merged.values().toArray(copy);
-                    res.ownershipRequests.put(key, copy);
                 }
             }
-            res.ownershipRequests.putAll(newOwnershipRequests);
         }
 
         if (this.reviewTable == null) {
             res.reviewTable = other.reviewTable;
         }
         else if (other.reviewTable == null) {
-            res.reviewTable = new LinkedHashMap<>(reviewTable);
+            res.reviewTable = new PersistentLinkedMap<>(reviewTable);
         }
         else {
-            Map<String, String[]> newReviewTableEntries = other.newReviewTableEntries == null ? null
-                    : new LinkedHashMap<>(other.newReviewTableEntries);
-            res.reviewTable = new LinkedHashMap<>();
-            mergeStringArrayMaps(reviewTable, newReviewTableEntries, res.reviewTable);
+            res.reviewTable = mergeStringArrayMaps(reviewTable, other.newReviewTableEntries);
         }
 
         res.previousVersion = validationContext.getPreviousVersion();
@@ -834,7 +1129,7 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
                 mainSettlementController.update(mergedUserStates, res, sealedDocuments);
                 if (sealedDocuments.size() > 0) {
                     if (res.sealedDocuments == null) {
-                        res.sealedDocuments = new LinkedHashMap<>();
+                        res.sealedDocuments = new PersistentLinkedMap<>();
                     }
                     for (Entry<String, SealedDocument> entry : sealedDocuments.entrySet()) {
                         res.sealedDocuments.put(entry.getKey(), new IPLDObject<>(entry.getValue()));
@@ -882,37 +1177,35 @@ public class ModelState implements IPLDSerializable, Loader<ModelState> {
         return res;
     }
 
-    private void mergeStringArrayMaps(Map<String, String[]> map1, Map<String, String[]> map2,
-            Map<String, String[]> merged) {
-        for (Entry<String, String[]> entry : map1.entrySet()) {
-            String key = entry.getKey();
-            String[] otherEntries = map2 == null ? null : map2.get(key);
-            if (otherEntries == null) {
-                merged.put(key, entry.getValue());
-            }
-            else {
-                Set<String> unique = new TreeSet<>();
-                Collection<String> coll = new ArrayList<>();
-                for (String s : entry.getValue()) {
-                    unique.add(s);
-                    coll.add(s);
-                }
-                for (String s : otherEntries) {
-                    if (!unique.contains(s)) {
+    private Map<String, String[]> mergeStringArrayMaps(Map<String, String[]> map1, Map<String, String[]> map2) {
+        // entries of the first map keep their positions, new keys of the second one are appended
+        Map<String, String[]> merged = new PersistentLinkedMap<>(map1);
+        if (map2 != null) {
+            for (Entry<String, String[]> entry : map2.entrySet()) {
+                String key = entry.getKey();
+                String[] entries = merged.get(key);
+                if (entries == null) {
+                    merged.put(key, entry.getValue());
+                }
+                else {
+                    Set<String> unique = new TreeSet<>();
+                    Collection<String> coll = new ArrayList<>();
+                    for (String s : entries) {
+                        unique.add(s);
                         coll.add(s);
                     }
+                    for (String s : entry.getValue()) {
+                        if (!unique.contains(s)) {
+                            coll.add(s);
+                        }
+                    }
+                    String[] copy = new String[0];
+                    copy = coll.toArray(copy);
+                    merged.put(key, copy);
                 }
-                String[] copy = new String[0];
-                copy = coll.toArray(copy);
-                merged.put(key, copy);
-            }
-        }
-        for (Entry<String, String[]> entry : map2.entrySet()) {
-            String key = entry.getKey();
-            if (!merged.containsKey(key)) {
-                merged.put(key, entry.getValue());
             }
         }
+        return merged;
     }
 
     @Override
@@ -157,7 +157,7 @@ public class UnbanRequest extends ToggleRequest implements DocumentAction, Votab
         String userHash = expectUserHash();
         User user = validationContext.getCurrentValidLocalState().getMapped().expectUserState(userHash).getMapped()
                 .getUser().getMapped();
-        validationContext.getContext().verifySignature(voting.getSubject(), Signer.VERIFIER, user);
+        validationContext.verifySignature(voting.getSubject(), user);
         IPLDObject<UserState> userState = voting.getInitialModelState().getMapped().expectUserState(userHash);
         UnbanRequest unbanRequest;
         if (userState == getUserState()) {
@@ -20,12 +20,15 @@ import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.TreeSet;
 
 import org.projectjinxers.account.Signer;
@@ -39,6 +42,7 @@ import org.projectjinxers.controller.SettlementController;
 import org.projectjinxers.controller.ValidationContext;
 import org.projectjinxers.controller.ValidationException;
 import org.projectjinxers.util.ModelUtility;
+import org.projectjinxers.util.PersistentLinkedMap;
 
 /**
  * Instances of this class represent the state of a user (rating, documents, requests etc.) at a specific time.
@@ -60,7 +64,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
     private static final String KEY_RATING = "r";
     private static final String KEY_VERIFIED_BY = "y";
     private static final String KEY_USER = "u";
-    private static final String KEY_PREVIOUS_VERSION = "p";
+    static final String KEY_PREVIOUS_VERSION = "p";
     private static final String KEY_DOCUMENTS = "d";
     private static final String KEY_REMOVED_DOCUMENTS = "m";
     private static final String KEY_FALSE_CLAIMS = "c";
@@ -71,6 +75,17 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
     private static final String KEY_UNBAN_REQUESTS = "n";
     private static final String KEY_GRANTED_OWNERSHIPS = "g";
     private static final String KEY_GRANTED_UNBANS = "b";
+    private static final String KEY_SKIP_LINK = "k";
+
+    /**
+     * Since this meta version, the maps are stored as HAMTs (see {@link HamtNode}) instead of inline.
+     */
+    static final int META_VERSION_HAMT = 1;
+    /**
+     * Since this meta version, there is an optional skip link to an earlier version (see
+     * {@link ModelUtility#getSkipVersion(long)}).
+     */
+    static final int META_VERSION_SKIP_LINKS = 2;
 
     public static final KeyProvider<Document> DOCUMENT_KEY_PROVIDER = new KeyProvider<>() {
 
@@ -410,6 +425,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
     private String verifiedBy;
     private IPLDObject<User> user;
     private IPLDObject<UserState> previousVersion;
+    private IPLDObject<UserState> skipLink;
     private Map<String, IPLDObject<Document>> documents;
     private Map<String, IPLDObject<DocumentRemoval>> removedDocuments;
     private Map<String, IPLDObject<Document>> falseClaims;
@@ -422,7 +438,11 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
                                                                          // transferred
     private Map<String, IPLDObject<GrantedUnban>> grantedUnbans;
 
-    private Map<String, IPLDObject<Document>> allDocumentVersions;
+    private int metaVersion = META_VERSION_SKIP_LINKS;
+    // the HAMT roots (by key) this instance has been read from or written to, for reusing unchanged nodes and diffing
+    private Map<String, IPLDObject<HamtNode>> hamtRoots = new HashMap<>();
+
+    private DocumentIndex documentIndex;
 
     private Collection<IPLDObject<Document>> newDocuments;
     private Map<String, IPLDObject<DocumentRemoval>> newRemovedDocuments;
@@ -465,26 +485,57 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         if (validationContext != null && previousVersion != null && previousVersion.getMapped().version >= version) {
             throw new ValidationException("version must be increased");
         }
-        this.documents = reader.readLinkObjects(KEY_DOCUMENTS, context, validationContext, LoaderFactory.DOCUMENT,
-                eager, DOCUMENT_KEY_PROVIDER);
-        this.removedDocuments = reader.readLinkObjects(KEY_REMOVED_DOCUMENTS, context, validationContext,
-                LoaderFactory.DOCUMENT_REMOVAL, eager, DOCUMENT_REMOVAL_KEY_PROVIDER);
-        this.falseClaims = reader.readLinkObjects(KEY_FALSE_CLAIMS, context, validationContext, LoaderFactory.DOCUMENT,
-                eager, DOCUMENT_KEY_PROVIDER);
-        this.falseApprovals = reader.readLinkObjects(KEY_FALSE_APPROVALS, context, validationContext,
-                LoaderFactory.REVIEW, eager, REVIEW_KEY_PROVIDER);
-        this.falseDeclinations = reader.readLinkObjects(KEY_FALSE_DECLINATIONS, context, validationContext,
-                LoaderFactory.REVIEW, eager, REVIEW_KEY_PROVIDER);
-        this.settlementRequests = reader.readLinkObjects(KEY_SETTLEMENT_REQUESTS, context, validationContext,
-                LoaderFactory.SETTLEMENT_REQUEST, eager, SETTLEMENT_REQUEST_KEY_PROVIDER);
-        this.ownershipRequests = reader.readLinkObjects(KEY_OWNERSHIP_REQUESTS, context, validationContext,
-                LoaderFactory.OWNERSHIP_REQUEST, eager, OWNERSHIP_REQUEST_KEY_PROVIDER);
-        this.unbanRequests = reader.readLinkObjects(KEY_UNBAN_REQUESTS, context, validationContext,
-                LoaderFactory.UNBAN_REQUEST, eager, UNBAN_REQUEST_KEY_PROVIDER);
-        this.grantedOwnerships = reader.readLinkObjects(KEY_GRANTED_OWNERSHIPS, context, validationContext,
-                LoaderFactory.GRANTED_OWNERSHIP, eager, GRANTED_OWNERSHIP_KEY_PROVIDER);
-        this.grantedUnbans = reader.readLinkObjects(KEY_GRANTED_UNBANS, context, validationContext,
-                LoaderFactory.GRANTED_UNBAN, eager, GRANTED_UNBAN_KEY_PROVIDER);
+        this.metaVersion = metadata.getVersion();
+        if (metaVersion >= META_VERSION_SKIP_LINKS) {
+            // validated by the validation context, once the ancestors are known
+            this.skipLink = reader.readLinkObject(KEY_SKIP_LINK, context, null, LoaderFactory.USER_STATE, false);
+        }
+        if (metaVersion >= META_VERSION_HAMT) {
+            this.documents = HamtNode.readLinks(readHamtRoot(reader, KEY_DOCUMENTS, context), context,
+                    validationContext, LoaderFactory.DOCUMENT, eager, DOCUMENT_KEY_PROVIDER,
+                    Document.KEY_PREVIOUS_VERSION);
+            this.removedDocuments = HamtNode.readLinks(readHamtRoot(reader, KEY_REMOVED_DOCUMENTS, context), context,
+                    validationContext, LoaderFactory.DOCUMENT_REMOVAL, eager, DOCUMENT_REMOVAL_KEY_PROVIDER);
+            this.falseClaims = HamtNode.readLinks(readHamtRoot(reader, KEY_FALSE_CLAIMS, context), context,
+                    validationContext, LoaderFactory.DOCUMENT, eager, DOCUMENT_KEY_PROVIDER);
+            this.falseApprovals = HamtNode.readLinks(readHamtRoot(reader, KEY_FALSE_APPROVALS, context), context,
+                    validationContext, LoaderFactory.REVIEW, eager, REVIEW_KEY_PROVIDER);
+            this.falseDeclinations = HamtNode.readLinks(readHamtRoot(reader, KEY_FALSE_DECLINATIONS, context),
+                    context, validationContext, LoaderFactory.REVIEW, eager, REVIEW_KEY_PROVIDER);
+            this.settlementRequests = HamtNode.readLinks(readHamtRoot(reader, KEY_SETTLEMENT_REQUESTS, context),
+                    context, validationContext, LoaderFactory.SETTLEMENT_REQUEST, eager,
+                    SETTLEMENT_REQUEST_KEY_PROVIDER);
+            this.ownershipRequests = HamtNode.readLinks(readHamtRoot(reader, KEY_OWNERSHIP_REQUESTS, context),
+                    context, validationContext, LoaderFactory.OWNERSHIP_REQUEST, eager, OWNERSHIP_REQUEST_KEY_PROVIDER);
+            this.unbanRequests = HamtNode.readLinks(readHamtRoot(reader, KEY_UNBAN_REQUESTS, context), context,
+                    validationContext, LoaderFactory.UNBAN_REQUEST, eager, UNBAN_REQUEST_KEY_PROVIDER);
+            this.grantedOwnerships = HamtNode.readLinks(readHamtRoot(reader, KEY_GRANTED_OWNERSHIPS, context),
+                    context, validationContext, LoaderFactory.GRANTED_OWNERSHIP, eager, GRANTED_OWNERSHIP_KEY_PROVIDER);
+            this.grantedUnbans = HamtNode.readLinks(readHamtRoot(reader, KEY_GRANTED_UNBANS, context), context,
+                    validationContext, LoaderFactory.GRANTED_UNBAN, eager, GRANTED_UNBAN_KEY_PROVIDER);
+        }
+        else {
+            this.documents = reader.readLinkObjects(KEY_DOCUMENTS, context, validationContext, LoaderFactory.DOCUMENT,
+                    eager, DOCUMENT_KEY_PROVIDER);
+            this.removedDocuments = reader.readLinkObjects(KEY_REMOVED_DOCUMENTS, context, validationContext,
+                    LoaderFactory.DOCUMENT_REMOVAL, eager, DOCUMENT_REMOVAL_KEY_PROVIDER);
+            this.falseClaims = reader.readLinkObjects(KEY_FALSE_CLAIMS, context, validationContext,
+                    LoaderFactory.DOCUMENT, eager, DOCUMENT_KEY_PROVIDER);
+            this.falseApprovals = reader.readLinkObjects(KEY_FALSE_APPROVALS, context, validationContext,
+                    LoaderFactory.REVIEW, eager, REVIEW_KEY_PROVIDER);
+            this.falseDeclinations = reader.readLinkObjects(KEY_FALSE_DECLINATIONS, context, validationContext,
+                    LoaderFactory.REVIEW, eager, REVIEW_KEY_PROVIDER);
+            this.settlementRequests = reader.readLinkObjects(KEY_SETTLEMENT_REQUESTS, context, validationContext,
+                    LoaderFactory.SETTLEMENT_REQUEST, eager, SETTLEMENT_REQUEST_KEY_PROVIDER);
+            this.ownershipRequests = reader.readLinkObjects(KEY_OWNERSHIP_REQUESTS, context, validationContext,
+                    LoaderFactory.OWNERSHIP_REQUEST, eager, OWNERSHIP_REQUEST_KEY_PROVIDER);
+            this.unbanRequests = reader.readLinkObjects(KEY_UNBAN_REQUESTS, context, validationContext,
+                    LoaderFactory.UNBAN_REQUEST, eager, UNBAN_REQUEST_KEY_PROVIDER);
+            this.grantedOwnerships = reader.readLinkObjects(KEY_GRANTED_OWNERSHIPS, context, validationContext,
+                    LoaderFactory.GRANTED_OWNERSHIP, eager, GRANTED_OWNERSHIP_KEY_PROVIDER);
+            this.grantedUnbans = reader.readLinkObjects(KEY_GRANTED_UNBANS, context, validationContext,
+                    LoaderFactory.GRANTED_UNBAN, eager, GRANTED_UNBAN_KEY_PROVIDER);
+        }
     }
 
     @Override
@@ -495,16 +546,68 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         writer.writeString(KEY_VERIFIED_BY, verifiedBy);
         writer.writeLink(KEY_USER, user, signer, context, progressListener);
         writer.writeLink(KEY_PREVIOUS_VERSION, previousVersion, null, null, null);
-        writer.writeLinkObjects(KEY_DOCUMENTS, documents, null, null, null);
-        writer.writeLinkObjects(KEY_REMOVED_DOCUMENTS, removedDocuments, null, null, null);
-        writer.writeLinkObjects(KEY_FALSE_CLAIMS, falseClaims, null, null, null);
-        writer.writeLinkObjects(KEY_FALSE_APPROVALS, falseApprovals, null, null, null);
-        writer.writeLinkObjects(KEY_FALSE_DECLINATIONS, falseDeclinations, null, null, null);
-        writer.writeLinkObjects(KEY_SETTLEMENT_REQUESTS, settlementRequests, null, null, null);
-        writer.writeLinkObjects(KEY_OWNERSHIP_REQUESTS, ownershipRequests, null, null, null);
-        writer.writeLinkObjects(KEY_UNBAN_REQUESTS, unbanRequests, null, null, null);
-        writer.writeLinkObjects(KEY_GRANTED_OWNERSHIPS, grantedOwnerships, signer, context, progressListener);
-        writer.writeLinkObjects(KEY_GRANTED_UNBANS, grantedUnbans, signer, context, progressListener);
+        if (metaVersion >= META_VERSION_SKIP_LINKS) {
+            if (skipLink == null) {
+                skipLink = findSkipLinkTarget();
+            }
+            writer.writeLink(KEY_SKIP_LINK, skipLink, null, null, null);
+        }
+        if (metaVersion >= META_VERSION_HAMT) {
+            writeHamtRoot(writer, KEY_DOCUMENTS, HamtNode.toEntries(documents), null, context, null);
+            writeHamtRoot(writer, KEY_REMOVED_DOCUMENTS, HamtNode.toEntries(removedDocuments), null, context, null);
+            writeHamtRoot(writer, KEY_FALSE_CLAIMS, HamtNode.toEntries(falseClaims), null, context, null);
+            writeHamtRoot(writer, KEY_FALSE_APPROVALS, HamtNode.toEntries(falseApprovals), null, context, null);
+            writeHamtRoot(writer, KEY_FALSE_DECLINATIONS, HamtNode.toEntries(falseDeclinations), null, context, null);
+            writeHamtRoot(writer, KEY_SETTLEMENT_REQUESTS, HamtNode.toEntries(settlementRequests), null, context, null);
+            writeHamtRoot(writer, KEY_OWNERSHIP_REQUESTS, HamtNode.toEntries(ownershipRequests), null, context, null);
+            writeHamtRoot(writer, KEY_UNBAN_REQUESTS, HamtNode.toEntries(unbanRequests), null, context, null);
+            writeHamtRoot(writer, KEY_GRANTED_OWNERSHIPS, HamtNode.toEntries(grantedOwnerships), signer, context,
+                    progressListener);
+            writeHamtRoot(writer, KEY_GRANTED_UNBANS, HamtNode.toEntries(grantedUnbans), signer, context,
+                    progressListener);
+        }
+        else {
+            writer.writeLinkObjects(KEY_DOCUMENTS, documents, null, null, null);
+            writer.writeLinkObjects(KEY_REMOVED_DOCUMENTS, removedDocuments, null, null, null);
+            writer.writeLinkObjects(KEY_FALSE_CLAIMS, falseClaims, null, null, null);
+            writer.writeLinkObjects(KEY_FALSE_APPROVALS, falseApprovals, null, null, null);
+            writer.writeLinkObjects(KEY_FALSE_DECLINATIONS, falseDeclinations, null, null, null);
+            writer.writeLinkObjects(KEY_SETTLEMENT_REQUESTS, settlementRequests, null, null, null);
+            writer.writeLinkObjects(KEY_OWNERSHIP_REQUESTS, ownershipRequests, null, null, null);
+            writer.writeLinkObjects(KEY_UNBAN_REQUESTS, unbanRequests, null, null, null);
+            writer.writeLinkObjects(KEY_GRANTED_OWNERSHIPS, grantedOwnerships, signer, context, progressListener);
+            writer.writeLinkObjects(KEY_GRANTED_UNBANS, grantedUnbans, signer, context, progressListener);
+        }
+    }
+
+    private IPLDObject<HamtNode> readHamtRoot(IPLDReader reader, String key, IPLDContext context) {
+        IPLDObject<HamtNode> res = HamtNode.readRoot(reader, key, context);
+        if (res != null) {
+            hamtRoots.put(key, res);
+        }
+        return res;
+    }
+
+    private void writeHamtRoot(IPLDWriter writer, String key, SortedMap<String, ? extends Object[]> entries,
+            Signer signer, IPLDContext context, ProgressListener progressListener) throws IOException {
+        // the reference for reusing nodes is the last written HAMT or the one of the previous version
+        IPLDObject<HamtNode> reference = hamtRoots.get(key);
+        if (reference == null && previousVersion != null && previousVersion.isMapped()) {
+            reference = previousVersion.getMapped().hamtRoots.get(key);
+        }
+        IPLDObject<HamtNode> root = HamtNode.writeRoot(writer, key, entries, reference, signer, context,
+                progressListener);
+        if (root == null) {
+            hamtRoots.remove(key);
+        }
+        else {
+            hamtRoots.put(key, root);
+        }
+    }
+
+    @Override
+    public int getMetaVersion() {
+        return metaVersion;
     }
 
     public long getVersion() {
@@ -515,6 +618,64 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         return previousVersion;
     }
 
+    public IPLDObject<UserState> getSkipLink() {
+        return skipLink;
+    }
+
+    /**
+     * Finds the ancestor of the given state with the greatest version, that is less than or equal to the given version.
+     * Skip links are followed where possible, so the number of loaded states is logarithmic in the distance.
+     * 
+     * @param from    the state to start from (returned if its version is not greater than the given version)
+     * @param version the version
+     * @return the ancestor or null, if there is no such ancestor
+     */
+    public static IPLDObject<UserState> getAncestor(IPLDObject<UserState> from, long version) {
+        IPLDObject<UserState> walk = from;
+        UserState state = walk.getMapped();
+        while (state.version > version) {
+            IPLDObject<UserState> next = null;
+            if (state.skipLink != null && ModelUtility.isSkipLinkPreferred(state.version, version)) {
+                // if versions have been skipped, the target might be older than the given version, but then there is
+                // no version in between, so the target is the result (no need to load it for checking its version)
+                next = state.skipLink;
+            }
+            if (next == null) {
+                next = state.previousVersion;
+                if (next == null) {
+                    return null;
+                }
+            }
+            walk = next;
+            state = walk.getMapped();
+        }
+        return walk;
+    }
+
+    /**
+     * Validates the skip link (if any). The skip links of all ancestors must have been validated before.
+     * 
+     * @throws ValidationException if the skip link doesn't point to the expected ancestor
+     */
+    public void validateSkipLink() {
+        if (skipLink != null) {
+            IPLDObject<UserState> expected = previousVersion == null ? null
+                    : getAncestor(previousVersion, ModelUtility.getSkipVersion(version));
+            if (expected == null || !skipLink.getMultihash().equals(expected.getMultihash())) {
+                throw new ValidationException("invalid skip link");
+            }
+        }
+    }
+
+    private IPLDObject<UserState> findSkipLinkTarget() {
+        if (previousVersion == null || version < 2) {
+            return null;
+        }
+        IPLDObject<UserState> res = getAncestor(previousVersion, ModelUtility.getSkipVersion(version));
+        // the previous version is linked anyway
+        return res == null || res == previousVersion || res.getMultihash() == null ? null : res;
+    }
+
     /**
      * @return the rating
      */
@@ -549,10 +710,10 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         if (documents == null) {
             return null;
         }
-        if (allDocumentVersions == null) {
+        if (documentIndex == null) {
             return expandDocuments(documents, null, null, documentHash);
         }
-        return allDocumentVersions.get(documentHash);
+        return documentIndex.getDocument(documentHash);
     }
 
     /**
@@ -584,31 +745,99 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
      * @return the document stored in this instance with the given hash (no null checks!)
      */
     public Document expectDocument(String documentHash) {
-        return allDocumentVersions == null ? expandDocuments(documents, null, null, documentHash).getMapped()
-                : allDocumentVersions.get(documentHash).getMapped();
+        return documentIndex == null ? expandDocuments(documents, null, null, documentHash).getMapped()
+                : documentIndex.getDocument(documentHash).getMapped();
     }
 
     public void ensureAllDocumentVersions() {
-        if (documents != null) {
-            Map<String, IPLDObject<Document>> allVersions = allDocumentVersions;
-            if (allVersions == null) {
-                allVersions = new LinkedHashMap<>();
-                expandDocuments(documents, null, allVersions, null);
-                allDocumentVersions = allVersions;
-            }
-        }
+        getDocumentIndex();
     }
 
+    /**
+     * @return a read-only view of all document versions by multihash (null if there are no documents)
+     */
     public Map<String, IPLDObject<Document>> getAllDocuments() {
+        DocumentIndex index = getDocumentIndex();
+        return index == null ? null : index.getDocuments();
+    }
+
+    /**
+     * @param firstVersionHash the hash of the first version of a document
+     * @return all versions of the document (oldest first) or null, if there is no such document
+     */
+    public Collection<IPLDObject<Document>> getDocumentVersions(String firstVersionHash) {
+        DocumentIndex index = getDocumentIndex();
+        return index == null ? null : index.getVersionChain(firstVersionHash);
+    }
+
+    /**
+     * @param reviewedDocumentHash the hash of the reviewed document
+     * @return all versions of this user's reviews of the document (read-only, can be empty, but not null)
+     */
+    public Collection<IPLDObject<Document>> getReviews(String reviewedDocumentHash) {
+        DocumentIndex index = getDocumentIndex();
+        return index == null ? Collections.emptyList() : index.getReviews(reviewedDocumentHash);
+    }
+
+    /**
+     * @return all versions of this user's invert truth reviews (read-only, can be empty, but not null)
+     */
+    public Collection<IPLDObject<Document>> getInvertTruthReviews() {
+        DocumentIndex index = getDocumentIndex();
+        return index == null ? Collections.emptyList() : index.getInvertTruthReviews();
+    }
+
+    private DocumentIndex getDocumentIndex() {
         if (documents == null) {
             return null;
         }
-        if (allDocumentVersions == null) {
-            Map<String, IPLDObject<Document>> res = new LinkedHashMap<>();
-            expandDocuments(documents, null, res, null);
-            allDocumentVersions = res;
+        if (documentIndex == null) {
+            DocumentIndex previousIndex = null;
+            UserState previous = null;
+            if (previousVersion != null && previousVersion.isMapped()) {
+                previous = previousVersion.getMapped();
+                previousIndex = previous.documentIndex;
+            }
+            // an index with unsaved versions contains outdated keys, so it can't be derived from
+            if (previousIndex == null || previousIndex.hasUnsavedVersions()) {
+                documentIndex = new DocumentIndex(documents);
+            }
+            else {
+                documentIndex = previousIndex.derive(documents, getChangedDocumentKeys(previous));
+            }
         }
-        return new LinkedHashMap<>(allDocumentVersions);
+        return documentIndex;
+    }
+
+    private Collection<String> getChangedDocumentKeys(UserState since) {
+        Set<String> res = new LinkedHashSet<>();
+        IPLDObject<HamtNode> root = hamtRoots.get(KEY_DOCUMENTS);
+        IPLDObject<HamtNode> sinceRoot = since.hamtRoots.get(KEY_DOCUMENTS);
+        if (root != null && sinceRoot != null) {
+            HamtNode.collectChangedKeys(root, sinceRoot, res);
+            HamtNode.collectChangedKeys(sinceRoot, root, res);
+        }
+        else {
+            for (Entry<String, IPLDObject<Document>> entry : documents.entrySet()) {
+                if (!isSameLink(entry.getValue(), since.documents.get(entry.getKey()))) {
+                    res.add(entry.getKey());
+                }
+            }
+            for (String key : since.documents.keySet()) {
+                if (!documents.containsKey(key)) {
+                    res.add(key);
+                }
+            }
+        }
+        return res;
+    }
+
+    private static boolean isSameLink(IPLDObject<?> link, IPLDObject<?> other) {
+        if (link == other) {
+            return true;
+        }
+        String multihash = link.getMultihash();
+        return multihash != null && other != null && multihash.equals(other.getMultihash());
     }
 
     public boolean isRemoved(String firstVersionHash) {
@@ -664,17 +893,9 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
                 return;
             }
             if (reviewHashes != null) {
-                Map<String, IPLDObject<Document>> allDocuments = allDocumentVersions;
+                DocumentIndex index = getDocumentIndex();
                 for (String reviewHash : reviewHashes) {
-                    if (allDocuments == null) {
-                        allDocuments = new HashMap<>();
-                        boolean found = expandDocuments(documents, null, allDocuments, reviewHash) != null;
-                        allDocumentVersions = allDocuments;
-                        if (found) {
-                            return;
-                        }
-                    }
-                    else if (allDocuments.containsKey(reviewHash)) {
+                    if (index.getDocument(reviewHash) != null) {
                         return;
                     }
                 }
@@ -745,7 +966,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         }
         if (oreqs != null) {
             if (updated.ownershipRequests == null) {
-                updated.ownershipRequests = new LinkedHashMap<>();
+                updated.ownershipRequests = new PersistentLinkedMap<>();
             }
             for (IPLDObject<OwnershipRequest> ownershipRequest : oreqs) {
                 updated.ownershipRequests.put(OWNERSHIP_REQUEST_KEY_PROVIDER.getKey(ownershipRequest),
@@ -755,7 +976,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         }
         if (granted != null) {
             if (updated.grantedOwnerships == null) {
-                updated.grantedOwnerships = new LinkedHashMap<>();
+                updated.grantedOwnerships = new PersistentLinkedMap<>();
             }
             for (IPLDObject<GrantedOwnership> grantedOwnership : granted.values()) {
                 String key = GRANTED_OWNERSHIP_KEY_PROVIDER.getKey(grantedOwnership);
@@ -794,7 +1015,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         }
         if (unbans != null) {
             if (updated.grantedUnbans == null) {
-                updated.grantedUnbans = new LinkedHashMap<>();
+                updated.grantedUnbans = new PersistentLinkedMap<>();
             }
             for (IPLDObject<GrantedUnban> unban : unbans) {
                 String key = GRANTED_UNBAN_KEY_PROVIDER.getKey(unban);
@@ -808,7 +1029,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
 
     public void addFalseClaim(IPLDObject<Document> falseClaim) {
         if (falseClaims == null) {
-            falseClaims = new LinkedHashMap<>();
+            falseClaims = new PersistentLinkedMap<>();
         }
         falseClaims.put(falseClaim.getMultihash(), falseClaim);
         rating -= FALSE_CLAIM_PENALTY;
@@ -816,7 +1037,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
 
     public void addFalseApproval(IPLDObject<Review> falseApproval) {
         if (falseApprovals == null) {
-            falseApprovals = new LinkedHashMap<>();
+            falseApprovals = new PersistentLinkedMap<>();
         }
         falseApprovals.put(falseApproval.getMultihash(), falseApproval);
         rating -= FALSE_APPROVAL_PENALTY;
@@ -824,7 +1045,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
 
     public void addFalseDeclination(IPLDObject<Review> falseDeclination) {
         if (falseDeclinations == null) {
-            falseDeclinations = new LinkedHashMap<>();
+            falseDeclinations = new PersistentLinkedMap<>();
         }
         falseDeclinations.put(falseDeclination.getMultihash(), falseDeclination);
         rating -= FALSE_DECLINATION_PENALTY;
@@ -935,17 +1156,11 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
                     newDocuments = null;
                 }
                 else {
-                    if (allDocumentVersions == null) {
-                        Map<String, IPLDObject<Document>> tmp = new LinkedHashMap<>();
-                        expandDocuments(documents, null, tmp, null);
-                        allDocumentVersions = tmp;
-                    }
-                    newDocuments = new ArrayList<>(allDocumentVersions.values());
+                    newDocuments = new ArrayList<>(getDocumentIndex().getDocuments().values());
                 }
             }
             else {
-                Map<String, IPLDObject<Document>> newLinksMap = ModelUtility.getNewForeignKeyLinksMap(documents,
-                        since.documents);
+                Map<String, IPLDObject<Document>> newLinksMap = getNewDocumentLinksMap(since);
                 if (newLinksMap == null) {
                     newDocuments = null;
                 }
@@ -971,22 +1186,39 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
             }
         }
         else {
-            Map<String, IPLDObject<Document>> newLinksMap = ModelUtility.getNewForeignKeyLinksMap(documents,
-                    since.documents);
+            Map<String, IPLDObject<Document>> newLinksMap = getNewDocumentLinksMap(since);
             if (newLinksMap == null) {
                 newDocuments = null;
             }
             else {
-                Map<String, IPLDObject<Document>> allCurrentDocuments = new HashMap<>();
-                expandDocuments(since.documents, null, allCurrentDocuments, null);
-                newDocuments = expandDocuments(newLinksMap, allCurrentDocuments, reviewHashes, obsoleteReviewVersions)
-                        .values();
+                newDocuments = expandDocuments(newLinksMap, since.getDocumentIndex().getDocuments(), reviewHashes,
+                        obsoleteReviewVersions).values();
             }
         }
         newDocumentsSince = since == null ? -1 : since.getVersion();
         return newDocuments;
     }
 
+    private Map<String, IPLDObject<Document>> getNewDocumentLinksMap(UserState since) {
+        IPLDObject<HamtNode> root = hamtRoots.get(KEY_DOCUMENTS);
+        IPLDObject<HamtNode> sinceRoot = since.hamtRoots.get(KEY_DOCUMENTS);
+        if (root == null || sinceRoot == null) {
+            return ModelUtility.getNewForeignKeyLinksMap(documents, since.documents);
+        }
+        // the maps of read or written instances are never modified (updates are applied to copies), so the tries can
+        // be diffed instead, which only compares the shards along the changed paths
+        Collection<String> changedKeys = new ArrayList<>();
+        HamtNode.collectChangedKeys(root, sinceRoot, changedKeys);
+        if (changedKeys.isEmpty()) {
+            return null;
+        }
+        Map<String, IPLDObject<Document>> res = new LinkedHashMap<>();
+        for (String key : changedKeys) {
+            res.put(key, documents.get(key));
+        }
+        return res;
+    }
+
     public Map<String, IPLDObject<DocumentRemoval>> getNewRemovedDocuments(UserState since, boolean ignoreCached) {
         if (ignoreCached || newRemovedDocuments == null || since == null && newRemovedDocumentsSince >= 0
                 || since != null && since.getVersion() != newRemovedDocumentsSince) {
@@ -1094,13 +1326,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
             Map<String, Set<String>> newReviewTableValues, Map<String, Map<String, String>> reviewers) {
         if (documents != null) {
             boolean res = false;
-            Map<String, IPLDObject<Document>> allDocuments = allDocumentVersions;
-            if (allDocuments == null) {
-                allDocuments = new LinkedHashMap<>();
-                expandDocuments(documents, null, allDocuments, null);
-                allDocumentVersions = allDocuments;
-            }
-            for (IPLDObject<Document> document : allDocuments.values()) {
+            for (IPLDObject<Document> document : getDocumentIndex().getDocuments().values()) {
                 res = controller.checkDocument(document, true, newReviewTableKeys, newReviewTableValues, reviewers)
                         || res;
             }
@@ -1118,7 +1344,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
             res.documents = other.documents;
         }
         else {
-            res.documents = new LinkedHashMap<>(documents);
+            res.documents = new PersistentLinkedMap<>(documents);
             Collection<IPLDObject<Document>> newDocuments = other.newDocuments;
             if (newDocuments != null) {
                 for (IPLDObject<Document> document : newDocuments) {
@@ -1142,7 +1368,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
             }
         }
         else {
-            res.removedDocuments = new LinkedHashMap<>(removedDocuments);
+            res.removedDocuments = new PersistentLinkedMap<>(removedDocuments);
             if (newRemovedDocuments != null) {
                 for (Entry<String, IPLDObject<DocumentRemoval>> entry : newRemovedDocuments.entrySet()) {
                     String hash = entry.getKey();
@@ -1155,7 +1381,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
             res.settlementRequests = other.settlementRequests;
         }
         else {
-            res.settlementRequests = new LinkedHashMap<>(settlementRequests);
+            res.settlementRequests = new PersistentLinkedMap<>(settlementRequests);
             Collection<IPLDObject<SettlementRequest>> newSettlementRequests = other.newSettlementRequests;
             if (newSettlementRequests != null) {
                 for (IPLDObject<SettlementRequest> request : newSettlementRequests) {
@@ -1167,7 +1393,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
             res.ownershipRequests = other.ownershipRequests;
         }
         else {
-            res.ownershipRequests = new LinkedHashMap<>(ownershipRequests);
+            res.ownershipRequests = new PersistentLinkedMap<>(ownershipRequests);
             Collection<IPLDObject<OwnershipRequest>> newOwnershipRequests = other.newOwnershipRequests;
             if (newOwnershipRequests != null) {
                 for (IPLDObject<OwnershipRequest> request : newOwnershipRequests) {
@@ -1179,7 +1405,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
             res.unbanRequests = other.unbanRequests;
         }
         else {
-            res.unbanRequests = new LinkedHashMap<>(unbanRequests);
+            res.unbanRequests = new PersistentLinkedMap<>(unbanRequests);
             Collection<IPLDObject<UnbanRequest>> newUnbanRequests = other.newUnbanRequests;
             if (newUnbanRequests != null) {
                 for (IPLDObject<UnbanRequest> request : newUnbanRequests) {
@@ -1191,7 +1417,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
             res.grantedOwnerships = other.grantedOwnerships;
         }
         else {
-            res.grantedOwnerships = new LinkedHashMap<>(grantedOwnerships);
+            res.grantedOwnerships = new PersistentLinkedMap<>(grantedOwnerships);
             Collection<IPLDObject<GrantedOwnership>> newGrantedOwnerships = other.newGrantedOwnerships;
             if (newGrantedOwnerships != null) {
                 for (IPLDObject<GrantedOwnership> granted : newGrantedOwnerships) {
@@ -1205,7 +1431,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
             res.grantedUnbans = other.grantedUnbans;
         }
         else {
-            res.grantedUnbans = new LinkedHashMap<>(grantedUnbans);
+            res.grantedUnbans = new PersistentLinkedMap<>(grantedUnbans);
             Collection<IPLDObject<GrantedUnban>> newGrantedUnbans = other.newGrantedUnbans;
             if (newGrantedUnbans != null) {
                 for (IPLDObject<GrantedUnban> granted : newGrantedUnbans) {
@@ -1225,13 +1451,13 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
             res.rating = previous.rating;
             res.previousVersion = previousUserState;
             if (previous.falseClaims != null) {
-                res.falseClaims = new LinkedHashMap<>(previous.falseClaims);
+                res.falseClaims = new PersistentLinkedMap<>(previous.falseClaims);
             }
             if (previous.falseApprovals != null) {
-                res.falseApprovals = new LinkedHashMap<>(previous.falseApprovals);
+                res.falseApprovals = new PersistentLinkedMap<>(previous.falseApprovals);
             }
             if (previous.falseDeclinations != null) {
-                res.falseDeclinations = new LinkedHashMap<>(previous.falseDeclinations);
+                res.falseDeclinations = new PersistentLinkedMap<>(previous.falseDeclinations);
             }
             Collection<IPLDObject<GrantedUnban>> newGrantedUnbans = getNewGrantedUnbans(previous, true);
             if (newGrantedUnbans != null) {
@@ -1248,13 +1474,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         SettlementController mainSettlementController = validationContext.getMainSettlementController();
         if (documents != null) {
             boolean res = false;
-            Map<String, IPLDObject<Document>> allDocuments = allDocumentVersions;
-            if (allDocuments == null) {
-                allDocuments = new LinkedHashMap<>();
-                expandDocuments(documents, null, allDocuments, null);
-                allDocumentVersions = allDocuments;
-            }
-            for (IPLDObject<Document> document : allDocuments.values()) {
+            for (IPLDObject<Document> document : getDocumentIndex().getDocuments().values()) {
                 res = mainSettlementController.checkDocument(document, true, null, null, null) || res;
             }
             if (res) {
@@ -1286,13 +1506,13 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         UserState copy = new UserState();
         copy.rating = this.rating;
         if (falseClaims != null) {
-            copy.falseClaims = new LinkedHashMap<>(falseClaims);
+            copy.falseClaims = new PersistentLinkedMap<>(falseClaims);
         }
         if (falseApprovals != null) {
-            copy.falseApprovals = new LinkedHashMap<>(falseApprovals);
+            copy.falseApprovals = new PersistentLinkedMap<>(falseApprovals);
         }
         if (falseDeclinations != null) {
-            copy.falseDeclinations = new LinkedHashMap<>(falseDeclinations);
+            copy.falseDeclinations = new PersistentLinkedMap<>(falseDeclinations);
         }
         return copy;
     }
@@ -1336,7 +1556,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         }
         if (settlementValues.falseClaims != null) {
             if (falseClaims == null) {
-                falseClaims = new LinkedHashMap<>();
+                falseClaims = new PersistentLinkedMap<>();
             }
             falseClaims.putAll(settlementValues.falseClaims);
         }
@@ -1347,7 +1567,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         }
         if (settlementValues.falseApprovals != null) {
             if (falseApprovals == null) {
-                falseApprovals = new LinkedHashMap<>();
+                falseApprovals = new PersistentLinkedMap<>();
             }
             falseApprovals.putAll(settlementValues.falseApprovals);
         }
@@ -1358,7 +1578,7 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         }
         if (settlementValues.falseDeclinations != null) {
             if (falseDeclinations == null) {
-                falseDeclinations = new LinkedHashMap<>();
+                falseDeclinations = new PersistentLinkedMap<>();
             }
             falseDeclinations.putAll(settlementValues.falseDeclinations);
         }
@@ -1423,34 +1643,34 @@ public class UserState implements IPLDSerializable, Loader<UserState> {
         copy.user = user;
         copy.previousVersion = previousVersion;
         if (documents != null) {
-            copy.documents = new LinkedHashMap<>(documents);
+            copy.documents = new PersistentLinkedMap<>(documents);
         }
         if (removedDocuments != null) {
-            copy.removedDocuments = new LinkedHashMap<>(removedDocuments);
+            copy.removedDocuments = new PersistentLinkedMap<>(removedDocuments);
         }
         if (falseClaims != null) {
-            copy.falseClaims = new LinkedHashMap<>(falseClaims);
+            copy.falseClaims = new PersistentLinkedMap<>(falseClaims);
         }
         if (falseApprovals != null) {
-            copy.falseApprovals = new LinkedHashMap<>(falseApprovals);
+            copy.falseApprovals = new PersistentLinkedMap<>(falseApprovals);
         }
         if (falseDeclinations != null) {
-            copy.falseDeclinations = new LinkedHashMap<>(falseDeclinations);
+            copy.falseDeclinations = new PersistentLinkedMap<>(falseDeclinations);
         }
         if (settlementRequests != null) {
-            copy.settlementRequests = new LinkedHashMap<>(settlementRequests);
+            copy.settlementRequests = new PersistentLinkedMap<>(settlementRequests);
         }
         if (ownershipRequests != null) {
-            copy.ownershipRequests = new LinkedHashMap<>(ownershipRequests);
+            copy.ownershipRequests = new PersistentLinkedMap<>(ownershipRequests);
         }
         if (unbanRequests != null) {
-            copy.unbanRequests = new LinkedHashMap<>(unbanRequests);
+            copy.unbanRequests = new PersistentLinkedMap<>(unbanRequests);
         }
         if (grantedOwnerships != null) {
-            copy.grantedOwnerships = new LinkedHashMap<>(grantedOwnerships);
+            copy.grantedOwnerships = new PersistentLinkedMap<>(grantedOwnerships);
         }
         if (grantedUnbans != null) {
-            copy.grantedUnbans = new LinkedHashMap<>(grantedUnbans);
+            copy.grantedUnbans = new PersistentLinkedMap<>(grantedUnbans);
         }
         return copy;
     }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.projectjinxers.controller.IPLDObject;
+import org.projectjinxers.controller.IPLDObject.ProgressListener;
+
+/**
+ * Running tally of a {@link Voting}. Each vote is only evaluated once, when it is counted for the first time, so the
+ * final tally at the deadline only has to evaluate the votes, that have been added since the last update. Large
+ * batches of uncounted votes are evaluated concurrently.
+ * 
+ * @author ProjectJinxers
+ */
+class VoteTally {
+
+    /**
+     * Determines the index of the value a vote has been cast for.
+     */
+    interface VoteEvaluator {
+
+        /**
+         * @param key  the key of the vote in the voting
+         * @param vote the vote
+         * @return the index of the value or -1, if the vote doesn't count
+         */
+        int getValueIndex(String key, Vote vote);
+
+    }
+
+    static final int PARALLEL_THRESHOLD = 64;
+
+    private final Set<String> counted;
+    private int[] counts;
+
+    VoteTally() {
+        this.counted = new HashSet<>();
+        this.counts = new int[0];
+    }
+
+    private VoteTally(VoteTally original) {
+        this.counted = new HashSet<>(original.counted);
+        this.counts = original.counts.clone();
+    }
+
+    /**
+     * @return an independent copy of this tally
+     */
+    synchronized VoteTally copy() {
+        return new VoteTally(this);
+    }
+
+    /**
+     * Counts the votes, that have not been counted, yet. If a previously counted vote is missing in the given map, the
+     * tally is recounted from scratch.
+     * 
+     * @param votes            all votes of the voting
+     * @param evaluator        determines the value index for each vote (must be thread-safe)
+     * @param progressListener the optional progress listener (is notified once per vote)
+     * @return the current counts (indexed by value index, the length is the highest counted index plus one)
+     */
+    synchronized int[] update(Map<String, IPLDObject<Vote>> votes, VoteEvaluator evaluator,
+            ProgressListener progressListener) {
+        if (!votes.keySet().containsAll(counted)) {
+            counted.clear();
+            counts = new int[0];
+        }
+        List<Entry<String, IPLDObject<Vote>>> uncounted = new ArrayList<>();
+        for (Entry<String, IPLDObject<Vote>> entry : votes.entrySet()) {
+            if (counted.contains(entry.getKey())) {
+                if (progressListener != null) {
+                    progressListener.nextStep();
+                }
+            }
+            else {
+                uncounted.add(entry);
+            }
+        }
+        int size = uncounted.size();
+        int[] valueIndices = new int[size];
+        IntStream indices = IntStream.range(0, size);
+        if (size >= PARALLEL_THRESHOLD) {
+            indices = indices.parallel();
+        }
+        indices.forEach(i -> {
+            Entry<String, IPLDObject<Vote>> entry = uncounted.get(i);
+            valueIndices[i] = evaluator.getValueIndex(entry.getKey(), entry.getValue().getMapped());
+        });
+        for (int i = 0; i < size; i++) {
+            int valueIndex = valueIndices[i];
+            if (valueIndex >= 0) {
+                if (valueIndex >= counts.length) {
+                    counts = Arrays.copyOf(counts, valueIndex + 1);
+                }
+                counts[valueIndex]++;
+            }
+            counted.add(uncounted.get(i).getKey());
+            if (progressListener != null) {
+                progressListener.nextStep();
+            }
+        }
+        return counts.clone();
+    }
+
+}
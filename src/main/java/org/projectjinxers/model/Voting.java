@@ -23,6 +23,7 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.codec.binary.Base64;
 import org.projectjinxers.account.Signer;
@@ -84,6 +85,10 @@ public class Voting implements IPLDSerializable, Loader<Voting>, TieBreaker {
 
     private long hashSeed;
     private long resolvedSeed;
+    private Map<String, String> invitationKeyIndex; // invitation key -> user hash (anonymous votings only)
+    private SecretConfig invitationKeyIndexConfig;
+    private Map<Integer, byte[][]> obfuscatedValueHashes; // by value hash obfuscation (anonymous votings only)
+    private VoteTally runningTally;
 
     Voting() {
 
@@ -221,6 +226,7 @@ public class Voting implements IPLDSerializable, Loader<Voting>, TieBreaker {
                     copy.votes = new LinkedHashMap<>();
                 }
                 copy.votes.put(check, voteObject);
+                copy.updateRunningTally(secretConfig, null);
                 return copy;
             }
         }
@@ -260,29 +266,21 @@ public class Voting implements IPLDSerializable, Loader<Voting>, TieBreaker {
                     allUsers.put(userHash, userObject.getMapped());
                 }
             }
-            Set<Entry<String, User>> entrySet = allUsers.entrySet();
-            IPLDContext context = validationContext.getContext();
             if (subject.isAnonymous()) {
-                if (hashSeed == 0) {
-                    hashSeed = subject.getHashSeed();
-                }
-                outer: for (Entry<String, IPLDObject<Vote>> entry : newVotes.entrySet()) {
+                Map<String, String> invitationKeyIndex = getInvitationKeyIndex(validationContext.getSecretConfig());
+                for (Entry<String, IPLDObject<Vote>> entry : newVotes.entrySet()) {
                     String key = entry.getKey();
                     IPLDObject<Vote> value = entry.getValue();
                     String multihash = value.getMultihash();
                     if (validationContext.addValidated(multihash + "@" + key)) {
                         validVersion = currentState.validateUnchangedVote(key, value.getMultihash(), votingKey,
                                 validVersion);
-                        for (Entry<String, User> userEntry : entrySet) {
-                            String userHash = userEntry.getKey();
-                            String invitationKey = getInvitationKeyString(userHash,
-                                    validationContext.getSecretConfig());
-                            if (key.equals(invitationKey)) {
-                                context.verifySignature(value, Signer.VERIFIER, userEntry.getValue());
-                                continue outer;
-                            }
+                        String userHash = invitationKeyIndex.get(key);
+                        User user = userHash == null ? null : allUsers.get(userHash);
+                        if (user == null) {
+                            throw new ValidationException("found unexpected voter - might be banned");
                         }
-                        throw new ValidationException("found unexpected voter - might be banned");
+                        validationContext.verifySignature(value, user);
                     }
                 }
             }
@@ -294,10 +292,12 @@ public class Voting implements IPLDSerializable, Loader<Voting>, TieBreaker {
                     if (validationContext.addValidated(multihash + "@" + key)) {
                         currentState.validateUnchangedVote(key, value.getMultihash(), votingKey, validVersion);
                         User user = allUsers.get(key);
-                        context.verifySignature(value, Signer.VERIFIER, user);
+                        validationContext.verifySignature(value, user);
                     }
                 }
             }
+            // keeps the final tally (and its validation) at the deadline cheap
+            updateRunningTally(validationContext.getSecretConfig(), null);
             return true;
         }
         return false;
@@ -364,6 +364,31 @@ public class Voting implements IPLDSerializable, Loader<Voting>, TieBreaker {
         return Base64.encodeBase64String(invitationKey);
     }
 
+    /**
+     * Maps the invitation keys of all users in the initial model state to their user hashes. Obfuscating the user
+     * hashes is expensive, so the index is built only once per voting (and secret config) and shared with its copies.
+     * 
+     * @param secretConfig the secret config
+     * @return the index (invitation key to user hash)
+     */
+    private Map<String, String> getInvitationKeyIndex(SecretConfig secretConfig) {
+        Map<String, String> res = invitationKeyIndex;
+        if (res == null || invitationKeyIndexConfig != secretConfig) {
+            if (hashSeed == 0) {
+                hashSeed = subject.getMapped().getHashSeed();
+            }
+            res = new HashMap<>();
+            for (String userHash : initialModelState.getMapped().expectAllUserHashes()) {
+                res.put(getInvitationKeyString(userHash, secretConfig), userHash);
+            }
+            invitationKeyIndex = res;
+            invitationKeyIndexConfig = secretConfig;
+            obfuscatedValueHashes = null;
+            runningTally = null;
+        }
+        return res;
+    }
+
     private Voting copy() {
         Voting res = new Voting();
         res.seed = seed;
@@ -375,52 +400,81 @@ public class Voting implements IPLDSerializable, Loader<Voting>, TieBreaker {
         }
         res.tally = tally;
         res.hashSeed = hashSeed;
+        res.invitationKeyIndex = invitationKeyIndex;
+        res.invitationKeyIndexConfig = invitationKeyIndexConfig;
+        res.obfuscatedValueHashes = obfuscatedValueHashes;
+        res.runningTally = runningTally == null ? null : runningTally.copy();
         return res;
     }
 
     private int[] tally(SecretConfig secretConfig, ProgressListener progressListener) {
-        int[] counts = new int[votes.size()];
+        int[] counts = updateRunningTally(secretConfig, progressListener);
+        // the counts have always been published with one slot per vote (a count for a higher value index could not
+        // be published)
+        int size = votes == null ? 0 : votes.size();
+        for (int i = size; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                throw new ValidationException("value index out of tally range");
+            }
+        }
+        return Arrays.copyOf(counts, size);
+    }
+
+    /**
+     * Counts the votes, that have been added since the last update, and returns the current counts. Obfuscating the
+     * value hash bases is expensive, so it is done only once per distinct value hash obfuscation.
+     * 
+     * @param secretConfig     the secret config
+     * @param progressListener the optional progress listener
+     * @return the current counts
+     */
+    private int[] updateRunningTally(SecretConfig secretConfig, ProgressListener progressListener) {
+        if (votes == null) {
+            return new int[0];
+        }
         Votable subject = this.subject.getMapped();
+        VoteTally.VoteEvaluator evaluator;
         if (subject.isAnonymous()) {
             if (hashSeed == 0) {
                 hashSeed = subject.getHashSeed();
             }
+            Map<String, String> invitationKeyIndex = getInvitationKeyIndex(secretConfig);
+            if (obfuscatedValueHashes == null) {
+                obfuscatedValueHashes = new ConcurrentHashMap<>();
+            }
+            Map<Integer, byte[][]> obfuscatedValueHashes = this.obfuscatedValueHashes;
             byte[][] allValueHashBases = subject.getAllValueHashBases();
-            for (String userHash : initialModelState.getMapped().expectAllUserHashes()) {
-                String invitationKey = getInvitationKeyString(userHash, secretConfig);
-                IPLDObject<Vote> voteObject = votes.get(invitationKey);
-                if (voteObject != null) {
-                    Vote vote = voteObject.getMapped();
-                    int valueHashObfuscation = vote.getValueHashObfuscation();
-                    byte[] value = (byte[]) vote.getValue();
-                    int i = 0;
-                    for (byte[] valueHashBase : allValueHashBases) {
-                        byte[] obfuscatedHash = ModelUtility.obfuscateHash(valueHashBase, hashSeed, obfuscationVersion,
-                                valueHashObfuscation, secretConfig);
-                        if (Arrays.equals(obfuscatedHash, value)) {
-                            counts[i]++;
-                        }
-                        i++;
-                    }
+            evaluator = (key, vote) -> {
+                if (!invitationKeyIndex.containsKey(key)) {
+                    return -1;
                 }
-                if (progressListener != null) {
-                    progressListener.nextStep();
+                byte[][] obfuscated = obfuscatedValueHashes.computeIfAbsent(vote.getValueHashObfuscation(),
+                        valueHashObfuscation -> {
+                            byte[][] res = new byte[allValueHashBases.length][];
+                            for (int i = 0; i < res.length; i++) {
+                                res[i] = ModelUtility.obfuscateHash(allValueHashBases[i], hashSeed,
+                                        obfuscationVersion, valueHashObfuscation, secretConfig);
+                            }
+                            return res;
+                        });
+                byte[] value = (byte[]) vote.getValue();
+                for (int i = 0; i < obfuscated.length; i++) {
+                    if (Arrays.equals(obfuscated[i], value)) {
+                        return i;
+                    }
                 }
-            }
+                return -1;
+            };
         }
         else {
-            for (String userHash : initialModelState.getMapped().expectAllUserHashes()) {
-                IPLDObject<Vote> voteObject = votes.get(userHash);
-                if (voteObject != null) {
-                    Vote vote = voteObject.getMapped();
-                    int index = subject.getPlainTextValueIndex(vote.getValue());
-                    if (index >= 0) {
-                        counts[index]++;
-                    }
-                }
-            }
+            Set<String> allUserHashes = initialModelState.getMapped().expectAllUserHashes();
+            evaluator = (key, vote) -> allUserHashes.contains(key) ? subject.getPlainTextValueIndex(vote.getValue())
+                    : -1;
+        }
+        if (runningTally == null) {
+            runningTally = new VoteTally();
         }
-        return counts;
+        return runningTally.update(votes, evaluator, progressListener);
     }
 
 }
@@ -25,22 +25,19 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.Queue;
 import java.util.Set;
 
 import org.projectjinxers.config.SecretConfig;
 import org.projectjinxers.controller.IPLDObject;
-import org.projectjinxers.controller.SimpleProgressListener;
 import org.projectjinxers.controller.IPLDObject.ProgressListener;
-import org.projectjinxers.controller.IPLDObject.ProgressTask;
 import org.projectjinxers.controller.IPLDReader.KeyProvider;
 import org.projectjinxers.controller.ValidationException;
 import org.projectjinxers.model.IPLDSerializable;
 
 /**
  * @author ProjectJinxers
- *
+ * 
  */
 public class ModelUtility {
 
@@ -296,6 +293,46 @@ public class ModelUtility {
         return res;
     }
 
+    /**
+     * Calculates the version, the skip link of a state with the given version points to (or the latest existing
+     * version before that, if versions have been skipped). The skip versions are distributed in a way, that any
+     * ancestor can be reached in a logarithmic number of steps, if the steps alternate between skip links and previous
+     * versions.
+     * 
+     * @param version the version of the state
+     * @return the skip version (0 for versions less than 2)
+     */
+    public static long getSkipVersion(long version) {
+        if (version < 2) {
+            return 0;
+        }
+        return (version & 1) == 0 ? clearLowestOneBit(version)
+                : clearLowestOneBit(clearLowestOneBit(version - 1)) + 1;
+    }
+
+    /**
+     * Checks, whether a state with the given version should follow its skip link (instead of its previous version) for
+     * reaching an ancestor with the given target version.
+     * 
+     * @param version       the version of the state
+     * @param targetVersion the target version
+     * @return true iff the skip link should be followed
+     */
+    public static boolean isSkipLinkPreferred(long version, long targetVersion) {
+        long skipVersion = getSkipVersion(version);
+        if (skipVersion == targetVersion) {
+            return true;
+        }
+        // don't follow the skip link, if the previous version's skip link gets closer without overshooting
+        long previousSkipVersion = getSkipVersion(version - 1);
+        return skipVersion > targetVersion
+                && !(previousSkipVersion < skipVersion - 2 && previousSkipVersion >= targetVersion);
+    }
+
+    private static long clearLowestOneBit(long value) {
+        return value & (value - 1);
+    }
+
     public static <T extends IPLDSerializable> Collection<IPLDObject<T>> dequeue(
             Map<String, Queue<IPLDObject<T>>> queues, Map<String, Map<String, IPLDObject<T>>> into,
             KeyProvider<T> keyProvider, Map<String, Collection<ProgressListener>> userHashes, boolean collect) {
@@ -402,7 +439,7 @@ public class ModelUtility {
             Collection<ProgressListener> progressListeners) {
         Map<String, IPLDObject<T>> res = dest;
         if (res == null) {
-            res = new LinkedHashMap<>();
+            res = new PersistentLinkedMap<>();
         }
         Iterator<Entry<String, IPLDObject<T>>> it = source.entrySet().iterator();
         while (it.hasNext()) {
@@ -460,7 +497,7 @@ public class ModelUtility {
             Map<String, IPLDObject<T>> dest, boolean abortIfCanceled) {
         Map<String, IPLDObject<T>> res = dest;
         if (res == null) {
-            res = new LinkedHashMap<>();
+            res = new PersistentLinkedMap<>();
         }
         synchronized (res) {
             Iterator<Entry<String, IPLDObject<T>>> it = source.entrySet().iterator();
@@ -522,53 +559,15 @@ public class ModelUtility {
 
     public static <T extends IPLDSerializable> void loadObject(IPLDObject<T> object,
             CompletionHandler completionHandler) {
-        new Thread(() -> {
-            if (object.isMapped()) {
-                completionHandler.completed(1);
-            }
-            else {
-                object.setProgressListener(new SimpleProgressListener() {
-                    @Override
-                    protected void finishedTask(ProgressTask task, boolean success) {
-                        object.removeProgressListener(this);
-                        completionHandler.completed(success ? 1 : 0);
-                    }
-                });
-                object.getMapped();
-            }
-        }).start();
+        object.getMappedAsync().handle((mapped, e) -> {
+            completionHandler.completed(mapped == null ? 0 : 1);
+            return null;
+        });
     }
 
     public static /* <T extends IPLDSerializable> */ void loadObjects(
             Collection<IPLDObject<? extends IPLDSerializable>> objects, CompletionHandler completionHandler) {
-        new Thread(() -> {
-            int totalAttempts = objects.size();
-            AtomicInteger finishCounter = new AtomicInteger();
-            AtomicInteger successCounter = new AtomicInteger();
-            for (IPLDObject<?> object : objects) {
-                if (object.isMapped()) {
-                    int successCount = successCounter.incrementAndGet();
-                    if (finishCounter.incrementAndGet() == totalAttempts) {
-                        completionHandler.completed(successCount);
-                    }
-                }
-                else {
-                    object.setProgressListener(new SimpleProgressListener() {
-                        @Override
-                        protected void finishedTask(ProgressTask task, boolean success) {
-                            object.removeProgressListener(this);
-                            if (success) {
-                                successCounter.incrementAndGet();
-                            }
-                            if (finishCounter.incrementAndGet() == totalAttempts) {
-                                completionHandler.completed(successCounter.get());
-                            }
-                        }
-                    });
-                    object.getMapped();
-                }
-            }
-        }).start();
+        IPLDObject.loadAll(objects).thenAccept(completionHandler::completed);
     }
 
 }
@@ -0,0 +1,432 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Insertion-ordered map, that shares its structure with the map it has been copied from. Copying another
+ * PersistentLinkedMap takes constant time, modifications only copy the O(log n) nodes on the path to the changed entry.
+ * Nodes, that are exclusively owned by a map, are modified in place, so filling a new map is as cheap as filling a
+ * LinkedHashMap. The keys are indexed in a hash array mapped trie, the entries are kept in a persistent vector in
+ * insertion order. Removed entries leave gaps, which are compacted once they outnumber the entries.
+ * <p>
+ * Like LinkedHashMap, this class is not thread-safe. Additionally, a map must not be modified while it is being copied.
+ * The entries are immutable.
+ * 
+ * @author ProjectJinxers
+ */
+public class PersistentLinkedMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final Object[] EMPTY_SLOTS = new Object[0];
+
+    private static class IndexNode {
+
+        private Object edit;
+        private int bitmap;
+        private Object[] slots; // child nodes or key chains
+
+        IndexNode(Object edit, int bitmap, Object[] slots) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+    }
+
+    private static class KeyEntry {
+
+        private final int hash;
+        private final Object key;
+        private final int position;
+        private final KeyEntry next; // for keys with equal hashes
+
+        KeyEntry(int hash, Object key, int position, KeyEntry next) {
+            this.hash = hash;
+            this.key = key;
+            this.position = position;
+            this.next = next;
+        }
+
+    }
+
+    private static class VectorNode {
+
+        private final Object edit;
+        private final Object[] array;
+
+        VectorNode(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+
+    }
+
+    private static int hash(Object key) {
+        int hash = Objects.hashCode(key);
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static KeyEntry removeFromChain(KeyEntry chain, Object key) {
+        if (Objects.equals(chain.key, key)) {
+            return chain.next;
+        }
+        return new KeyEntry(chain.hash, chain.key, chain.position, removeFromChain(chain.next, key));
+    }
+
+    // nodes tagged with this token belong to this map exclusively
+    private Object edit = new Object();
+
+    private IndexNode root;
+    private VectorNode vectorRoot;
+    private int vectorShift;
+    private int length; // number of used positions (including gaps)
+    private int size;
+
+    private Set<Entry<K, V>> entrySet;
+
+    public PersistentLinkedMap() {
+
+    }
+
+    /**
+     * Constructor. If the given map is a PersistentLinkedMap, its structure is shared (in constant time).
+     * 
+     * @param map the map to copy
+     */
+    public PersistentLinkedMap(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentLinkedMap) {
+            @SuppressWarnings("unchecked")
+            PersistentLinkedMap<K, V> other = (PersistentLinkedMap<K, V>) map;
+            // the nodes are shared now, so the other map must copy them, too, before modifying them
+            other.edit = new Object();
+            this.root = other.root;
+            this.vectorRoot = other.vectorRoot;
+            this.vectorShift = other.vectorShift;
+            this.length = other.length;
+            this.size = other.size;
+        }
+        else {
+            putAll(map);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key, hash(key)) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        KeyEntry found = find(key, hash(key));
+        return found == null ? null : getEntry(found.position).getValue();
+    }
+
+    @Override
+    public V put(K key, V value) {
+        int hash = hash(key);
+        KeyEntry found = find(key, hash);
+        if (found != null) {
+            Entry<K, V> old = getEntry(found.position);
+            vectorRoot = set(vectorRoot, vectorShift, found.position, new SimpleImmutableEntry<>(old.getKey(), value));
+            return old.getValue();
+        }
+        if (length > WIDTH && length - size > size) {
+            compact();
+        }
+        int position = length;
+        append(new SimpleImmutableEntry<>(key, value));
+        root = insert(root == null ? new IndexNode(edit, 0, EMPTY_SLOTS) : root, 0, hash, key, position);
+        size++;
+        return null;
+    }
+
+    @Override
+    public V remove(Object key) {
+        int hash = hash(key);
+        KeyEntry found = find(key, hash);
+        if (found == null) {
+            return null;
+        }
+        Entry<K, V> old = getEntry(found.position);
+        root = remove(root, 0, hash, key);
+        vectorRoot = set(vectorRoot, vectorShift, found.position, null);
+        if (--size == 0) {
+            clear();
+        }
+        return old.getValue();
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        vectorRoot = null;
+        vectorShift = 0;
+        length = 0;
+        size = 0;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+
+                @Override
+                public Iterator<Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public void clear() {
+                    PersistentLinkedMap.this.clear();
+                }
+
+            };
+        }
+        return entrySet;
+    }
+
+    private KeyEntry find(Object key, int hash) {
+        IndexNode node = root;
+        int shift = 0;
+        while (node != null) {
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[index(node.bitmap, bit)];
+            if (slot instanceof IndexNode) {
+                node = (IndexNode) slot;
+                shift += BITS;
+            }
+            else {
+                for (KeyEntry entry = (KeyEntry) slot; entry != null; entry = entry.next) {
+                    if (entry.hash == hash && Objects.equals(entry.key, key)) {
+                        return entry;
+                    }
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private IndexNode insert(IndexNode node, int shift, int hash, Object key, int position) {
+        int bit = bit(hash, shift);
+        int index = index(node.bitmap, bit);
+        if ((node.bitmap & bit) == 0) {
+            Object[] slots = new Object[node.slots.length + 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            System.arraycopy(node.slots, index, slots, index + 1, node.slots.length - index);
+            slots[index] = new KeyEntry(hash, key, position, null);
+            return withSlots(node, node.bitmap | bit, slots);
+        }
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof IndexNode) {
+            replacement = insert((IndexNode) slot, shift + BITS, hash, key, position);
+        }
+        else {
+            KeyEntry chain = (KeyEntry) slot;
+            if (chain.hash == hash) {
+                replacement = new KeyEntry(hash, key, position, chain);
+            }
+            else {
+                // the hashes differ in at least one of the remaining bits, so they will be separated eventually
+                int shifted = shift + BITS;
+                IndexNode child = new IndexNode(edit, bit(chain.hash, shifted), new Object[] { chain });
+                replacement = insert(child, shifted, hash, key, position);
+            }
+        }
+        IndexNode res = editable(node);
+        res.slots[index] = replacement;
+        return res;
+    }
+
+    private IndexNode remove(IndexNode node, int shift, int hash, Object key) {
+        int bit = bit(hash, shift);
+        int index = index(node.bitmap, bit);
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof IndexNode) {
+            replacement = remove((IndexNode) slot, shift + BITS, hash, key);
+        }
+        else {
+            replacement = removeFromChain((KeyEntry) slot, key);
+        }
+        if (replacement == null) {
+            if (node.bitmap == bit) {
+                return null;
+            }
+            Object[] slots = new Object[node.slots.length - 1];
+            System.arraycopy(node.slots, 0, slots, 0, index);
+            System.arraycopy(node.slots, index + 1, slots, index, slots.length - index);
+            return withSlots(node, node.bitmap ^ bit, slots);
+        }
+        IndexNode res = editable(node);
+        res.slots[index] = replacement;
+        return res;
+    }
+
+    private IndexNode editable(IndexNode node) {
+        return node.edit == edit ? node : new IndexNode(edit, node.bitmap, node.slots.clone());
+    }
+
+    private IndexNode withSlots(IndexNode node, int bitmap, Object[] slots) {
+        if (node.edit != edit) {
+            return new IndexNode(edit, bitmap, slots);
+        }
+        node.bitmap = bitmap;
+        node.slots = slots;
+        return node;
+    }
+
+    private Object[] getLeaf(int position) {
+        VectorNode node = vectorRoot;
+        for (int level = vectorShift; level > 0; level -= BITS) {
+            node = (VectorNode) node.array[(position >>> level) & MASK];
+        }
+        return node.array;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<K, V> getEntry(int position) {
+        return (Entry<K, V>) getLeaf(position)[position & MASK];
+    }
+
+    private void append(Entry<K, V> entry) {
+        if (vectorRoot == null) {
+            vectorRoot = new VectorNode(edit, new Object[WIDTH]);
+        }
+        else if (length == 1 << (vectorShift + BITS)) {
+            Object[] array = new Object[WIDTH];
+            array[0] = vectorRoot;
+            vectorRoot = new VectorNode(edit, array);
+            vectorShift += BITS;
+        }
+        vectorRoot = set(vectorRoot, vectorShift, length++, entry);
+    }
+
+    private VectorNode set(VectorNode node, int level, int position, Object value) {
+        VectorNode res = node.edit == edit ? node : new VectorNode(edit, node.array.clone());
+        if (level == 0) {
+            res.array[position & MASK] = value;
+        }
+        else {
+            int index = (position >>> level) & MASK;
+            VectorNode child = (VectorNode) res.array[index];
+            res.array[index] = set(child == null ? new VectorNode(edit, new Object[WIDTH]) : child, level - BITS,
+                    position, value);
+        }
+        return res;
+    }
+
+    private void compact() {
+        Object[] entries = new Object[size];
+        int i = 0;
+        for (Entry<K, V> entry : entrySet()) {
+            entries[i++] = entry;
+        }
+        clear();
+        for (Object entry : entries) {
+            @SuppressWarnings("unchecked")
+            Entry<K, V> e = (Entry<K, V>) entry;
+            int position = length;
+            append(e);
+            root = insert(root == null ? new IndexNode(edit, 0, EMPTY_SLOTS) : root, 0, hash(e.getKey()), e.getKey(),
+                    position);
+            size++;
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<K, V>> {
+
+        private int position;
+        private Object[] leaf;
+        private Entry<K, V> current;
+        private Entry<K, V> last;
+
+        EntryIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current != null;
+        }
+
+        @Override
+        public Entry<K, V> next() {
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            last = current;
+            advance();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            // removing leaves a gap, so the positions of the remaining entries don't change
+            PersistentLinkedMap.this.remove(last.getKey());
+            last = null;
+            leaf = null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            current = null;
+            while (current == null && position < length) {
+                if (leaf == null || (position & MASK) == 0) {
+                    leaf = getLeaf(position);
+                }
+                current = (Entry<K, V>) leaf[position & MASK];
+                position++;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.util;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Insertion-ordered set, backed by a {@link PersistentLinkedMap}. Copying another PersistentLinkedSet takes constant
+ * time. Like LinkedHashSet, this class is not thread-safe.
+ * 
+ * @author ProjectJinxers
+ */
+public class PersistentLinkedSet<E> extends AbstractSet<E> {
+
+    private final PersistentLinkedMap<E, Boolean> map;
+
+    public PersistentLinkedSet() {
+        this.map = new PersistentLinkedMap<>();
+    }
+
+    /**
+     * Constructor. If the given collection is a PersistentLinkedSet, its structure is shared (in constant time).
+     * 
+     * @param collection the collection to copy
+     */
+    public PersistentLinkedSet(Collection<? extends E> collection) {
+        if (collection instanceof PersistentLinkedSet) {
+            @SuppressWarnings("unchecked")
+            PersistentLinkedSet<E> other = (PersistentLinkedSet<E>) collection;
+            this.map = new PersistentLinkedMap<>(other.map);
+        }
+        else {
+            this.map = new PersistentLinkedMap<>();
+            addAll(collection);
+        }
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        return map.put(e, Boolean.TRUE) == null;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return map.remove(o) != null;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return map.keySet().iterator();
+    }
+
+}
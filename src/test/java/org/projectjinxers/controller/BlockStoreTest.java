@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author ProjectJinxers
+ *
+ */
+class BlockStoreTest {
+
+    private static final byte[] BLOCK_1 = { 1, 2 };
+    private static final byte[] BLOCK_2 = { 3, 4 };
+    private static final byte[] BLOCK_3 = { 5, 6 };
+
+    @TempDir
+    File directory;
+
+    @Test
+    void testReadThroughRestart() throws IOException {
+        BlockStore store = new BlockStore(directory, 0);
+        assertTrue(store.put(cid(BLOCK_1), BLOCK_1));
+        BlockStore restarted = new BlockStore(directory, 0);
+        assertArrayEquals(BLOCK_1, restarted.get(cid(BLOCK_1)));
+        assertEquals(2, restarted.getTotalSize());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() throws IOException {
+        BlockStore store = new BlockStore(directory, 4);
+        store.put(cid(BLOCK_1), BLOCK_1);
+        store.put(cid(BLOCK_2), BLOCK_2);
+        store.get(cid(BLOCK_1));
+        store.put(cid(BLOCK_3), BLOCK_3);
+        assertNull(store.get(cid(BLOCK_2)));
+        assertArrayEquals(BLOCK_1, store.get(cid(BLOCK_1)));
+        assertArrayEquals(BLOCK_3, store.get(cid(BLOCK_3)));
+        assertEquals(4, store.getTotalSize());
+    }
+
+    @Test
+    void testReadsAreRememberedThroughRestart() throws IOException {
+        BlockStore store = new BlockStore(directory, 4);
+        store.put(cid(BLOCK_1), BLOCK_1);
+        store.put(cid(BLOCK_2), BLOCK_2);
+        getFile(BLOCK_1).setLastModified(1000);
+        getFile(BLOCK_2).setLastModified(2000);
+        store.get(cid(BLOCK_1));
+        BlockStore restarted = new BlockStore(directory, 4);
+        restarted.put(cid(BLOCK_3), BLOCK_3);
+        assertNull(restarted.get(cid(BLOCK_2)));
+        assertArrayEquals(BLOCK_1, restarted.get(cid(BLOCK_1)));
+    }
+
+    @Test
+    void testRejectsUnverifiableBlocks() throws IOException {
+        BlockStore store = new BlockStore(directory, 0);
+        assertFalse(store.put(cid(BLOCK_1), BLOCK_2));
+        assertFalse(store.put("abc", BLOCK_1));
+        assertNull(store.get(cid(BLOCK_1)));
+        assertEquals(0, store.getTotalSize());
+    }
+
+    @Test
+    void testDeletesCorruptedBlocks() throws IOException {
+        BlockStore store = new BlockStore(directory, 0);
+        store.put(cid(BLOCK_1), BLOCK_1);
+        Files.write(getFile(BLOCK_1).toPath(), BLOCK_2);
+        assertNull(store.get(cid(BLOCK_1)));
+        assertFalse(getFile(BLOCK_1).exists());
+        assertEquals(0, store.getTotalSize());
+    }
+
+    private File getFile(byte[] block) {
+        String multihash = cid(block);
+        return new File(new File(directory, multihash.substring(multihash.length() - 2)), multihash);
+    }
+
+    private static String cid(byte[] block) {
+        return CidCalculator.calculate(IPLDEncoding.DAG_CBOR, block);
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author ProjectJinxers
+ *
+ */
+class EventLoopTest {
+
+    @Test
+    void testSupersedesWaitingTasksWithSameKey() throws Exception {
+        EventLoop loop = new EventLoop("test", 10);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        loop.post(null, () -> {
+            blocked.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        blocked.await();
+        assertTrue(loop.post("peer1", () -> handled.add("a1")));
+        assertTrue(loop.post("peer2", () -> handled.add("b1")));
+        assertTrue(loop.post("peer1", () -> handled.add("a2")));
+        assertEquals(2, loop.getQueueDepth());
+        release.countDown();
+        // called tasks run after the posted ones
+        assertEquals(Integer.valueOf(2), loop.call(() -> handled.size()));
+        assertEquals(List.of("b1", "a2"), handled);
+        assertEquals(1, loop.getSupersededCount());
+        assertEquals(0, loop.getQueueDepth());
+    }
+
+    @Test
+    void testRejectsPostedTasksIfFull() throws Exception {
+        EventLoop loop = new EventLoop("test", 1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        loop.post(null, () -> {
+            blocked.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        blocked.await();
+        assertTrue(loop.post(null, () -> {
+        }));
+        assertFalse(loop.post(null, () -> {
+        }));
+        assertEquals(1, loop.getRejectedCount());
+        assertEquals(1, loop.getQueueDepth());
+        assertEquals(1, loop.getMaxQueueDepth());
+        release.countDown();
+        assertEquals("done", loop.call(() -> "done"));
+        assertEquals(0, loop.getQueueDepth());
+    }
+
+    @Test
+    void testShutdownAfterCurrentTask() throws Exception {
+        EventLoop loop = new EventLoop("test", 10);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        Thread[] loopThread = new Thread[1];
+        loop.post(null, () -> {
+            loopThread[0] = Thread.currentThread();
+            blocked.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.add("current");
+        });
+        blocked.await();
+        assertTrue(loop.post(null, () -> handled.add("waiting")));
+        Thread caller = new Thread(() -> {
+            try {
+                loop.call(() -> handled.add("called"));
+            }
+            catch (CancellationException e) {
+                handled.add("canceled");
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        caller.start();
+        while (loop.getQueueDepth() < 2) {
+            Thread.sleep(1);
+        }
+        loop.shutdown();
+        caller.join(5000);
+        release.countDown();
+        loopThread[0].join(5000);
+        assertFalse(loopThread[0].isAlive());
+        assertEquals(List.of("canceled", "current"), handled);
+        assertFalse(loop.post(null, () -> handled.add("late")));
+        assertThrows(RejectedExecutionException.class, () -> loop.call(() -> "late"));
+        assertEquals(0, loop.getQueueDepth());
+    }
+
+}
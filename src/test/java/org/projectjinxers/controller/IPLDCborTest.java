@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.projectjinxers.account.ECCSigner;
+import org.projectjinxers.account.Signer;
+import org.projectjinxers.account.Users;
+import org.projectjinxers.controller.IPLDObject.ProgressListener;
+import org.projectjinxers.model.IPLDSerializable;
+import org.projectjinxers.model.Loader;
+import org.projectjinxers.model.Metadata;
+
+/**
+ * Test class for the DAG-CBOR codec ({@link IPLDCborWriter} and {@link IPLDCborReader}) and the signatures of objects,
+ * that are stored in DAG-CBOR.
+ * 
+ * @author ProjectJinxers
+ */
+class IPLDCborTest {
+
+    static class CborData implements IPLDSerializable, Loader<CborData> {
+
+        private int number;
+        private double decimal;
+        private String text;
+        private Boolean flag;
+        private String link;
+        private String[] strings;
+        private int[] ints;
+        private byte[] bytes;
+        private boolean sign;
+
+        @Override
+        public void read(IPLDReader reader, IPLDContext context, ValidationContext validationContext, boolean eager,
+                Metadata metadata) {
+            number = reader.readNumber("number").intValue();
+            decimal = reader.readNumber("decimal").doubleValue();
+            text = reader.readString("text");
+            flag = reader.readBoolean("flag");
+            link = reader.readLink("link");
+            strings = reader.readStringArray("strings");
+            ints = reader.readIntArray("ints");
+            bytes = reader.readByteArray("bytes", ByteCodec.DEFAULT);
+        }
+
+        @Override
+        public void write(IPLDWriter writer, Signer signer, IPLDContext context, ProgressListener progressListener)
+                throws IOException {
+            writer.writeNumber("number", number);
+            writer.writeNumber("decimal", decimal);
+            writer.writeString("text", text);
+            writer.writeBoolean("flag", flag);
+            writer.writeLink("link", link);
+            writer.writeStringArray("strings", strings);
+            writer.writeIntArray("ints", ints);
+            writer.writeByteArray("bytes", bytes, ByteCodec.DEFAULT);
+        }
+
+        @Override
+        public boolean isSignatureMandatory() {
+            return sign;
+        }
+
+        @Override
+        public CborData getOrCreateDataInstance(IPLDReader reader, Metadata metadata) {
+            return this;
+        }
+
+        @Override
+        public CborData getLoaded() {
+            return this;
+        }
+
+    }
+
+    static class HelloData implements IPLDSerializable {
+
+        private String hello;
+
+        @Override
+        public void read(IPLDReader reader, IPLDContext context, ValidationContext validationContext, boolean eager,
+                Metadata metadata) {
+
+        }
+
+        @Override
+        public void write(IPLDWriter writer, Signer signer, IPLDContext context, ProgressListener progressListener)
+                throws IOException {
+            writer.writeString("hello", hello);
+        }
+
+    }
+
+    private IPLDContext context;
+    private ECCSigner signer;
+
+    @BeforeEach
+    void setup() {
+        context = new IPLDContext(null, IPLDEncoding.DAG_CBOR, IPLDEncoding.DAG_CBOR, false);
+        signer = new ECCSigner("user", "pass");
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        CborData data = createData();
+        byte[] bytes = IPLDEncoding.DAG_CBOR.createWriter().write(context, new IPLDObject<>(data), null, null);
+        CborData read = new CborData();
+        Metadata metadata = IPLDEncoding.DAG_CBOR.createReader().read(context, null, bytes, read, false);
+        assertNull(metadata.getSignature());
+        assertEquals(data.number, read.number);
+        assertEquals(data.decimal, read.decimal);
+        assertEquals(data.text, read.text);
+        assertEquals(data.flag, read.flag);
+        assertEquals(data.link, read.link);
+        assertArrayEquals(data.strings, read.strings);
+        assertArrayEquals(data.ints, read.ints);
+        assertArrayEquals(data.bytes, read.bytes);
+        // canonical encoding: writing the read object results in the same block
+        assertArrayEquals(bytes,
+                IPLDEncoding.DAG_CBOR.createWriter().write(context, new IPLDObject<>(read), null, null));
+    }
+
+    @Test
+    void testSignedRoundTrip() throws IOException {
+        CborData data = createData();
+        data.sign = true;
+        IPLDObject<CborData> object = new IPLDObject<>(data);
+        byte[] bytes = IPLDEncoding.DAG_CBOR.createWriter().write(context, object, signer, null);
+        CborData read = new CborData();
+        Metadata metadata = IPLDEncoding.DAG_CBOR.createReader().read(context, null, bytes, read, false);
+        assertEquals(object.getMetadata().getSignature(), metadata.getSignature());
+    }
+
+    @Test
+    void testCidMatchesDagPut() throws IOException {
+        IPLDWriter writer = IPLDEncoding.DAG_CBOR.createWriter();
+        // ipfs dag put <<< '{}' returns bafyreigbtj4x7ip5legnfznufuopl4sg4knzc2cof6duas4b3q2fy6swua
+        assertEquals("zdpuAyTBnYSugBZhqJuLsNpzjmAjSmxDqBbtAqXMtsvxiN2v3",
+                CidCalculator.calculate(IPLDEncoding.DAG_CBOR, writer.hashBase(context, new HelloData())));
+        // ipfs dag put <<< '{"hello":"world"}' returns bafyreidykglsfhoixmivffc5uwhcgshx4j465xwqntbmu43nb2dzqwfvae
+        HelloData hello = new HelloData();
+        hello.hello = "world";
+        assertEquals("zdpuAtX7ZibcWdSKQwiDCkPjWwRvtcKCPku9H7LhgA4qJW4Wk",
+                CidCalculator.calculate(IPLDEncoding.DAG_CBOR, writer.hashBase(context, hello)));
+    }
+
+    @Test
+    void testDagCborSignatureVerifiedByCborNode() throws IOException {
+        CborData data = createData();
+        data.sign = true;
+        IPLDObject<CborData> object = new IPLDObject<>(data);
+        byte[] bytes = IPLDEncoding.DAG_CBOR.createWriter().write(context, object, signer, null);
+        IPLDContext cborContext = new IPLDContext(null, IPLDEncoding.JSON, IPLDEncoding.CBOR, false);
+        cborContext.verifySignature(new TestIPLDObject<>(data, object.getMetadata().getSignature()), signer,
+                getPublicKey());
+
+        CborData read = new CborData();
+        Metadata metadata = IPLDEncoding.DAG_CBOR.createReader().read(context, null, bytes, read, false);
+        context.verifySignature(new TestIPLDObject<>(read, metadata.getSignature()), signer, getPublicKey());
+    }
+
+    @Test
+    void testCborSignatureVerifiedByDagCborNode() throws IOException {
+        CborData data = createData();
+        data.sign = true;
+        IPLDObject<CborData> object = new IPLDObject<>(data);
+        IPLDEncoding.CBOR.createWriter().write(context, object, signer, null);
+        assertNotNull(object.getMetadata().getSignature());
+        context.verifySignature(new TestIPLDObject<>(data, object.getMetadata().getSignature()), signer,
+                getPublicKey());
+
+        data.number++;
+        assertThrows(ValidationException.class, () -> context
+                .verifySignature(new TestIPLDObject<>(data, object.getMetadata().getSignature()), signer,
+                        getPublicKey()));
+    }
+
+    private CborData createData() {
+        CborData res = new CborData();
+        res.number = -42;
+        res.decimal = 1.5;
+        res.text = "text";
+        res.flag = Boolean.TRUE;
+        res.link = CidCalculator.calculate(IPLDEncoding.DAG_CBOR, new byte[] { (byte) 0xa0 });
+        res.strings = new String[] { "b", "a" };
+        res.ints = new int[] { 1, 24, 256, 70000 };
+        res.bytes = new byte[] { 0, 1, 2 };
+        return res;
+    }
+
+    private static byte[] getPublicKey() {
+        return Users.createAccount("user", "pass", 0).getPubKey();
+    }
+
+}
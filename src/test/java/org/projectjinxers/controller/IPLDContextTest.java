@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.projectjinxers.account.Signer;
+import org.projectjinxers.controller.IPLDObject.ProgressListener;
+import org.projectjinxers.model.IPLDSerializable;
+import org.projectjinxers.model.Metadata;
+
+/**
+ * Tests for saving objects with uploads in the background.
+ * 
+ * @author ProjectJinxers
+ */
+class IPLDContextTest {
+
+    static class LinkedData implements IPLDSerializable {
+
+        private int value;
+        private IPLDObject<LinkedData> link;
+
+        LinkedData(int value, IPLDObject<LinkedData> link) {
+            this.value = value;
+            this.link = link;
+        }
+
+        @Override
+        public void read(IPLDReader reader, IPLDContext context, ValidationContext validationContext, boolean eager,
+                Metadata metadata) {
+
+        }
+
+        @Override
+        public void write(IPLDWriter writer, Signer signer, IPLDContext context, ProgressListener progressListener)
+                throws IOException {
+            writer.writeNumber("value", value);
+            writer.writeLink("link", link, signer, context, progressListener);
+        }
+
+    }
+
+    static class UploadingIPFSAccess extends IPFSAccess {
+
+        private final Set<String> uploaded = ConcurrentHashMap.newKeySet();
+        private final Set<String> failing = ConcurrentHashMap.newKeySet();
+        private final Set<String> blocked = ConcurrentHashMap.newKeySet();
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public String saveObject(String inputFormat, byte[] bytes, String outputFormat) throws IOException {
+            String res = CidCalculator.calculate(IPLDEncoding.DAG_CBOR, bytes);
+            if (blocked.contains(res)) {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (failing.contains(res)) {
+                throw new IOException("Simulated save failure");
+            }
+            uploaded.add(res);
+            return res;
+        }
+
+    }
+
+    private UploadingIPFSAccess access;
+    private IPLDContext context;
+    private ExecutorService saveExecutor;
+
+    @BeforeEach
+    void setup() {
+        access = new UploadingIPFSAccess();
+        context = new IPLDContext(access, IPLDEncoding.DAG_CBOR, IPLDEncoding.DAG_CBOR, false);
+        saveExecutor = Executors.newFixedThreadPool(4);
+        context.setSaveExecutor(saveExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        saveExecutor.shutdownNow();
+    }
+
+    @Test
+    void testSaveCachesConfirmedUploads() throws IOException {
+        IPLDObject<LinkedData> link = new IPLDObject<>(new LinkedData(1, null));
+        IPLDObject<LinkedData> root = new IPLDObject<>(new LinkedData(2, link));
+        String multihash = root.save(context, null, null);
+        assertEquals(multihash, root.getMultihash());
+        assertNotNull(link.getMultihash());
+        assertTrue(access.uploaded.contains(multihash));
+        assertTrue(access.uploaded.contains(link.getMultihash()));
+        assertNotNull(context.getCache().get(multihash));
+        assertNotNull(context.getCache().get(link.getMultihash()));
+    }
+
+    @Test
+    void testFailedUploadResetsMultihashes() throws IOException {
+        LinkedData linkData = new LinkedData(1, null);
+        String linkHash = calculateMultihash(linkData);
+        access.failing.add(linkHash);
+        IPLDObject<LinkedData> link = new IPLDObject<>(linkData);
+        IPLDObject<LinkedData> root = new IPLDObject<>(new LinkedData(2, link));
+        assertThrows(IOException.class, () -> root.save(context, null, null));
+        assertNull(root.getMultihash());
+        assertNull(link.getMultihash());
+        assertNull(context.getCache().get(linkHash));
+        assertFalse(access.uploaded.isEmpty());
+        for (String uploaded : access.uploaded) {
+            assertNull(context.getCache().get(uploaded));
+        }
+
+        access.failing.clear();
+        String multihash = root.save(context, null, null);
+        assertEquals(linkHash, link.getMultihash());
+        assertNotNull(context.getCache().get(multihash));
+        assertNotNull(context.getCache().get(linkHash));
+    }
+
+    @Test
+    void testConcurrentSavesAwaitOwnUploads() throws Exception {
+        LinkedData blockedData = new LinkedData(1, null);
+        String blockedHash = calculateMultihash(blockedData);
+        access.blocked.add(blockedHash);
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try {
+            IPLDObject<LinkedData> blocked = new IPLDObject<>(blockedData);
+            Future<String> blockedSave = other.submit(() -> blocked.save(context, null, null));
+            IPLDObject<LinkedData> object = new IPLDObject<>(new LinkedData(2, null));
+            String multihash = object.save(context, null, null);
+            assertTrue(access.uploaded.contains(multihash));
+            assertFalse(blockedSave.isDone());
+            assertNull(context.getCache().get(blockedHash));
+            access.release.countDown();
+            assertEquals(blockedHash, blockedSave.get(10, TimeUnit.SECONDS));
+            assertNotNull(context.getCache().get(blockedHash));
+        }
+        finally {
+            access.release.countDown();
+            other.shutdownNow();
+        }
+    }
+
+    private String calculateMultihash(LinkedData data) throws IOException {
+        return CidCalculator.calculate(IPLDEncoding.DAG_CBOR,
+                context.serializeObject(new IPLDObject<>(data), null, null));
+    }
+
+}
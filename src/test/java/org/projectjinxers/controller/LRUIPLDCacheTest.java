@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.projectjinxers.model.Document;
+
+/**
+ * @author ProjectJinxers
+ *
+ */
+class LRUIPLDCacheTest {
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        LRUIPLDCache cache = new LRUIPLDCache(2, 0);
+        cache.put("a", new TestIPLDObject<Document>("a"));
+        cache.put("b", new TestIPLDObject<Document>("b"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", new TestIPLDObject<Document>("c"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void testPinnedObjectsAreNotEvicted() {
+        LRUIPLDCache cache = new LRUIPLDCache(1, 0);
+        cache.put("a", new TestIPLDObject<Document>("a"));
+        cache.pin(Arrays.asList("a"));
+        cache.put("b", new TestIPLDObject<Document>("b"));
+        cache.put("c", new TestIPLDObject<Document>("c"));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        cache.pin(null);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testEvictsInBatches() {
+        LRUIPLDCache cache = new LRUIPLDCache(2);
+        int limit = 2 + LRUIPLDCache.MIN_SLACK;
+        for (int i = 0; i < limit; i++) {
+            cache.put(String.valueOf(i), new TestIPLDObject<Document>(String.valueOf(i)));
+        }
+        assertEquals(limit, cache.size());
+        assertNotNull(cache.get("0"));
+        cache.put("new", new TestIPLDObject<Document>("new"));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("0"));
+        assertNotNull(cache.get("new"));
+        assertEquals(limit - 1, cache.getEvictionCount());
+    }
+
+}
@@ -144,6 +144,54 @@ class ModelControllerTest {
         assertEquals("Title", doc.getTitle());
     }
 
+    @Test
+    void testSaveDocumentsInCommitWindow() throws Exception {
+        String[] hashes = access.readObjects("model/modelController/saveDocument/simple.json");
+        final String userHash = hashes[0];
+        Config config = new Config("config-commit-window.yml");
+        ModelController controller = ModelController.getModelController(access, config);
+        waitUntilInitialized(controller);
+        IPLDObject<UserState> userState = controller.getCurrentValidatedState().getMapped().getUserState(userHash);
+        IPLDObject<Document> first = new IPLDObject<>(
+                new Document("First", null, null, null, null, null, userState));
+        controller.saveDocument(first, DEFAULT_SIGNER);
+        assertNull(access.waitForPublishedMessage(config.getIOTAAddress(), 100));
+        IPLDObject<Document> second = new IPLDObject<>(
+                new Document("Second", null, null, null, null, null, userState));
+        // reaching the maximum number of changes commits them before the commit window has elapsed
+        controller.saveDocument(second, DEFAULT_SIGNER);
+        String newHash = access.waitForPublishedMessage(config.getIOTAAddress(), 100);
+        assertNotNull(newHash);
+        IPLDObject<ModelState> nextModelState = new IPLDObject<>(newHash, new ModelState(), controller.getContext(),
+                null);
+        UserState nextUserState = nextModelState.getMapped().getUserState(userHash).getMapped();
+        assertEquals("First", nextUserState.expectDocument(first.getMultihash()).getTitle());
+        assertEquals("Second", nextUserState.expectDocument(second.getMultihash()).getTitle());
+        // the scheduled commit has been canceled
+        assertNull(access.waitForPublishedMessage(config.getIOTAAddress(), 500));
+    }
+
+    @Test
+    void testSaveDocumentAfterCommitWindow() throws Exception {
+        String[] hashes = access.readObjects("model/modelController/saveDocument/simple.json");
+        final String userHash = hashes[0];
+        Config config = new Config("config-commit-window.yml");
+        ModelController controller = ModelController.getModelController(access, config);
+        waitUntilInitialized(controller);
+        IPLDObject<UserState> userState = controller.getCurrentValidatedState().getMapped().getUserState(userHash);
+        IPLDObject<Document> documentObject = new IPLDObject<>(
+                new Document("Title", null, null, null, null, null, userState));
+        controller.saveDocument(documentObject, DEFAULT_SIGNER);
+        assertNull(access.waitForPublishedMessage(config.getIOTAAddress(), 100));
+        String newHash = access.waitForPublishedMessage(config.getIOTAAddress(), 500);
+        assertNotNull(newHash);
+        IPLDObject<ModelState> nextModelState = new IPLDObject<>(newHash, new ModelState(), controller.getContext(),
+                null);
+        Document doc = nextModelState.getMapped().getUserState(userHash).getMapped()
+                .expectDocument(documentObject.getMultihash());
+        assertEquals("Title", doc.getTitle());
+    }
+
     @Test
     void testSaveDocumentDeferredBySaveFailure() throws Exception {
         String[] hashes = access.readObjects("model/modelController/saveDocument/simple.json");
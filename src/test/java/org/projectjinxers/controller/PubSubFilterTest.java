@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author ProjectJinxers
+ *
+ */
+class PubSubFilterTest {
+
+    @Test
+    void testIgnoresSeenHashesUntilExpired() {
+        PubSubFilter filter = new PubSubFilter(10, 1000, 100, 100, 1);
+        assertTrue(filter.accept("peer", "a", 0));
+        filter.validated("a", 0);
+        filter.rejected("b", 0);
+        assertFalse(filter.accept("peer", "a", 500));
+        assertFalse(filter.accept("other", "b", 50));
+        assertTrue(filter.accept("other", "b", 100));
+        assertTrue(filter.accept("peer", "a", 1000));
+        assertEquals(2, filter.getIgnoredCount());
+    }
+
+    @Test
+    void testThrottlesPeers() {
+        PubSubFilter filter = new PubSubFilter(10, 1000, 1000, 2, 1);
+        assertTrue(filter.accept("peer", "a", 0));
+        assertTrue(filter.accept("peer", "b", 0));
+        assertFalse(filter.accept("peer", "c", 500));
+        assertTrue(filter.accept("other", "c", 500));
+        assertTrue(filter.accept("peer", "c", 1000));
+        assertFalse(filter.accept("peer", "d", 1000));
+        assertEquals(2, filter.getThrottledCount());
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author ProjectJinxers
+ *
+ */
+class VerifiedSignatureCacheTest {
+
+    @Test
+    void testKeyedByMultihashAndPublicKey() {
+        VerifiedSignatureCache cache = new VerifiedSignatureCache(2);
+        byte[] publicKey = { 1, 2, 3 };
+        cache.add("a", publicKey);
+        assertTrue(cache.contains("a", new byte[] { 1, 2, 3 }));
+        assertFalse(cache.contains("a", new byte[] { 1, 2, 4 }));
+        assertFalse(cache.contains("b", publicKey));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        VerifiedSignatureCache cache = new VerifiedSignatureCache(2);
+        byte[] publicKey = { 1 };
+        cache.add("a", publicKey);
+        cache.add("b", publicKey);
+        assertTrue(cache.contains("a", publicKey));
+        cache.add("c", publicKey);
+        assertEquals(2, cache.size());
+        assertFalse(cache.contains("b", publicKey));
+        assertTrue(cache.contains("a", publicKey));
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.projectjinxers.controller.IPLDObject;
+import org.projectjinxers.controller.TestIPLDObject;
+
+/**
+ * @author ProjectJinxers
+ *
+ */
+class DocumentIndexTest {
+
+    private final IPLDObject<UserState> owner = userState("owner");
+    private final IPLDObject<UserState> newOwner = userState("newOwner");
+
+    @Test
+    void testDeriveAddedReview() {
+        IPLDObject<Document> document = document("doc");
+        Map<String, IPLDObject<Document>> documents = map(document);
+        DocumentIndex index = new DocumentIndex(documents);
+
+        IPLDObject<Document> review = review("review", document, true);
+        Map<String, IPLDObject<Document>> updated = map(document, review);
+        DocumentIndex derived = index.derive(updated, Arrays.asList("review"));
+        assertIndex(updated, derived);
+        assertEquals(Arrays.asList(review), new ArrayList<>(derived.getReviews("doc")));
+        assertEquals(Arrays.asList(review), new ArrayList<>(derived.getInvertTruthReviews()));
+        // the base index is unchanged
+        assertTrue(index.getReviews("doc").isEmpty());
+        assertTrue(index.getInvertTruthReviews().isEmpty());
+        assertNull(index.getDocument("review"));
+    }
+
+    @Test
+    void testDeriveChangedVersionChain() {
+        IPLDObject<Document> document = document("doc");
+        IPLDObject<Document> other = document("other");
+        DocumentIndex index = new DocumentIndex(map(document, other));
+
+        IPLDObject<Document> transferred = new TestIPLDObject<>("transferred", new Document(newOwner, document));
+        Map<String, IPLDObject<Document>> updated = new LinkedHashMap<>();
+        updated.put("doc", transferred);
+        updated.put("other", other);
+        DocumentIndex derived = index.derive(updated, Arrays.asList("doc"));
+        assertIndex(updated, derived);
+        assertEquals(Arrays.asList(document, transferred), new ArrayList<>(derived.getVersionChain("doc")));
+        assertSame(transferred, derived.getDocument("transferred"));
+        assertEquals(Arrays.asList(document), new ArrayList<>(index.getVersionChain("doc")));
+        assertNull(index.getDocument("transferred"));
+    }
+
+    @Test
+    void testDeriveRemovedReviews() {
+        IPLDObject<Document> document = document("doc");
+        IPLDObject<Document> review = review("review", document, true);
+        IPLDObject<Document> otherReview = review("otherReview", document, false);
+        DocumentIndex index = new DocumentIndex(map(document, review, otherReview));
+
+        Map<String, IPLDObject<Document>> updated = map(document, otherReview);
+        DocumentIndex derived = index.derive(updated, Arrays.asList("review"));
+        assertIndex(updated, derived);
+        assertEquals(Arrays.asList(otherReview), new ArrayList<>(derived.getReviews("doc")));
+        assertTrue(derived.getInvertTruthReviews().isEmpty());
+        assertNull(derived.getVersionChain("review"));
+        assertEquals(Arrays.asList(review, otherReview), new ArrayList<>(index.getReviews("doc")));
+
+        Map<String, IPLDObject<Document>> withoutReviews = map(document);
+        DocumentIndex derivedAgain = derived.derive(withoutReviews, Arrays.asList("otherReview", "unknown"));
+        assertIndex(withoutReviews, derivedAgain);
+        assertTrue(derivedAgain.getReviews("doc").isEmpty());
+        assertEquals(Arrays.asList(otherReview), new ArrayList<>(derived.getReviews("doc")));
+    }
+
+    /**
+     * Asserts that the derived index contains the same entries as an index, that has been built from scratch.
+     */
+    private void assertIndex(Map<String, IPLDObject<Document>> documents, DocumentIndex derived) {
+        DocumentIndex built = new DocumentIndex(documents);
+        assertEquals(built.getDocuments(), derived.getDocuments());
+        for (String key : documents.keySet()) {
+            assertEquals(list(built.getVersionChain(key)), list(derived.getVersionChain(key)));
+            assertEquals(list(built.getReviews(key)), list(derived.getReviews(key)));
+        }
+        assertEquals(list(built.getInvertTruthReviews()), list(derived.getInvertTruthReviews()));
+    }
+
+    private IPLDObject<UserState> userState(String username) {
+        return new TestIPLDObject<>(username + "State",
+                new UserState(new TestIPLDObject<>(username, new User(username, null))));
+    }
+
+    private IPLDObject<Document> document(String hash) {
+        return new TestIPLDObject<>(hash, new Document(hash, null, null, null, null, null, owner));
+    }
+
+    private IPLDObject<Document> review(String hash, IPLDObject<Document> document, boolean invertTruth) {
+        return new TestIPLDObject<>(hash,
+                new Review(hash, null, null, null, null, null, document, invertTruth, null, owner));
+    }
+
+    @SafeVarargs
+    private static Map<String, IPLDObject<Document>> map(IPLDObject<Document>... documents) {
+        Map<String, IPLDObject<Document>> res = new LinkedHashMap<>();
+        for (IPLDObject<Document> document : documents) {
+            res.put(document.getMultihash(), document);
+        }
+        return res;
+    }
+
+    private static List<IPLDObject<Document>> list(Collection<IPLDObject<Document>> collection) {
+        return collection == null ? null : new ArrayList<>(collection);
+    }
+
+}
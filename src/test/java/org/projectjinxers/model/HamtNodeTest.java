@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+import org.projectjinxers.controller.IPLDContext;
+import org.projectjinxers.controller.IPLDEncoding;
+import org.projectjinxers.controller.IPLDObject;
+import org.projectjinxers.controller.TestIPFSAccess;
+
+/**
+ * @author ProjectJinxers
+ *
+ */
+class HamtNodeTest {
+
+    static class LoadRecordingIPFSAccess extends TestIPFSAccess {
+
+        private final Map<Thread, Integer> loadCounts = new ConcurrentHashMap<>();
+
+        @Override
+        public byte[] loadObject(String hash) throws IOException {
+            loadCounts.merge(Thread.currentThread(), 1, Integer::sum);
+            return super.loadObject(hash);
+        }
+
+    }
+
+    @Test
+    void testInsertAndRemove() {
+        SortedMap<String, String[]> entries = entries(200);
+        IPLDObject<HamtNode> root = HamtNode.build(entries, null);
+        assertEntries(entries, HamtNode.readStringArrays(root));
+
+        entries.put("added", new String[] { "hash", "other" });
+        IPLDObject<HamtNode> added = HamtNode.build(entries, root);
+        assertEntries(entries, HamtNode.readStringArrays(added));
+
+        entries.remove("added");
+        entries.remove("key7");
+        IPLDObject<HamtNode> removed = HamtNode.build(entries, added);
+        Map<String, String[]> read = HamtNode.readStringArrays(removed);
+        assertEntries(entries, read);
+        assertNull(read.get("key7"));
+
+        assertNull(HamtNode.build(new TreeMap<>(), removed));
+    }
+
+    @Test
+    void testReuseReferenceNodes() {
+        SortedMap<String, String[]> entries = entries(500);
+        IPLDObject<HamtNode> root = HamtNode.build(entries, null);
+        assertSame(root, HamtNode.build(entries(500), root));
+
+        entries.put("key42", new String[] { "changed" });
+        IPLDObject<HamtNode> changed = HamtNode.build(entries, root);
+        Set<IPLDObject<HamtNode>> referenceNodes = collectNodes(root);
+        Set<IPLDObject<HamtNode>> newNodes = collectNodes(changed);
+        newNodes.removeAll(referenceNodes);
+        // only the path from the root to the leaf containing the changed entry has been rebuilt
+        assertTrue(newNodes.size() <= HamtNode.MAX_LEVEL + 1, String.valueOf(newNodes.size()));
+        assertTrue(newNodes.contains(changed));
+        assertEquals(referenceNodes.size(), collectNodes(changed).size());
+    }
+
+    @Test
+    void testCollectChangedKeys() {
+        SortedMap<String, String[]> entries = entries(300);
+        IPLDObject<HamtNode> root = HamtNode.build(entries, null);
+        entries.put("added", new String[] { "hash" });
+        entries.put("key1", new String[] { "changed" });
+        entries.remove("key2");
+        IPLDObject<HamtNode> updated = HamtNode.build(entries, root);
+
+        Set<String> keys = new TreeSet<>();
+        HamtNode.collectChangedKeys(updated, root, keys);
+        assertEquals(new TreeSet<>(Arrays.asList("added", "key1")), keys);
+
+        keys.clear();
+        HamtNode.collectChangedKeys(root, updated, keys);
+        assertEquals(new TreeSet<>(Arrays.asList("key1", "key2")), keys);
+
+        keys.clear();
+        HamtNode.collectChangedKeys(updated, updated, keys);
+        assertTrue(keys.isEmpty());
+
+        HamtNode.collectChangedKeys(updated, null, keys);
+        assertEquals(entries.keySet(), keys);
+    }
+
+    @Test
+    void testReadShardsLevelByLevel() throws IOException {
+        SortedMap<String, String[]> entries = entries(1000);
+        LoadRecordingIPFSAccess access = new LoadRecordingIPFSAccess();
+        String hash = new IPLDContext(access, IPLDEncoding.JSON, IPLDEncoding.JSON, false)
+                .saveObject(HamtNode.build(entries, null), null, null);
+
+        IPLDContext context = new IPLDContext(access, IPLDEncoding.JSON, IPLDEncoding.JSON, false);
+        ExecutorService prefetchExecutor = Executors.newFixedThreadPool(4);
+        context.setPrefetchExecutor(prefetchExecutor);
+        try {
+            IPLDObject<HamtNode> root = new IPLDObject<>(hash, LoaderFactory.HAMT_NODE.createLoader(), context, null);
+            assertEntries(entries, HamtNode.readStringArrays(root));
+        }
+        finally {
+            prefetchExecutor.shutdownNow();
+        }
+        // the reading thread only loaded the root, all other shards have been prefetched
+        assertEquals(Integer.valueOf(1), access.loadCounts.remove(Thread.currentThread()));
+        assertTrue(access.loadCounts.values().stream().mapToInt(Integer::intValue).sum() > 1);
+    }
+
+    private static SortedMap<String, String[]> entries(int count) {
+        SortedMap<String, String[]> res = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            res.put("key" + i, new String[] { "hash" + i });
+        }
+        return res;
+    }
+
+    private static void assertEntries(Map<String, String[]> expected, Map<String, String[]> actual) {
+        assertEquals(expected.keySet(), new TreeSet<>(actual.keySet()));
+        for (String key : expected.keySet()) {
+            assertArrayEquals(expected.get(key), actual.get(key), key);
+        }
+    }
+
+    private static Set<IPLDObject<HamtNode>> collectNodes(IPLDObject<HamtNode> root) {
+        Set<IPLDObject<HamtNode>> res = Collections.newSetFromMap(new IdentityHashMap<>());
+        collectNodes(root, res);
+        return res;
+    }
+
+    private static void collectNodes(IPLDObject<HamtNode> node, Set<IPLDObject<HamtNode>> nodes) {
+        nodes.add(node);
+        HamtNode mapped = node.getMapped();
+        for (int slot = 0; slot < 1 << HamtNode.BITS_PER_LEVEL; slot++) {
+            IPLDObject<HamtNode> child = mapped.getChild(slot);
+            if (child != null) {
+                collectNodes(child, nodes);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.projectjinxers.controller.IPLDContext;
+import org.projectjinxers.controller.IPLDEncoding;
+import org.projectjinxers.controller.IPLDObject;
+import org.projectjinxers.controller.TestIPFSAccess;
+import org.projectjinxers.controller.ValidationException;
+import org.projectjinxers.util.ModelUtility;
+
+/**
+ * @author ProjectJinxers
+ *
+ */
+class ModelStateTest {
+
+    private static class LoadRecordingIPFSAccess extends TestIPFSAccess {
+
+        private final Set<String> loaded = new HashSet<>();
+
+        @Override
+        public byte[] loadObject(String hash) throws IOException {
+            loaded.add(hash);
+            return super.loadObject(hash);
+        }
+
+    }
+
+    private LoadRecordingIPFSAccess access;
+    private IPLDContext context;
+
+    // the hashes and versions of the saved states, oldest first
+    private List<String> hashes;
+    private List<Long> versions;
+
+    @BeforeEach
+    void setup() {
+        access = new LoadRecordingIPFSAccess();
+        context = new IPLDContext(access, IPLDEncoding.JSON, IPLDEncoding.JSON, false);
+        hashes = new ArrayList<>();
+        versions = new ArrayList<>();
+    }
+
+    @Test
+    void testGetAncestor() {
+        for (long version = 1; version <= 40; version++) {
+            addState(version);
+        }
+        checkAncestors();
+    }
+
+    @Test
+    void testGetAncestorWithVersionGaps() {
+        for (long version : new long[] { 1, 2, 3, 7, 8, 12, 13, 14, 20, 33, 34, 35, 50, 64, 65 }) {
+            addState(version);
+        }
+        checkAncestors();
+    }
+
+    @Test
+    void testGetAncestorFollowsSkipLinkAcrossVersionGap() {
+        for (long version : new long[] { 1, 2, 3, 4, 5, 9, 10, 11, 12 }) {
+            addState(version);
+        }
+        // the skip link of version 12 points to version 5 (no version between 5 and 8), which is the result
+        IPLDObject<ModelState> ancestor = ModelState.getAncestor(load(hashes.get(8)), 7);
+        assertEquals(hashes.get(4), ancestor.getMultihash());
+        for (int i = 5; i < 8; i++) {
+            assertFalse(access.loaded.contains(hashes.get(i)));
+        }
+    }
+
+    @Test
+    void testValidSkipLinks() {
+        for (long version : new long[] { 1, 2, 3, 5, 6, 7, 8, 9, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24 }) {
+            addState(version);
+        }
+        for (String hash : hashes) {
+            load(hash).getMapped().validateSkipLink();
+        }
+    }
+
+    @Test
+    void testForgedSkipLink() {
+        for (long version = 1; version <= 12; version++) {
+            addState(version);
+        }
+        // the expected skip link target of version 13 has version 1
+        String forged = saveState(13, hashes.get(11), hashes.get(3));
+        assertThrows(ValidationException.class, () -> load(forged).getMapped().validateSkipLink());
+    }
+
+    private void checkAncestors() {
+        IPLDObject<ModelState> head = load(hashes.get(hashes.size() - 1));
+        long headVersion = versions.get(versions.size() - 1);
+        for (long target = 0; target <= headVersion; target++) {
+            IPLDObject<ModelState> ancestor = ModelState.getAncestor(head, target);
+            int index = indexOfAncestor(target);
+            if (index < 0) {
+                assertNull(ancestor);
+            }
+            else {
+                assertEquals(hashes.get(index), ancestor.getMultihash(), "target " + target);
+            }
+        }
+    }
+
+    /**
+     * Saves a state with the given version, that is linked to the previously added state. The skip link is
+     * determined independently of the tested code.
+     * 
+     * @param version the version
+     */
+    private void addState(long version) {
+        int size = hashes.size();
+        String previousHash = size == 0 ? null : hashes.get(size - 1);
+        int skipIndex = indexOfAncestor(ModelUtility.getSkipVersion(version));
+        String skipHash = version >= 2 && skipIndex >= 0 && skipIndex < size - 1 ? hashes.get(skipIndex) : null;
+        hashes.add(saveState(version, previousHash, skipHash));
+        versions.add(version);
+    }
+
+    private int indexOfAncestor(long version) {
+        for (int i = versions.size() - 1; i >= 0; i--) {
+            if (versions.get(i) <= version) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String saveState(long version, String previousHash, String skipHash) {
+        StringBuilder data = new StringBuilder("{\"v\":").append(version).append(",\"t\":0");
+        if (previousHash != null) {
+            data.append(",\"p\":{\"/\":\"").append(previousHash).append("\"}");
+        }
+        if (skipHash != null) {
+            data.append(",\"k\":{\"/\":\"").append(skipHash).append("\"}");
+        }
+        data.append('}');
+        String json = "{\"data\":" + data + ",\"meta\":{\"version\":" + ModelState.META_VERSION_SKIP_LINKS + "}}";
+        return access.saveObject("json", json.getBytes(StandardCharsets.UTF_8), "json");
+    }
+
+    private IPLDObject<ModelState> load(String hash) {
+        return new IPLDObject<>(hash, new ModelState(), context, null);
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.projectjinxers.controller.IPLDObject;
+import org.projectjinxers.controller.TestIPLDObject;
+
+/**
+ * @author ProjectJinxers
+ *
+ */
+class VoteTallyTest {
+
+    private final Map<String, AtomicInteger> evaluations = new ConcurrentHashMap<>();
+    private final Set<Thread> evaluatingThreads = ConcurrentHashMap.newKeySet();
+
+    @Test
+    void testOnlyNewVotesAreEvaluated() {
+        VoteTally tally = new VoteTally();
+        Map<String, IPLDObject<Vote>> votes = votes(3);
+        assertArrayEquals(new int[] { 1, 1, 1 }, tally.update(votes, this::evaluate, null));
+        votes.putAll(votes(5));
+        assertArrayEquals(new int[] { 2, 2, 1 }, tally.update(votes, this::evaluate, null));
+        assertEvaluations(votes.keySet(), 1);
+    }
+
+    @Test
+    void testRecountOnRemovedVote() {
+        VoteTally tally = new VoteTally();
+        Map<String, IPLDObject<Vote>> votes = votes(4);
+        assertArrayEquals(new int[] { 2, 1, 1 }, tally.update(votes, this::evaluate, null));
+        votes.remove("vote0");
+        assertArrayEquals(new int[] { 1, 1, 1 }, tally.update(votes, this::evaluate, null));
+        assertEvaluations(votes.keySet(), 2);
+        assertEquals(1, evaluations.get("vote0").get());
+    }
+
+    @Test
+    void testCopyIsIndependent() {
+        VoteTally tally = new VoteTally();
+        tally.update(votes(2), this::evaluate, null);
+        VoteTally copy = tally.copy();
+        assertArrayEquals(new int[] { 1, 1, 1 }, copy.update(votes(3), this::evaluate, null));
+        assertArrayEquals(new int[] { 1, 1 }, tally.update(votes(2), this::evaluate, null));
+    }
+
+    @Test
+    void testSmallBatchIsEvaluatedSequentially() {
+        VoteTally tally = new VoteTally();
+        Map<String, IPLDObject<Vote>> votes = votes(VoteTally.PARALLEL_THRESHOLD - 1);
+        tally.update(votes, this::evaluate, null);
+        assertEvaluations(votes.keySet(), 1);
+        assertEquals(Collections.singleton(Thread.currentThread()), evaluatingThreads);
+    }
+
+    @Test
+    void testLargeBatchIsEvaluatedConcurrently() {
+        VoteTally tally = new VoteTally();
+        int count = VoteTally.PARALLEL_THRESHOLD;
+        Map<String, IPLDObject<Vote>> votes = votes(count);
+        int[] counts = tally.update(votes, (key, vote) -> {
+            try {
+                Thread.sleep(2);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return evaluate(key, vote);
+        }, null);
+        assertArrayEquals(new int[] { (count + 2) / 3, (count + 1) / 3, count / 3 }, counts);
+        assertEvaluations(votes.keySet(), 1);
+        if (ForkJoinPool.getCommonPoolParallelism() > 1) {
+            assertTrue(evaluatingThreads.size() > 1);
+        }
+    }
+
+    private int evaluate(String key, Vote vote) {
+        evaluations.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        evaluatingThreads.add(Thread.currentThread());
+        return Integer.parseInt(key.substring("vote".length())) % 3;
+    }
+
+    private void assertEvaluations(Set<String> keys, int expected) {
+        for (String key : keys) {
+            assertEquals(expected, evaluations.get(key).get(), key);
+        }
+    }
+
+    private static Map<String, IPLDObject<Vote>> votes(int count) {
+        Map<String, IPLDObject<Vote>> res = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = "vote" + i;
+            res.put(key, new TestIPLDObject<>(key, new YesNoMaybeVote(new byte[0], Boolean.TRUE)));
+        }
+        return res;
+    }
+
+}
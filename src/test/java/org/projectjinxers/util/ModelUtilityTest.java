@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author ProjectJinxers
+ *
+ */
+class ModelUtilityTest {
+
+    @Test
+    void testSkipVersion() {
+        assertEquals(0, ModelUtility.getSkipVersion(0));
+        assertEquals(0, ModelUtility.getSkipVersion(1));
+        assertEquals(0, ModelUtility.getSkipVersion(2));
+        assertEquals(1, ModelUtility.getSkipVersion(3));
+        assertEquals(4, ModelUtility.getSkipVersion(6));
+        assertEquals(8, ModelUtility.getSkipVersion(12));
+        assertEquals(16, ModelUtility.getSkipVersion(24));
+        assertEquals(9, ModelUtility.getSkipVersion(15));
+        for (long version = 2; version < 1000; version++) {
+            assertTrue(ModelUtility.getSkipVersion(version) < version);
+        }
+    }
+
+    @Test
+    void testSkipLinkPreferred() {
+        assertTrue(ModelUtility.isSkipLinkPreferred(12, 8));
+        assertTrue(ModelUtility.isSkipLinkPreferred(12, 2));
+        // the skip link would overshoot
+        assertFalse(ModelUtility.isSkipLinkPreferred(12, 10));
+        assertFalse(ModelUtility.isSkipLinkPreferred(12, 11));
+    }
+
+    @Test
+    void testAllAncestorsReachableInLogarithmicSteps() {
+        for (long version = 1; version <= 300; version++) {
+            for (long target = 0; target <= version; target++) {
+                long walk = version;
+                int steps = 0;
+                while (walk > target) {
+                    walk = ModelUtility.isSkipLinkPreferred(walk, target) ? ModelUtility.getSkipVersion(walk)
+                            : walk - 1;
+                    steps++;
+                }
+                assertEquals(target, walk);
+                assertTrue(steps <= 4 * (64 - Long.numberOfLeadingZeros(version)),
+                        version + " -> " + target + ": " + steps);
+            }
+        }
+    }
+
+}
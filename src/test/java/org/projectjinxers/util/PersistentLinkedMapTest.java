@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2021 ProjectJinxers
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <https://www.gnu.org/licenses/>.
+ */
+package org.projectjinxers.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author ProjectJinxers
+ * 
+ */
+class PersistentLinkedMapTest {
+
+    @Test
+    void testBehavesLikeLinkedHashMap() {
+        Map<String, Integer> expected = new LinkedHashMap<>();
+        Map<String, Integer> map = new PersistentLinkedMap<>();
+        for (int i = 0; i < 5000; i++) {
+            String key = "k" + (i * 7919 % 3000);
+            assertEquals(expected.put(key, i), map.put(key, i));
+            if (i % 3 == 0) {
+                String toRemove = "k" + (i * 31 % 3000);
+                assertEquals(expected.remove(toRemove), map.remove(toRemove));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+        assertEquals(expected, map);
+    }
+
+    @Test
+    void testCopiesAreIndependent() {
+        Map<String, Integer> original = new PersistentLinkedMap<>();
+        for (int i = 0; i < 1000; i++) {
+            original.put("k" + i, i);
+        }
+        Map<String, Integer> copy = new PersistentLinkedMap<>(original);
+        copy.put("k1", -1);
+        copy.remove("k2");
+        copy.put("new", 0);
+        original.put("k3", -3);
+        assertEquals(1, original.get("k1"));
+        assertEquals(2, original.get("k2"));
+        assertNull(original.get("new"));
+        assertEquals(-1, copy.get("k1"));
+        assertFalse(copy.containsKey("k2"));
+        assertEquals(3, copy.get("k3"));
+        assertEquals(1000, original.size());
+        assertEquals(1000, copy.size());
+    }
+
+    @Test
+    void testIteratorRemove() {
+        Map<Integer, Integer> map = new PersistentLinkedMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put(i, i);
+        }
+        Map<Integer, Integer> copy = new PersistentLinkedMap<>(map);
+        for (Iterator<Integer> it = copy.keySet().iterator(); it.hasNext();) {
+            if (it.next() % 2 == 0) {
+                it.remove();
+            }
+        }
+        assertEquals(50, copy.size());
+        assertEquals(Integer.valueOf(1), copy.keySet().iterator().next());
+        assertEquals(100, map.size());
+    }
+
+}